@@ -0,0 +1,122 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The aliases automaton against the loop it replaced, on answers built from
+ * aliases.txt and cache/: where the old loop's result didn't depend on the
+ * order of the aliases, the automaton must give the same one. Where it did,
+ * the automaton replaces the leftmost-longest alias and never replaces a
+ * replacement.
+ *
+ * @author Skander J.
+ */
+class SMLAliasesTest {
+	/**
+	 * The loop SMLAliases replaced, trying the aliases in the map's order.
+	 */
+	private static String oldLoop(final Map<String, String> aliases, final String answer) {
+		String replaced = answer;
+		for (final String alias : aliases.keySet()) {
+			if (replaced.contains(alias)) {
+				replaced = replaced.replace(alias, aliases.get(alias)).strip();
+			}
+		}
+		return replaced;
+	}
+
+	/**
+	 * @return the aliases in aliases.txt
+	 */
+	private static Map<String, String> aliases() {
+		final Map<String, String> aliases = new HashMap<>();
+		assertTrue(SMLIO.readFileToMap(SML.ALIASES_FILE, aliases, ":"), "Run the tests from the repository root, next to aliases.txt");
+		assertFalse(aliases.isEmpty());
+		return aliases;
+	}
+
+	/**
+	 * @return answers as Spotify gives them: every cached song, and every alias
+	 *         as an artist and as a title
+	 */
+	private static List<String> answers(final Map<String, String> aliases) {
+		final List<String> answers = new ArrayList<>();
+		for (final File artist : SML.CACHE.listFiles(File::isDirectory)) {
+			for (final File track : artist.listFiles((directory, name) -> name.endsWith(".txt"))) {
+				answers.add(artist.getName().replace('_', ' ') + ", " + track.getName().substring(0, track.getName().length() - 4).replace('_', ' '));
+			}
+		}
+		for (final String alias : aliases.keySet()) {
+			answers.add(alias + ", Take On Me");
+			answers.add("a-ha, " + alias);
+			answers.add("  " + alias + " ");
+		}
+		return answers;
+	}
+
+	@Test
+	void matchesTheOldLoop() {
+		final Map<String, String> aliases = SMLAliasesTest.aliases();
+		final SMLAliases compiled = SMLAliases.compile(aliases);
+		assertEquals(aliases.size(), compiled.size());
+		for (final String answer : SMLAliasesTest.answers(aliases)) {
+			assertEquals(SMLAliasesTest.oldLoop(aliases, answer), compiled.apply(answer), answer);
+		}
+	}
+
+	@Test
+	void leavesAnswersWithoutAliasesAlone() {
+		final SMLAliases compiled = SMLAliases.compile(SMLAliasesTest.aliases());
+		final String answer = " a-ha, Hunting High And Low ";
+		assertSame(answer, compiled.apply(answer));
+		assertSame(answer, SMLAliases.compile(Map.of()).apply(answer));
+		assertEquals(0, SMLAliases.compile(Map.of("", "Ignored")).size());
+	}
+
+	@Test
+	void replacesTheLeftmostLongestAlias() {
+		final Map<String, String> aliases = new LinkedHashMap<>();
+		aliases.put("Take On", "Take Off");
+		aliases.put("Take On Me", "Take On Me (Remastered)");
+		aliases.put("On Me Tonight", "Tonight");
+		aliases.put("a-ha", "A-Ha");
+		final SMLAliases compiled = SMLAliases.compile(aliases);
+		// The longest of those starting first, then the scan goes on after it
+		assertEquals("A-Ha, Take On Me (Remastered) Tonight", compiled.apply("a-ha, Take On Me Tonight"));
+		assertEquals("A-Ha, Take Off Tonight", compiled.apply("a-ha, Take On Tonight"));
+		assertEquals("A-Ha, Tonight", compiled.apply("a-ha, On Me Tonight"));
+		// Whatever their order, where the old loop replaced whichever it tried
+		// first
+		assertEquals("A-Ha, Take Off Me Tonight", SMLAliasesTest.oldLoop(aliases, "a-ha, Take On Me Tonight"));
+	}
+
+	@Test
+	void doesntChainAliases() {
+		final Map<String, String> aliases = new LinkedHashMap<>();
+		aliases.put("The Carters", "Beyonce");
+		aliases.put("Beyonce", "Beyonce Knowles");
+		final SMLAliases compiled = SMLAliases.compile(aliases);
+		assertEquals("Beyonce, Apeshit", compiled.apply("The Carters, Apeshit"));
+		assertEquals("Beyonce Knowles, Halo", compiled.apply("Beyonce, Halo"));
+		// The old loop went on with the replacement
+		assertEquals("Beyonce Knowles, Apeshit", SMLAliasesTest.oldLoop(aliases, "The Carters, Apeshit"));
+		// Nor replaces an alias which only appears once another one is replaced
+		aliases.clear();
+		aliases.put("A", "B");
+		aliases.put("BB", "C");
+		assertEquals("BB", SMLAliases.compile(aliases).apply("AB"));
+		assertEquals("C", SMLAliasesTest.oldLoop(aliases, "AB"));
+	}
+}
@@ -0,0 +1,104 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.skanderj.spotmylyrics.SMLCircuitBreaker.State;
+
+/**
+ * The breaker on a clock which only moves when told to, the jitter always
+ * adding its whole bound: opening after a few failures in a row, letting a
+ * single request through once the backoff is over, and the backoff doubling
+ * up to its maximum.
+ *
+ * @author Skander J.
+ */
+class SMLCircuitBreakerTest {
+	private static final long BASE_MS = 100, MAX_MS = 800;
+
+	private final AtomicLong now = new AtomicLong();
+	private final SMLCircuitBreaker breaker = new SMLCircuitBreaker(3, SMLCircuitBreakerTest.BASE_MS, SMLCircuitBreakerTest.MAX_MS, this.now::get, bound -> bound);
+
+	private void advance(final long ms) {
+		this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+	}
+
+	@Test
+	void opensAfterFailuresInARow() {
+		this.breaker.failure();
+		this.breaker.failure();
+		// The site answered in between
+		this.breaker.success();
+		this.breaker.failure();
+		this.breaker.failure();
+		assertEquals(State.CLOSED, this.breaker.state());
+		assertTrue(this.breaker.allow());
+		this.breaker.failure();
+		assertEquals(State.OPEN, this.breaker.state());
+		assertFalse(this.breaker.allow());
+		assertEquals("open (retrying in 0s)", this.breaker.stats());
+	}
+
+	@Test
+	void letsOneRequestThroughOnceTheBackoffIsOver() {
+		for (int failure = 0; failure < 3; failure += 1) {
+			this.breaker.failure();
+		}
+		this.advance(SMLCircuitBreakerTest.BASE_MS - 1);
+		assertFalse(this.breaker.allow());
+		this.advance(1);
+		assertTrue(this.breaker.allow());
+		assertEquals(State.HALF_OPEN, this.breaker.state());
+		assertFalse(this.breaker.allow());
+		// Another one if that one never told how it went
+		this.advance(SML.FETCH_TIMEOUT_MS);
+		assertTrue(this.breaker.allow());
+		assertFalse(this.breaker.allow());
+		this.breaker.success();
+		assertEquals(State.CLOSED, this.breaker.state());
+		assertTrue(this.breaker.allow());
+		assertTrue(this.breaker.allow());
+	}
+
+	@Test
+	void doublesTheBackoffUpToTheMaximum() {
+		for (int failure = 0; failure < 3; failure += 1) {
+			this.breaker.failure();
+		}
+		for (final long backoff : List.of(100L, 200L, 400L, 800L, 800L)) {
+			this.advance(backoff - 1);
+			assertFalse(this.breaker.allow(), backoff + "ms");
+			this.advance(1);
+			assertTrue(this.breaker.allow(), backoff + "ms");
+			// A single failure while half-open opens it again
+			this.breaker.failure();
+			assertEquals(State.OPEN, this.breaker.state());
+		}
+		// Back to the base once the site answers
+		this.advance(SMLCircuitBreakerTest.MAX_MS);
+		assertTrue(this.breaker.allow());
+		this.breaker.success();
+		for (int failure = 0; failure < 3; failure += 1) {
+			this.breaker.failure();
+		}
+		this.advance(SMLCircuitBreakerTest.BASE_MS);
+		assertTrue(this.breaker.allow());
+	}
+
+	@Test
+	void spreadsTheRetriesOverTheSecondHalfOfTheBackoff() {
+		final SMLCircuitBreaker breaker = new SMLCircuitBreaker(1, SMLCircuitBreakerTest.BASE_MS, SMLCircuitBreakerTest.MAX_MS, this.now::get, bound -> 0);
+		breaker.failure();
+		this.advance((SMLCircuitBreakerTest.BASE_MS / 2) - 1);
+		assertFalse(breaker.allow());
+		this.advance(1);
+		assertTrue(breaker.allow());
+	}
+}
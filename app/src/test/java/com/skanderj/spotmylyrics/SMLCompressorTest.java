@@ -0,0 +1,99 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Dictionary compression of the lyrics in the saved pages: the round trip,
+ * entries saved before compression was enabled loading as they are, and
+ * entries compressed with another dictionary being rejected.
+ *
+ * @author Skander J.
+ */
+class SMLCompressorTest {
+	@TempDir
+	Path directory;
+
+	private List<String> lyrics;
+	private SMLCompressor compressor;
+
+	@BeforeEach
+	void train() throws IOException {
+		this.lyrics = List.of(SMLCompressorTest.extract("azlyrics-take-on-me.html"), SMLCompressorTest.extract("azlyrics-beat-it.html"), SMLCompressorTest.extract("azlyrics-ne-reviens-pas.html"));
+		this.compressor = SMLCompressor.train(this.lyrics, 4096);
+	}
+
+	@AfterEach
+	void disable() {
+		SMLIO.disableCompression();
+	}
+
+	/**
+	 * @return the lyrics in the saved page @param name
+	 */
+	private static String extract(final String name) throws IOException {
+		return SML.getInstance().formatSource(SMLExtractor.extractLyrics(new ByteArrayInputStream(SMLFixtureServer.fixture(name)))).strip();
+	}
+
+	@Test
+	void compressesAndDecompresses() {
+		for (final String song : this.lyrics) {
+			final byte[] compressed = this.compressor.compress(song);
+			assertTrue(SMLCompressor.isCompressed(compressed, compressed.length));
+			assertTrue(compressed.length < song.getBytes(StandardCharsets.UTF_8).length);
+			assertEquals(song, this.compressor.decompress(compressed, compressed.length));
+		}
+		// Even without the dictionary being of any help
+		final String accents = "Ne reviens pas, ça fait trop mal\n€ ♪";
+		final byte[] compressed = this.compressor.compress(accents);
+		assertEquals(accents, this.compressor.decompress(compressed, compressed.length));
+		assertFalse(SMLCompressor.isCompressed(accents.getBytes(StandardCharsets.UTF_8), 4));
+	}
+
+	@Test
+	void keepsLoadingPlainEntries() {
+		final SMLFileCache cache = new SMLFileCache(this.directory.toFile());
+		assertTrue(cache.save("a-ha", "Take On Me", this.lyrics.get(0), false));
+		SMLIO.enableCompression(this.compressor);
+		assertTrue(cache.save("Michael Jackson", "Beat It", this.lyrics.get(1), false));
+		final File plain = new File(this.directory.toFile(), SML.getInstance().getCacheKey("a-ha", "Take On Me") + ".txt"), compressed = new File(this.directory.toFile(), SML.getInstance().getCacheKey("Michael Jackson", "Beat It") + ".txt");
+		assertFalse(SMLIO.isCompressed(plain));
+		assertTrue(SMLIO.isCompressed(compressed));
+		assertEquals(this.lyrics.get(0), cache.read("a-ha", "Take On Me"));
+		assertEquals(this.lyrics.get(1), cache.read("Michael Jackson", "Beat It"));
+		// Transferred decompressed too
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertTrue(cache.transfer("Michael Jackson", "Beat It", output));
+		assertEquals(this.lyrics.get(1), new String(output.toByteArray(), Charset.defaultCharset()));
+	}
+
+	@Test
+	void rejectsEntriesFromAnotherDictionary() {
+		final byte[] compressed = this.compressor.compress(this.lyrics.get(0));
+		final SMLCompressor other = SMLCompressor.train(List.of(this.lyrics.get(2), this.lyrics.get(2)), 4096);
+		assertNull(other.decompress(compressed, compressed.length));
+		// Nor cut short
+		assertNull(this.compressor.decompress(Arrays.copyOf(compressed, compressed.length / 2), compressed.length / 2));
+		// Nor written by another version
+		final byte[] newer = compressed.clone();
+		newer[SMLCompressor.HEADER_BYTES - Integer.BYTES - 1] += 1;
+		assertNull(this.compressor.decompress(newer, newer.length));
+	}
+}
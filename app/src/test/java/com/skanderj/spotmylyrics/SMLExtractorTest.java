@@ -0,0 +1,96 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The streaming extractor against the String pipeline it replaced
+ * (fetchSource's joined lines, then extractLyrics), on saved AZLyrics pages
+ * read whole, in reads of a few bytes, and over HTTP.
+ *
+ * @author Skander J.
+ */
+class SMLExtractorTest {
+	private static final String[] PAGES = { "azlyrics-take-on-me.html", "azlyrics-beat-it.html", "azlyrics-ne-reviens-pas.html" };
+
+	/**
+	 * @return what fetchSource and extractLyrics make of @param page
+	 */
+	private static String expected(final byte[] page) {
+		final String source = new String(page, StandardCharsets.UTF_8).replace("\r", SML.EMPTY).replace("\n", SML.EMPTY).strip();
+		return SML.getInstance().extractLyrics(source);
+	}
+
+	@Test
+	void extractsTheLyricsOfSavedPages() throws IOException {
+		for (final String name : SMLExtractorTest.PAGES) {
+			final byte[] page = SMLFixtureServer.fixture(name);
+			final String lyrics = SMLExtractor.extractLyrics(new ByteArrayInputStream(page));
+			assertNotNull(lyrics, name);
+			assertEquals(SMLExtractorTest.expected(page), lyrics.strip(), name);
+		}
+		final String lyrics = SML.getInstance().formatSource(SMLExtractor.extractLyrics(new ByteArrayInputStream(SMLFixtureServer.fixture("azlyrics-take-on-me.html"))));
+		assertTrue(lyrics.strip().startsWith("Talking away\nI don't know what I'm to say\n"), lyrics);
+	}
+
+	@Test
+	void extractsTheLyricsWhateverTheReads() throws IOException {
+		final Random random = new Random(42);
+		for (final String name : SMLExtractorTest.PAGES) {
+			final byte[] page = SMLFixtureServer.fixture(name);
+			final String expected = SMLExtractorTest.expected(page);
+			for (int run = 0; run < 20; run += 1) {
+				final int most = 1 + random.nextInt(run < 10 ? 3 : SMLExtractor.CHUNK_BYTES);
+				// Markers and UTF-8 sequences end up split between reads
+				final InputStream input = new ByteArrayInputStream(page) {
+					@Override
+					public synchronized int read(final byte[] buffer, final int offset, final int length) {
+						return super.read(buffer, offset, Math.min(length, 1 + random.nextInt(most)));
+					}
+				};
+				assertEquals(expected, SMLExtractor.extractLyrics(input).strip(), name);
+			}
+		}
+	}
+
+	@Test
+	void skipsLineTerminators() throws IOException {
+		final byte[] page = SMLFixtureServer.fixture("azlyrics-beat-it.html");
+		final byte[] crlf = new String(page, StandardCharsets.UTF_8).replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+		assertEquals(SMLExtractorTest.expected(page), SMLExtractor.extractLyrics(new ByteArrayInputStream(crlf)).strip());
+	}
+
+	@Test
+	void findsNothingInPagesWithoutLyrics() throws IOException {
+		assertNull(SMLExtractor.extractLyrics(new ByteArrayInputStream(SMLFixtureServer.fixture("azlyrics-blocked.html"))));
+		assertNull(SMLExtractor.extractLyrics(new ByteArrayInputStream(new byte[0])));
+		// The lyrics never end
+		final String page = new String(SMLFixtureServer.fixture("azlyrics-take-on-me.html"), StandardCharsets.UTF_8);
+		final String truncated = page.substring(0, page.indexOf("</div>", page.indexOf(SML.TARGET_WARNING)));
+		assertNull(SMLExtractor.extractLyrics(new ByteArrayInputStream(truncated.getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	void extractsTheLyricsOfServedPages() throws IOException {
+		try (final SMLFixtureServer server = new SMLFixtureServer()) {
+			for (final String name : SMLExtractorTest.PAGES) {
+				server.serve("/" + name, 200, SMLFixtureServer.fixture(name), "Content-Type", "text/html; charset=UTF-8");
+			}
+			server.serve("/azlyrics-blocked.html", 200, SMLFixtureServer.fixture("azlyrics-blocked.html"), "Content-Type", "text/html; charset=UTF-8");
+			for (final String name : SMLExtractorTest.PAGES) {
+				assertEquals(SMLExtractorTest.expected(SMLFixtureServer.fixture(name)), SMLIO.fetchLyrics(server.url("/" + name)).strip(), name);
+			}
+			assertNull(SMLIO.fetchLyrics(server.url("/azlyrics-blocked.html")));
+		}
+	}
+}
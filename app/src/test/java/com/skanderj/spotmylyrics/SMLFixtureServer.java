@@ -0,0 +1,113 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server standing for the lyrics providers in the tests: it
+ * serves canned answers (saved pages from src/test/resources, errors...) on
+ * a free port, and counts the requests it gets.
+ *
+ * @author Skander J.
+ */
+final class SMLFixtureServer implements AutoCloseable {
+	private final HttpServer server;
+	private final ExecutorService pool;
+	// Requests per path
+	private final Map<String, AtomicInteger> requests;
+
+	SMLFixtureServer() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		this.pool = Executors.newCachedThreadPool(runnable -> {
+			final Thread thread = new Thread(runnable, "SMLFixtureServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.requests = new ConcurrentHashMap<>();
+		this.server.setExecutor(this.pool);
+		this.server.start();
+	}
+
+	/**
+	 * @return the saved page @param name from src/test/resources
+	 */
+	static byte[] fixture(final String name) {
+		try (final InputStream input = SMLFixtureServer.class.getResourceAsStream("/" + name)) {
+			if (input == null) {
+				throw new IllegalArgumentException("No fixture named " + name);
+			}
+			return input.readAllBytes();
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	/**
+	 * Answers the requests to @param path with @param status and @param body,
+	 * along with @param headers given as name, value pairs.
+	 */
+	void serve(final String path, final int status, final byte[] body, final String... headers) {
+		this.handle(path, exchange -> {
+			for (int index = 0; index < headers.length; index += 2) {
+				exchange.getResponseHeaders().add(headers[index], headers[index + 1]);
+			}
+			exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+			try (final OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		});
+	}
+
+	/**
+	 * Answers the requests to @param path with @param handler.
+	 */
+	void handle(final String path, final Handler handler) {
+		final AtomicInteger count = this.requests.computeIfAbsent(path, key -> new AtomicInteger());
+		this.server.createContext(path, exchange -> {
+			count.incrementAndGet();
+			try {
+				handler.handle(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+	}
+
+	/**
+	 * @return how many requests were made to @param path
+	 */
+	int requests(final String path) {
+		final AtomicInteger count = this.requests.get(path);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @return the URL of @param path on this server
+	 */
+	String url(final String path) {
+		return String.format("http://%s:%d%s", this.server.getAddress().getHostString(), this.server.getAddress().getPort(), path);
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.pool.shutdownNow();
+	}
+
+	@FunctionalInterface
+	interface Handler {
+		void handle(HttpExchange exchange) throws IOException;
+	}
+}
@@ -0,0 +1,103 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The closest cached song: editions of a song match it, songs which only look
+ * like it don't, and a song served in place of another one is replaced by its
+ * own lyrics once they are fetched.
+ *
+ * @author Skander J.
+ */
+class SMLFuzzyIndexTest {
+	@TempDir
+	Path directory;
+
+	/**
+	 * @return an index of @param songs by a-ha, as cache keys
+	 */
+	private static SMLFuzzyIndex index(final String... songs) {
+		final SMLFuzzyIndex index = new SMLFuzzyIndex(SML.FUZZY_THRESHOLD);
+		for (final String song : songs) {
+			index.add(SML.getInstance().getCacheKey("a-ha", song));
+		}
+		return index;
+	}
+
+	@Test
+	void matchesEditionsOfASong() {
+		final SMLFuzzyIndex index = SMLFuzzyIndexTest.index("Take On Me", "Hunting High And Low");
+		assertEquals("a-ha/take_on_me", index.find("a-ha", "Take On Me (Live)"));
+		assertEquals("a-ha/take_on_me", index.find("A-ha", "Take On Me - Radio Edit"));
+		assertEquals("a-ha/take_on_me", index.find("a-ha", "Take On Me [2015 Remaster]"));
+		assertEquals("a-ha/take_on_me", index.find("a-ha", "Take On Me (feat. Nobody)"));
+		assertEquals("a-ha/hunting_high_and_low", index.find("a-ha", "Hunting High And Low - Single Version"));
+		// Keys as well
+		assertEquals("a-ha/take_on_me", index.find(SML.getInstance().getCacheKey("a-ha", "Take On Me - Radio Edit")));
+	}
+
+	@Test
+	void keepsEditionWordsInTheTitle() {
+		// Live Forever isn't an edition of Forever
+		final SMLFuzzyIndex index = SMLFuzzyIndexTest.index("Forever", "Live Forever");
+		assertEquals("a-ha/live_forever", index.find("a-ha", "Live Forever (Remastered)"));
+		assertEquals("a-ha/forever", index.find("a-ha", "Forever (Live)"));
+		assertEquals("a-ha/live_forever", index.find("a-ha", "Live Forever"));
+		// Nor is a part of the title which only looks like one
+		assertNull(SMLFuzzyIndexTest.index("Take On Me").find("a-ha", "Take On Me (Somewhere Else)"));
+	}
+
+	@Test
+	void requiresTheSameNumbers() {
+		final SMLFuzzyIndex index = SMLFuzzyIndexTest.index("Summer Moved On Pt 1");
+		assertNull(index.find("a-ha", "Summer Moved On Pt 2"));
+		assertNull(index.find("a-ha", "Summer Moved On"));
+		assertEquals("a-ha/summer_moved_on_pt_1", index.find("a-ha", "Summer Moved On Pt 1 (Live)"));
+		assertEquals("a-ha/summer_moved_on_pt_1", index.find(SML.getInstance().getCacheKey("a-ha", "Summer Moved On Pt. 1 - 2019 Remaster")));
+	}
+
+	@Test
+	void standsInUntilTheSongIsFetched() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		final SML sml = SML.getInstance();
+		final SMLFixtureServer server = new SMLFixtureServer();
+		final String path = String.format("/lyrics/%s/%%s.html", sml.formatArtist("Sml Test"));
+		server.serve(String.format(path, "takeonme"), 200, SMLFixtureServer.fixture("azlyrics-take-on-me.html"));
+		// Pretending to be the live lyrics
+		server.serve(String.format(path, "takeonmelive"), 200, SMLFixtureServer.fixture("azlyrics-beat-it.html"));
+		sml.useCache(new SMLFileCache(this.directory.resolve("cache").toFile()));
+		sml.useMisses(new SMLNegativeCache(this.directory.resolve("cache.misses").toFile(), SML.MISSES_TTL_MS));
+		final SMLLyricsEngine engine = sml.useEngine(new SMLLyricsEngine(List.of(SMLPageProvider.parse(String.join("\t", "fixtures", server.url("/lyrics/%s/%s.html"), SML.TARGET_WARNING, "</div>")))));
+		try {
+			final String studio = sml.lyrics(sml.formatAnswer("Sml Test, Take On Me")).get(5, TimeUnit.SECONDS);
+			final String[] live = sml.formatAnswer("Sml Test, Take On Me (Live)");
+			assertEquals(studio, sml.lyrics(live).get(0, TimeUnit.SECONDS));
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (!sml.isCached(live[2], live[3])) {
+				assertTrue(System.nanoTime() < deadline, "Timed out");
+				Thread.sleep(10);
+			}
+			assertEquals(1, server.requests(String.format(path, "takeonmelive")));
+			final String own = sml.lyrics(live).get(0, TimeUnit.SECONDS);
+			assertTrue(own.contains("Just beat it"), own);
+		} finally {
+			server.close();
+			sml.useEngine(engine);
+			sml.useCache(new SMLFileCache());
+			final SMLNegativeCache misses = new SMLNegativeCache(SML.MISSES, SML.MISSES_TTL_MS);
+			misses.load();
+			sml.useMisses(misses);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The long-lived helper, played by scripts/fakespotify.py --daemon moving on
+ * to the next song after every answer: it must keep answering when the
+ * helper dies or hangs.
+ *
+ * @author Skander J.
+ */
+class SMLHelperTest {
+	private static final List<String> SONGS = List.of("a-ha, Take On Me", "Michael Jackson, Beat It", "PAUSED");
+
+	@TempDir
+	Path directory;
+
+	private SMLHelper helper;
+
+	@AfterEach
+	void stop() {
+		if (this.helper != null) {
+			this.helper.stop();
+		}
+	}
+
+	/**
+	 * @return a helper running the fake one with @param options
+	 */
+	private SMLHelper helper(final String... options) throws IOException {
+		final Path songs = this.directory.resolve("songs.txt");
+		Files.write(songs, SMLHelperTest.SONGS, StandardCharsets.UTF_8);
+		final List<String> command = new ArrayList<>(List.of("python3", "./scripts/fakespotify.py", songs.toString(), "--daemon", "--every", "1"));
+		command.addAll(List.of(options));
+		this.helper = new SMLHelper(command.toArray(new String[0]));
+		return this.helper;
+	}
+
+	/**
+	 * @return how many helpers are running, once killed ones had a second to
+	 *         go down to @param expected
+	 */
+	private static long helpers(final long expected) throws InterruptedException {
+		final long deadline = System.nanoTime() + 1_000_000_000L;
+		long helpers;
+		while (((helpers = ProcessHandle.current().descendants().filter(ProcessHandle::isAlive).count()) > expected) && (System.nanoTime() < deadline)) {
+			Thread.sleep(10);
+		}
+		return helpers;
+	}
+
+	@Test
+	void answersEveryQuery() throws IOException, InterruptedException {
+		final SMLHelper helper = this.helper();
+		for (final String song : SMLHelperTest.SONGS) {
+			assertEquals(song, helper.query());
+		}
+		assertEquals(SMLHelperTest.SONGS.get(0), helper.query());
+		assertEquals(1, SMLHelperTest.helpers(1));
+	}
+
+	@Test
+	void restartsAHelperWhichDied() throws IOException {
+		final SMLHelper helper = this.helper("--die-after", "2");
+		assertEquals(SMLHelperTest.SONGS.get(0), helper.query());
+		assertEquals(SMLHelperTest.SONGS.get(1), helper.query());
+		// The new helper starts over
+		assertEquals(SMLHelperTest.SONGS.get(0), helper.query());
+		assertEquals(SMLHelperTest.SONGS.get(1), helper.query());
+	}
+
+	@Test
+	void restartsAHelperWhichHangs() throws IOException, InterruptedException {
+		final SMLHelper helper = this.helper("--hang-after", "1");
+		assertEquals(SMLHelperTest.SONGS.get(0), helper.query());
+		final long start = System.nanoTime();
+		assertEquals(SMLHelperTest.SONGS.get(0), helper.query());
+		final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		assertTrue(elapsedMs >= SML.HELPER_TIMEOUT_MS, "Answered after " + elapsedMs + "ms, before the hung helper timed out");
+		// The hung helper was killed
+		assertEquals(1, SMLHelperTest.helpers(1));
+		helper.stop();
+		assertEquals(0, SMLHelperTest.helpers(0));
+	}
+}
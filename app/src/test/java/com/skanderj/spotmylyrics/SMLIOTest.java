@@ -0,0 +1,120 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.skanderj.spotmylyrics.SMLFetchResult.Outcome;
+
+/**
+ * Fetching pages from a local stub server: decoding the bodies, and telling
+ * lyrics, missing songs, blocks and errors apart.
+ *
+ * @author Skander J.
+ */
+class SMLIOTest {
+	private static final String PAGE = "azlyrics-take-on-me.html";
+
+	private SMLFixtureServer server;
+	private String lyrics;
+
+	@BeforeEach
+	void start() throws IOException {
+		this.server = new SMLFixtureServer();
+		this.lyrics = SMLExtractor.extractLyrics(new ByteArrayInputStream(SMLFixtureServer.fixture(SMLIOTest.PAGE)));
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.close();
+	}
+
+	private SMLFetchResult fetch(final String path) {
+		return SMLIO.fetchSectionAsync(SMLExtractor.LYRICS_START, SMLExtractor.LYRICS_END, this.server.url(path)).join();
+	}
+
+	private static byte[] compress(final byte[] data, final boolean gzip) throws IOException {
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (final OutputStream output = gzip ? new GZIPOutputStream(compressed) : new DeflaterOutputStream(compressed)) {
+			output.write(data);
+		}
+		return compressed.toByteArray();
+	}
+
+	@Test
+	void decodesTheBodies() throws IOException {
+		final byte[] page = SMLFixtureServer.fixture(SMLIOTest.PAGE);
+		this.server.serve("/identity", 200, page);
+		this.server.serve("/gzip", 200, SMLIOTest.compress(page, true), "Content-Encoding", "gzip");
+		this.server.serve("/deflate", 200, SMLIOTest.compress(page, false), "Content-Encoding", "DEFLATE");
+		for (final String path : new String[] { "/identity", "/gzip", "/deflate" }) {
+			final SMLFetchResult result = this.fetch(path);
+			assertEquals(Outcome.FOUND, result.outcome(), path);
+			assertEquals(this.lyrics, result.lyrics(), path);
+		}
+		assertEquals(new String(page, StandardCharsets.UTF_8).replace("\n", SML.EMPTY).strip(), SMLIO.fetchSource(this.server.url("/gzip")));
+	}
+
+	@Test
+	void tellsMissingSongsApartFromBlocks() {
+		final byte[] blocked = SMLFixtureServer.fixture("azlyrics-blocked.html");
+		this.server.serve("/404", 404, new byte[0]);
+		this.server.serve("/410", 410, new byte[0]);
+		this.server.serve("/403", 403, blocked);
+		this.server.serve("/429", 429, new byte[0], "Retry-After", "60");
+		this.server.serve("/503", 503, new byte[0]);
+		this.server.serve("/500", 500, new byte[0]);
+		// A page without lyrics at the requested URL is a captcha, and a redirection
+		// to one is the site's way of saying it doesn't have the song
+		this.server.serve("/captcha", 200, blocked);
+		this.server.serve("/index", 200, blocked);
+		this.server.serve("/moved", 302, new byte[0], "Location", this.server.url("/index"));
+		assertEquals(Outcome.NOT_FOUND, this.fetch("/404").outcome());
+		assertEquals(Outcome.NOT_FOUND, this.fetch("/410").outcome());
+		assertEquals(Outcome.NOT_FOUND, this.fetch("/moved").outcome());
+		assertEquals(Outcome.BLOCKED, this.fetch("/403").outcome());
+		assertEquals(Outcome.BLOCKED, this.fetch("/429").outcome());
+		assertEquals(Outcome.BLOCKED, this.fetch("/503").outcome());
+		assertEquals(Outcome.BLOCKED, this.fetch("/captcha").outcome());
+		assertEquals(Outcome.FAILED, this.fetch("/500").outcome());
+		assertNull(SMLIO.fetchLyrics(this.server.url("/404")));
+	}
+
+	@Test
+	void failsWithoutAServer() throws IOException {
+		final int port;
+		try (final ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		assertEquals(Outcome.FAILED, SMLIO.fetchSectionAsync(SMLExtractor.LYRICS_START, SMLExtractor.LYRICS_END, "http://127.0.0.1:%d/", port).join().outcome());
+		assertEquals(Outcome.FAILED, SMLIO.fetchSectionAsync(SMLExtractor.LYRICS_START, SMLExtractor.LYRICS_END, "http://%s/", "not a host").join().outcome());
+	}
+
+	@Test
+	void fetchesConcurrently() {
+		this.server.serve("/page", 200, SMLFixtureServer.fixture(SMLIOTest.PAGE));
+		final List<CompletableFuture<String>> fetches = new ArrayList<>();
+		for (int index = 0; index < 32; index += 1) {
+			fetches.add(SMLIO.fetchLyricsAsync(this.server.url("/page")));
+		}
+		for (final CompletableFuture<String> fetch : fetches) {
+			assertEquals(this.lyrics, fetch.join());
+		}
+		assertEquals(32, this.server.requests("/page"));
+	}
+}
@@ -0,0 +1,135 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hedged fetches against local providers: one which finds the lyrics, one
+ * which doesn't have them and one which never finishes sending its page. The
+ * next provider must be asked once the first is late or has nothing, the
+ * loser's connection must be dropped, and the providers finding lyrics must
+ * be asked first once they've been measured.
+ *
+ * @author Skander J.
+ */
+class SMLLyricsEngineTest {
+	private static final String ARTIST = "Sml Test", TITLE = "Take On Me";
+
+	private SMLFixtureServer server;
+	private String lyrics;
+	// Counted down once the slow provider can't write to the connection anymore
+	private CountDownLatch dropped;
+
+	@BeforeEach
+	void start() throws IOException {
+		this.server = new SMLFixtureServer();
+		this.lyrics = SMLExtractor.extractLyrics(new ByteArrayInputStream(SMLFixtureServer.fixture("azlyrics-take-on-me.html")));
+		this.dropped = new CountDownLatch(1);
+		this.server.serve("/found/", 200, SMLFixtureServer.fixture("azlyrics-take-on-me.html"));
+		this.server.serve("/missing/", 404, new byte[0]);
+		this.server.handle("/slow/", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			final OutputStream output = exchange.getResponseBody();
+			final byte[] verse = "<br>\nLa la la, la la la la\n".repeat(32).getBytes(StandardCharsets.UTF_8);
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SML.FETCH_TIMEOUT_MS / 1000);
+			try {
+				output.write("<html><body>\n".getBytes(StandardCharsets.UTF_8));
+				// Never reaching the lyrics
+				while (System.nanoTime() < deadline) {
+					output.write(verse);
+					output.flush();
+					Thread.sleep(10);
+				}
+			} catch (final IOException ioException) {
+				this.dropped.countDown();
+			} catch (final InterruptedException interruptedException) {
+				return;
+			}
+		});
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.close();
+	}
+
+	/**
+	 * @return an engine asking the providers @param names, in that order
+	 */
+	private SMLLyricsEngine engine(final String... names) {
+		final List<SMLPageProvider> providers = new ArrayList<>();
+		for (final String name : names) {
+			providers.add(SMLPageProvider.parse(String.join("\t", name, this.server.url("/" + name + "/%s/%s.html"), SML.TARGET_WARNING, "</div>")));
+		}
+		return new SMLLyricsEngine(providers);
+	}
+
+	private static SMLFetchResult fetch(final SMLLyricsEngine engine) throws InterruptedException, ExecutionException, TimeoutException {
+		return engine.fetch(SMLLyricsEngineTest.ARTIST, SMLLyricsEngineTest.TITLE).get(SML.FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	void hedgesASlowProvider() throws InterruptedException, ExecutionException, TimeoutException {
+		final SMLLyricsEngine engine = this.engine("slow", "found");
+		final long start = System.nanoTime();
+		final SMLFetchResult result = SMLLyricsEngineTest.fetch(engine);
+		final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertEquals(SMLFetchResult.Outcome.FOUND, result.outcome());
+		assertEquals(this.lyrics, result.lyrics());
+		// Asked once the first one was late, not before
+		assertTrue(elapsed >= SML.HEDGE_DELAY_MS, elapsed + "ms");
+		assertEquals(1, this.server.requests("/slow/"));
+		assertEquals(1, this.server.requests("/found/"));
+		// The page the loser was still sending is dropped
+		assertTrue(this.dropped.await(5, TimeUnit.SECONDS), "The slow provider's connection is still open");
+		final String stats = engine.stats();
+		assertTrue(stats.contains("Provider found: 1 fetches, 100.0% found, 1 won, 1 asked as backup"), stats);
+		assertTrue(stats.contains("Provider slow: 0 fetches"), stats);
+	}
+
+	@Test
+	void asksTheNextProviderRightAwayWhenOneHasNothing() throws InterruptedException, ExecutionException, TimeoutException {
+		final SMLLyricsEngine engine = this.engine("missing", "found");
+		final long start = System.nanoTime();
+		final SMLFetchResult result = SMLLyricsEngineTest.fetch(engine);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < SML.HEDGE_DELAY_MS);
+		assertEquals(this.lyrics, result.lyrics());
+		assertEquals(1, this.server.requests("/missing/"));
+		assertEquals(1, this.server.requests("/found/"));
+		// Missing only if every provider says so
+		assertEquals(SMLFetchResult.NOT_FOUND, SMLLyricsEngineTest.fetch(this.engine("missing", "missing")));
+	}
+
+	@Test
+	void ranksTheProvidersByWhatTheyFound() throws InterruptedException, ExecutionException, TimeoutException {
+		final SMLLyricsEngine engine = this.engine("missing", "found");
+		// In the configured order until both are measured
+		for (int fetch = 0; fetch < SML.HEDGE_MIN_SAMPLES; fetch += 1) {
+			assertTrue(engine.stats().startsWith("Provider missing: "), engine.stats());
+			assertEquals(SMLFetchResult.Outcome.FOUND, SMLLyricsEngineTest.fetch(engine).outcome());
+		}
+		assertEquals(SML.HEDGE_MIN_SAMPLES, this.server.requests("/missing/"));
+		assertTrue(engine.stats().startsWith("Provider found: "), engine.stats());
+		for (int fetch = 0; fetch < 3; fetch += 1) {
+			assertEquals(SMLFetchResult.Outcome.FOUND, SMLLyricsEngineTest.fetch(engine).outcome());
+		}
+		// The one which never has the lyrics isn't asked anymore
+		assertEquals(SML.HEDGE_MIN_SAMPLES, this.server.requests("/missing/"));
+		assertEquals(SML.HEDGE_MIN_SAMPLES + 3, this.server.requests("/found/"));
+	}
+}
@@ -0,0 +1,181 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The memory tier in front of a disk cache which counts how often it's asked:
+ * evicting under the byte budget, the counters, keeping what a transfer from
+ * the disk wrote and not asking the disk twice for a song it doesn't have.
+ *
+ * @author Skander J.
+ */
+class SMLMemoryCacheTest {
+	private final Disk disk = new Disk();
+
+	/**
+	 * @return the lyrics to @param track as written by the tier
+	 */
+	private static String transfer(final SMLMemoryCache cache, final String track) {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		return cache.transfer("a-ha", track, output) ? new String(output.toByteArray(), Charset.defaultCharset()) : null;
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedSongs() {
+		final SMLMemoryCache cache = new SMLMemoryCache(this.disk, 10);
+		cache.save("a-ha", "One", "1111", false);
+		cache.save("a-ha", "Two", "2222", false);
+		// One is now more recent than Two
+		assertEquals("1111", cache.read("a-ha", "One"));
+		cache.save("a-ha", "Three", "3333", false);
+		assertEquals(0, this.disk.reads);
+		assertEquals("1111", cache.read("a-ha", "One"));
+		assertEquals("3333", cache.read("a-ha", "Three"));
+		assertEquals(0, this.disk.reads);
+		assertEquals("2222", cache.read("a-ha", "Two"));
+		assertEquals(1, this.disk.reads);
+		// Back in the tier, in place of One
+		assertEquals("3333", cache.read("a-ha", "Three"));
+		assertEquals("2222", cache.read("a-ha", "Two"));
+		assertEquals(1, this.disk.reads);
+		assertEquals("1111", cache.read("a-ha", "One"));
+		assertEquals(2, this.disk.reads);
+		// Too big for the whole tier
+		cache.save("a-ha", "Four", "44444444444", false);
+		assertEquals("44444444444", cache.read("a-ha", "Four"));
+		assertEquals("44444444444", cache.read("a-ha", "Four"));
+		assertEquals(4, this.disk.reads);
+	}
+
+	@Test
+	void countsHitsMissesAndEvictions() {
+		final SMLMemoryCache cache = new SMLMemoryCache(this.disk, 8);
+		this.disk.save("a-ha", "One", "1111", false);
+		this.disk.save("a-ha", "Two", "2222", false);
+		this.disk.save("a-ha", "Three", "3333", false);
+		cache.read("a-ha", "One");
+		cache.read("a-ha", "One");
+		cache.read("a-ha", "Two");
+		assertEquals("3333", SMLMemoryCacheTest.transfer(cache, "Three"));
+		assertNull(cache.read("a-ha", "Four"));
+		assertTrue(cache.stats().startsWith("Memory cache: 2 songs, "), cache.stats());
+		assertTrue(cache.stats().endsWith(", 1 hits, 4 misses (20.0% hit rate), 1 evictions"), cache.stats());
+		// Counts are the disk's
+		assertEquals(3, cache.items());
+		assertEquals(12, cache.size());
+	}
+
+	@Test
+	void keepsWhatATransferWrote() {
+		final SMLMemoryCache cache = new SMLMemoryCache(this.disk, 16);
+		this.disk.save("a-ha", "Take On Me", "Take on me\n", false);
+		this.disk.save("a-ha", "Hunting High And Low", "Hunting high and low\n", false);
+		assertEquals("Take on me\n", SMLMemoryCacheTest.transfer(cache, "Take On Me"));
+		assertEquals("Take on me\n", SMLMemoryCacheTest.transfer(cache, "Take On Me"));
+		assertEquals("Take on me\n", cache.read("a-ha", "Take On Me"));
+		assertEquals(List.of("take on me"), this.disk.transfers);
+		assertEquals(0, this.disk.reads);
+		// Written in full, but not kept: it's over the budget
+		assertEquals("Hunting high and low\n", SMLMemoryCacheTest.transfer(cache, "Hunting High And Low"));
+		assertEquals("Hunting high and low\n", SMLMemoryCacheTest.transfer(cache, "Hunting High And Low"));
+		assertEquals(3, this.disk.transfers.size());
+	}
+
+	@Test
+	void remembersSongsNotOnDisk() {
+		final SMLMemoryCache cache = new SMLMemoryCache(this.disk, 64);
+		assertNull(SMLMemoryCacheTest.transfer(cache, "Take On Me"));
+		assertNull(SMLMemoryCacheTest.transfer(cache, "Take On Me"));
+		assertNull(cache.read("a-ha", "Take On Me"));
+		assertEquals(1, this.disk.transfers.size());
+		assertEquals(0, this.disk.reads);
+		// Until it's saved
+		cache.save("a-ha", "Take On Me", "Take on me\n", false);
+		assertEquals("Take on me\n", SMLMemoryCacheTest.transfer(cache, "Take On Me"));
+		assertTrue(cache.contains("a-ha", "Take On Me"));
+		assertTrue(cache.clear());
+		assertFalse(cache.contains("a-ha", "Take On Me"));
+		// Or the cache cleared
+		this.disk.save("a-ha", "Take On Me", "Take me on\n", false);
+		assertEquals("Take me on\n", SMLMemoryCacheTest.transfer(cache, "Take On Me"));
+	}
+
+	/**
+	 * Songs kept in a map, counting the reads and transfers (by title).
+	 */
+	private static final class Disk implements SMLCache {
+		private final Map<String, String> songs = new HashMap<>();
+		private final List<String> transfers = new ArrayList<>();
+		private int reads;
+
+		@Override
+		public String read(final String artist, final String track) {
+			this.reads += 1;
+			return this.songs.get(SML.getInstance().getCacheKey(artist, track));
+		}
+
+		@Override
+		public boolean contains(final String artist, final String track) {
+			return this.songs.containsKey(SML.getInstance().getCacheKey(artist, track));
+		}
+
+		@Override
+		public boolean transfer(final String artist, final String track, final OutputStream output) {
+			this.transfers.add(track.toLowerCase());
+			final String lyrics = this.songs.get(SML.getInstance().getCacheKey(artist, track));
+			if (lyrics == null) {
+				return false;
+			}
+			try {
+				// In two writes, so the copy is filled in pieces
+				final byte[] bytes = lyrics.getBytes(Charset.defaultCharset());
+				output.write(bytes, 0, bytes.length / 2);
+				output.write(bytes, bytes.length / 2, bytes.length - (bytes.length / 2));
+			} catch (final IOException ioException) {
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean save(final String artist, final String track, final String lyrics, final boolean override) {
+			this.songs.put(SML.getInstance().getCacheKey(artist, track), lyrics);
+			return true;
+		}
+
+		@Override
+		public List<String> keys() {
+			return new ArrayList<>(this.songs.keySet());
+		}
+
+		@Override
+		public int items() {
+			return this.songs.size();
+		}
+
+		@Override
+		public long size() {
+			return this.songs.values().stream().mapToLong(String::length).sum();
+		}
+
+		@Override
+		public boolean clear() {
+			this.songs.clear();
+			return true;
+		}
+	}
+}
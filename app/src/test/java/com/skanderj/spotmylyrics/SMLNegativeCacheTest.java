@@ -0,0 +1,93 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The songs without lyrics on a clock which only moves when told to: entries
+ * expiring after their time to live, and the "key <tab> expiry" file they're
+ * kept in.
+ *
+ * @author Skander J.
+ */
+class SMLNegativeCacheTest {
+	private static final long TTL_MS = 1000;
+	private static final String TAKE_ON_ME = "a-ha/take_on_me", BEAT_IT = "michael_jackson/beat_it";
+
+	@TempDir
+	Path directory;
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+
+	private SMLNegativeCache misses() {
+		return new SMLNegativeCache(this.directory.resolve("cache.misses").toFile(), SMLNegativeCacheTest.TTL_MS, this.now::get);
+	}
+
+	@Test
+	void forgetsSongsOnceTheyExpire() {
+		final SMLNegativeCache misses = this.misses();
+		misses.add(SMLNegativeCacheTest.TAKE_ON_ME);
+		this.now.addAndGet(SMLNegativeCacheTest.TTL_MS - 1);
+		assertTrue(misses.contains(SMLNegativeCacheTest.TAKE_ON_ME));
+		assertFalse(misses.contains(SMLNegativeCacheTest.BEAT_IT));
+		this.now.addAndGet(1);
+		assertFalse(misses.contains(SMLNegativeCacheTest.TAKE_ON_ME));
+		assertEquals(0, misses.size());
+		// Remembered again for a whole time to live
+		misses.add(SMLNegativeCacheTest.TAKE_ON_ME);
+		this.now.addAndGet(SMLNegativeCacheTest.TTL_MS - 1);
+		assertTrue(misses.contains(SMLNegativeCacheTest.TAKE_ON_ME));
+	}
+
+	@Test
+	void keepsTheSongsInAFile() throws IOException {
+		final SMLNegativeCache misses = this.misses();
+		misses.add(SMLNegativeCacheTest.TAKE_ON_ME);
+		this.now.addAndGet(500);
+		misses.add(SMLNegativeCacheTest.BEAT_IT);
+		final Path file = this.directory.resolve("cache.misses");
+		final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		Collections.sort(lines);
+		assertEquals(List.of(SMLNegativeCacheTest.TAKE_ON_ME + "\t1001000", SMLNegativeCacheTest.BEAT_IT + "\t1001500"), lines);
+		SMLNegativeCache loaded = this.misses();
+		loaded.load();
+		assertEquals(2, loaded.size());
+		assertTrue(loaded.contains(SMLNegativeCacheTest.TAKE_ON_ME));
+		assertTrue(loaded.contains(SMLNegativeCacheTest.BEAT_IT));
+		// Expired entries are dropped when loading, and when saving
+		this.now.addAndGet(500);
+		loaded = this.misses();
+		loaded.load();
+		assertEquals(1, loaded.size());
+		assertFalse(loaded.contains(SMLNegativeCacheTest.TAKE_ON_ME));
+		loaded.add("glass_animals/heat_waves");
+		assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+		loaded.clear();
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void skipsMalformedLines() throws IOException {
+		Files.write(this.directory.resolve("cache.misses"), List.of(SMLNegativeCacheTest.TAKE_ON_ME + "\t2000000", "no expiry", "\t2000000", SMLNegativeCacheTest.BEAT_IT + "\tsoon"), StandardCharsets.UTF_8);
+		final SMLNegativeCache misses = this.misses();
+		misses.load();
+		assertEquals(1, misses.size());
+		assertTrue(misses.contains(SMLNegativeCacheTest.TAKE_ON_ME));
+		// Nothing to load
+		final SMLNegativeCache empty = new SMLNegativeCache(this.directory.resolve("none").toFile(), SMLNegativeCacheTest.TTL_MS, this.now::get);
+		empty.load();
+		assertEquals(0, empty.size());
+	}
+}
@@ -0,0 +1,104 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The normalizer against the replaceAll expressions it replaced, on every name
+ * in aliases.txt and cache/: cache keys and formatted sources must stay
+ * byte-identical so that existing cache entries are still found.
+ *
+ * @author Skander J.
+ */
+class SMLNormalizerTest {
+	/**
+	 * @return both sides of every alias, and every cached artist and title with
+	 *         its underscores turned back into spaces
+	 */
+	private static List<String> names() throws IOException {
+		final List<String> names = new ArrayList<>();
+		for (final String line : Files.readAllLines(SML.ALIASES_FILE.toPath(), StandardCharsets.UTF_8)) {
+			for (final String side : line.split(":")) {
+				if (!side.isBlank()) {
+					names.add(side);
+				}
+			}
+		}
+		for (final File artist : SML.CACHE.listFiles(File::isDirectory)) {
+			names.add(artist.getName().replace('_', ' '));
+			for (final File track : artist.listFiles((directory, name) -> name.endsWith(".txt"))) {
+				names.add(track.getName().substring(0, track.getName().length() - 4).replace('_', ' '));
+			}
+		}
+		assertFalse(names.isEmpty(), "Run the tests from the repository root, next to cache/ and aliases.txt");
+		return names;
+	}
+
+	@Test
+	void keyPartsMatchTheOldExpression() throws IOException {
+		for (final String name : SMLNormalizerTest.names()) {
+			final StringBuilder key = new StringBuilder();
+			SMLNormalizer.appendKeyPart(key, name);
+			assertEquals(name.toLowerCase().replaceAll(SML.SPACE, "_").replaceAll("[\\.\\?\\(']", SML.EMPTY), key.toString(), name);
+		}
+	}
+
+	@Test
+	void cachedSongsKeepTheirKeys() {
+		for (final File artist : SML.CACHE.listFiles(File::isDirectory)) {
+			for (final File track : artist.listFiles((directory, name) -> name.endsWith(".txt"))) {
+				final String title = track.getName().substring(0, track.getName().length() - 4);
+				assertEquals(artist.getName() + "/" + title, SML.getInstance().getCacheKey(artist.getName().replace('_', ' '), title.replace('_', ' ')));
+			}
+		}
+	}
+
+	@Test
+	void urlPartsMatchTheOldExpressionWithoutAccents() throws IOException {
+		for (final String name : SMLNormalizerTest.names()) {
+			if (name.chars().allMatch(character -> character < 128)) {
+				assertEquals(name.replaceAll("[^a-zA-Z0-9]", SML.EMPTY).toLowerCase().replaceAll(SML.SPACE, SML.EMPTY).strip(), SMLNormalizer.urlPart(name, name.length()), name);
+			}
+		}
+	}
+
+	@Test
+	void urlPartsFoldAccents() {
+		assertEquals("parallele", SMLNormalizer.urlPart("Parallèle", 9));
+		assertEquals("debut", SMLNormalizer.urlPart("Début", 5));
+		assertEquals("uneamepourdeux", SMLNormalizer.urlPart("Une âme pour deux", 17));
+		assertEquals("francais", SMLNormalizer.urlPart("Français (Live)", 9));
+	}
+
+	@Test
+	void strippedNamesMatchTheOldExpression() throws IOException {
+		for (final String name : SMLNormalizerTest.names()) {
+			assertEquals(name.replaceAll("[\\('\\)]", SML.EMPTY), SMLNormalizer.stripParentheses(name), name);
+		}
+	}
+
+	@Test
+	void sourcesMatchTheOldExpression() throws IOException {
+		final List<String> sources = new ArrayList<>();
+		sources.add("<i>[Chorus]</i><br>Rock &amp; roll<br/><br>&quot;Quoted&quot;<br>< i>&amp;quot;");
+		sources.add("<br<br>><i</i>&amp&quot;&");
+		for (final File artist : SML.CACHE.listFiles(File::isDirectory)) {
+			for (final File track : artist.listFiles((directory, name) -> name.endsWith(".txt"))) {
+				final String lyrics = new String(Files.readAllBytes(track.toPath()), StandardCharsets.UTF_8);
+				sources.add(lyrics.replace("&", "&amp;").replace("\"", "&quot;").replace("\n", "<br>"));
+			}
+		}
+		for (final String source : sources) {
+			assertEquals(source.replaceAll("<br>", "\n").replaceAll("<br/>", SML.EMPTY).replaceAll("<i>", SML.EMPTY).replaceAll("</i>", SML.EMPTY).replaceAll("&quot;", "'").replaceAll("&amp;", "&"), SMLNormalizer.source(source));
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The renderer drawing to a virtual terminal: after every update, the screen
+ * must look the same as if it had been redrawn from scratch, for a fraction
+ * of the bytes.
+ *
+ * @author Skander J.
+ */
+class SMLRendererTest {
+	private static final int ROWS = 12, COLUMNS = 40, CONTEXT = 3;
+
+	private static final String[] LINES = new String[60];
+
+	static {
+		for (int index = 0; index < SMLRendererTest.LINES.length; index += 1) {
+			SMLRendererTest.LINES[index] = "Line " + index + (index % 7 == 0 ? ", long enough to be cut at the terminal's width" : SML.EMPTY);
+		}
+	}
+
+	private static int top(final int highlight) {
+		return Math.max(0, highlight - SMLRendererTest.CONTEXT);
+	}
+
+	/**
+	 * @return the screen @param highlight shows when drawn from scratch
+	 */
+	private static String[] redrawn(final int rows, final int columns, final int highlight) {
+		final VirtualTerminal terminal = new VirtualTerminal(rows, columns);
+		new SMLRenderer(terminal, true, rows, columns).viewport("Title", "Artist - Song", SMLRendererTest.LINES, highlight, SMLRendererTest.top(highlight));
+		return terminal.screen();
+	}
+
+	@Test
+	void updatesLookLikeFullRedraws() {
+		final VirtualTerminal terminal = new VirtualTerminal(SMLRendererTest.ROWS, SMLRendererTest.COLUMNS);
+		final SMLRenderer renderer = new SMLRenderer(terminal, true, SMLRendererTest.ROWS, SMLRendererTest.COLUMNS);
+		// Playing through, then seeking back a little, and far both ways
+		final int[] highlights = new int[SMLRendererTest.LINES.length + 4];
+		for (int index = 0; index < SMLRendererTest.LINES.length; index += 1) {
+			highlights[index] = index;
+		}
+		highlights[SMLRendererTest.LINES.length] = 55;
+		highlights[SMLRendererTest.LINES.length + 1] = 10;
+		highlights[SMLRendererTest.LINES.length + 2] = 40;
+		highlights[SMLRendererTest.LINES.length + 3] = -1;
+		for (final int highlight : highlights) {
+			renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, highlight, SMLRendererTest.top(highlight));
+			assertArrayEquals(SMLRendererTest.redrawn(SMLRendererTest.ROWS, SMLRendererTest.COLUMNS, highlight), terminal.screen(), "Highlighting line " + highlight);
+		}
+		assertEquals("Title", terminal.title);
+	}
+
+	@Test
+	void sendsOnlyWhatChanged() {
+		// A usual terminal's size
+		final VirtualTerminal terminal = new VirtualTerminal(40, 80);
+		final SMLRenderer renderer = new SMLRenderer(terminal, true, 40, 80);
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 20, SMLRendererTest.top(20));
+		final int full = terminal.bytes.size();
+		terminal.bytes.reset();
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 20, SMLRendererTest.top(20));
+		assertEquals(0, terminal.bytes.size(), "Nothing changed but something was sent");
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 21, SMLRendererTest.top(21));
+		final int scrolled = terminal.bytes.size();
+		// The scroll, the old highlight, the new one and the new last row
+		assertTrue(scrolled * 5 < full, String.format("A one-line scroll took %d bytes, a full redraw %d", scrolled, full));
+		assertFalse(terminal.bytes.toString(StandardCharsets.UTF_8).contains("\033]0;"), "The title was sent again");
+		// The update which sent nothing doesn't count
+		assertTrue(renderer.stats().startsWith("Renderer: 2 updates"), renderer.stats());
+	}
+
+	@Test
+	void redrawsEverythingAfterAResize() {
+		// The terminal is already taller and narrower than the renderer thinks
+		final VirtualTerminal terminal = new VirtualTerminal(SMLRendererTest.ROWS + 6, SMLRendererTest.COLUMNS - 10);
+		final SMLRenderer renderer = new SMLRenderer(terminal, true, SMLRendererTest.ROWS, SMLRendererTest.COLUMNS);
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 20, SMLRendererTest.top(20));
+		renderer.resize(SMLRendererTest.ROWS + 6, SMLRendererTest.COLUMNS - 10);
+		assertEquals(SMLRendererTest.ROWS + 6 - 3, renderer.viewportLines());
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 21, SMLRendererTest.top(21));
+		assertArrayEquals(SMLRendererTest.redrawn(SMLRendererTest.ROWS + 6, SMLRendererTest.COLUMNS - 10, 21), terminal.screen());
+	}
+
+	@Test
+	void writesPagesOnce() {
+		final VirtualTerminal terminal = new VirtualTerminal(SMLRendererTest.ROWS, SMLRendererTest.COLUMNS);
+		final SMLRenderer renderer = new SMLRenderer(terminal, true, SMLRendererTest.ROWS, SMLRendererTest.COLUMNS);
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 20, SMLRendererTest.top(20));
+		terminal.bytes.reset();
+		final String lyrics = "First line\nSecond line\nThird line";
+		assertTrue(renderer.page("Other", "Other artist - Other song", output -> {
+			try {
+				output.write(lyrics.getBytes(StandardCharsets.UTF_8));
+				return true;
+			} catch (final IOException ioException) {
+				return false;
+			}
+		}));
+		final String sent = terminal.bytes.toString(StandardCharsets.UTF_8);
+		assertEquals(sent.indexOf(lyrics), sent.lastIndexOf(lyrics));
+		final String[] screen = terminal.screen();
+		assertEquals("Other", terminal.title);
+		assertEquals("Other artist - Other song", screen[0]);
+		assertEquals("Third line", screen[4]);
+		// The page scrolled the screen, the next viewport starts over
+		renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, 21, SMLRendererTest.top(21));
+		assertArrayEquals(SMLRendererTest.redrawn(SMLRendererTest.ROWS, SMLRendererTest.COLUMNS, 21), terminal.screen());
+	}
+
+	@Test
+	void printsOneLinePerChangeWithoutANSI() {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final SMLRenderer renderer = new SMLRenderer(output, false, SMLRendererTest.ROWS, SMLRendererTest.COLUMNS);
+		for (final int highlight : new int[] { -1, 0, 0, 1, 1, 1, 2 }) {
+			renderer.viewport("Title", "Artist - Song", SMLRendererTest.LINES, highlight, SMLRendererTest.top(highlight));
+		}
+		assertEquals("> " + SMLRendererTest.LINES[0] + "\n> Line 1\n> Line 2\n", output.toString(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Just enough of a VT100 to play the renderer's output back: cursor moves,
+	 * line clears, scrolling regions and the title. Attributes are ignored.
+	 */
+	private static final class VirtualTerminal extends OutputStream {
+		private final int rows, columns;
+		private final char[][] cells;
+		// Everything written so far (reset at will)
+		private final ByteArrayOutputStream bytes;
+		// Written but not played back yet
+		private final ByteArrayOutputStream pending;
+		private int row, column, regionTop, regionBottom;
+		private String title;
+
+		private VirtualTerminal(final int rows, final int columns) {
+			this.rows = rows;
+			this.columns = columns;
+			this.cells = new char[rows][columns];
+			this.bytes = new ByteArrayOutputStream();
+			this.pending = new ByteArrayOutputStream();
+			this.clear();
+			this.regionTop = 0;
+			this.regionBottom = rows - 1;
+			this.title = null;
+		}
+
+		@Override
+		public void write(final int b) {
+			this.bytes.write(b);
+			this.pending.write(b);
+		}
+
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) {
+			this.bytes.write(bytes, offset, length);
+			this.pending.write(bytes, offset, length);
+		}
+
+		/**
+		 * @return the rows as they're shown, without trailing blanks
+		 */
+		private String[] screen() {
+			this.play();
+			final String[] screen = new String[this.rows];
+			for (int row = 0; row < this.rows; row += 1) {
+				screen[row] = new String(this.cells[row]).stripTrailing();
+			}
+			return screen;
+		}
+
+		private void clear() {
+			for (final char[] row : this.cells) {
+				Arrays.fill(row, ' ');
+			}
+		}
+
+		private void play() {
+			final String text = new String(this.pending.toByteArray(), Charset.defaultCharset());
+			this.pending.reset();
+			int index = 0;
+			while (index < text.length()) {
+				final char character = text.charAt(index);
+				if (character == '\033' && text.charAt(index + 1) == ']') {
+					final int bell = text.indexOf('\007', index);
+					this.title = text.substring(index + 4, bell);
+					index = bell + 1;
+				} else if (character == '\033') {
+					int end = index + 2;
+					while (!Character.isLetter(text.charAt(end))) {
+						end += 1;
+					}
+					this.control(text.substring(index + 2, end), text.charAt(end));
+					index = end + 1;
+				} else if (character == '\n') {
+					this.column = 0;
+					if (this.row == this.regionBottom) {
+						this.scroll(1);
+					} else if (this.row < this.rows - 1) {
+						this.row += 1;
+					}
+					index += 1;
+				} else {
+					if (this.column < this.columns) {
+						this.cells[this.row][this.column] = character;
+					}
+					this.column += 1;
+					index += 1;
+				}
+			}
+		}
+
+		private void control(final String parameters, final char command) {
+			final String[] values = parameters.isEmpty() ? new String[0] : parameters.split(";");
+			switch (command) {
+			case 'H':
+				this.row = values.length > 0 ? Integer.parseInt(values[0]) - 1 : 0;
+				this.column = values.length > 1 ? Integer.parseInt(values[1]) - 1 : 0;
+				break;
+			case 'J':
+				this.clear();
+				break;
+			case 'K':
+				for (int column = this.column; column < this.columns; column += 1) {
+					this.cells[this.row][column] = ' ';
+				}
+				break;
+			case 'r':
+				this.regionTop = values.length > 0 ? Integer.parseInt(values[0]) - 1 : 0;
+				this.regionBottom = values.length > 1 ? Integer.parseInt(values[1]) - 1 : this.rows - 1;
+				this.row = 0;
+				this.column = 0;
+				break;
+			case 'S':
+				this.scroll(Integer.parseInt(values[0]));
+				break;
+			case 'T':
+				this.scroll(-Integer.parseInt(values[0]));
+				break;
+			case 'm':
+				break;
+			default:
+				throw new IllegalStateException("Unexpected escape sequence " + parameters + command);
+			}
+		}
+
+		/**
+		 * Scrolls the region up by @param lines, or down if negative.
+		 */
+		private void scroll(final int lines) {
+			final int height = this.regionBottom - this.regionTop + 1;
+			final char[][] region = new char[height][];
+			for (int row = 0; row < height; row += 1) {
+				final int source = row + lines;
+				if ((source >= 0) && (source < height)) {
+					region[row] = this.cells[this.regionTop + source];
+				} else {
+					region[row] = new char[this.columns];
+					Arrays.fill(region[row], ' ');
+				}
+			}
+			System.arraycopy(region, 0, this.cells, this.regionTop, height);
+		}
+	}
+}
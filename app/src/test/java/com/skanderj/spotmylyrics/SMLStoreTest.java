@@ -0,0 +1,104 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The single-file lyrics store on a temporary directory: migrating the old
+ * cache/ layout, cutting off a torn record and rebuilding the index when the
+ * file is opened again.
+ *
+ * @author Skander J.
+ */
+class SMLStoreTest {
+	private static final String TAKE_ON_ME = "Take on me, take me on\nI'll be gone\n", BEAT_IT = "Just beat it, beat it\n";
+
+	@TempDir
+	Path directory;
+
+	private SMLStore store() {
+		return new SMLStore(this.directory.resolve("lyrics.sml").toFile());
+	}
+
+	/**
+	 * Writes @param lyrics where the one-file-per-song cache under @param cache
+	 * kept them.
+	 */
+	private static void cached(final Path cache, final String artist, final String track, final String lyrics) throws IOException {
+		final Path file = cache.resolve(SML.getInstance().getCacheKey(artist, track) + ".txt");
+		Files.createDirectories(file.getParent());
+		Files.write(file, lyrics.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void migratesTheCacheDirectory() throws IOException {
+		final Path cache = this.directory.resolve("cache");
+		SMLStoreTest.cached(cache, "a-ha", "Take On Me", SMLStoreTest.TAKE_ON_ME);
+		SMLStoreTest.cached(cache, "Michael Jackson", "Beat It", SMLStoreTest.BEAT_IT);
+		Files.write(cache.resolve("aliases.txt.bak"), List.of("Not lyrics"), StandardCharsets.UTF_8);
+		final SMLStore store = this.store();
+		assertEquals(2, store.migrate(cache.toFile()));
+		// Read as the cache read them
+		assertEquals(SMLStoreTest.TAKE_ON_ME.strip(), store.read("a-ha", "Take On Me"));
+		assertEquals(SMLStoreTest.BEAT_IT.strip(), store.read("Michael Jackson", "Beat It"));
+		assertEquals(2, store.items());
+		// Songs already in the store aren't migrated twice
+		assertEquals(0, store.migrate(cache.toFile()));
+		assertEquals(2, this.store().items());
+	}
+
+	@Test
+	void cutsOffATornRecord() throws IOException {
+		final SMLStore store = this.store();
+		assertTrue(store.save("a-ha", "Take On Me", SMLStoreTest.TAKE_ON_ME, false));
+		final Path file = this.directory.resolve("lyrics.sml");
+		final long complete = Files.size(file);
+		assertTrue(store.save("Michael Jackson", "Beat It", SMLStoreTest.BEAT_IT, false));
+		// A crash in the middle of the second record
+		try (final RandomAccessFile segment = new RandomAccessFile(file.toFile(), "rw")) {
+			segment.setLength(Files.size(file) - 3);
+		}
+		final SMLStore reopened = this.store();
+		assertEquals(complete, Files.size(file));
+		assertEquals(1, reopened.items());
+		assertEquals(SMLStoreTest.TAKE_ON_ME, reopened.read("a-ha", "Take On Me"));
+		assertFalse(reopened.contains("Michael Jackson", "Beat It"));
+		// And the next record goes right after the last complete one
+		assertTrue(reopened.save("Michael Jackson", "Beat It", SMLStoreTest.BEAT_IT, false));
+		assertEquals(SMLStoreTest.BEAT_IT, this.store().read("Michael Jackson", "Beat It"));
+	}
+
+	@Test
+	void rebuildsTheIndexWhenReopened() throws IOException {
+		final SMLStore store = this.store();
+		assertTrue(store.save("a-ha", "Take On Me", "Outdated\n", false));
+		assertTrue(store.save("Michael Jackson", "Beat It", SMLStoreTest.BEAT_IT, false));
+		assertFalse(store.save("a-ha", "Take On Me", SMLStoreTest.TAKE_ON_ME, false));
+		assertTrue(store.save("a-ha", "Take On Me", SMLStoreTest.TAKE_ON_ME, true));
+		final SMLStore reopened = this.store();
+		// The newest record shadows the old one
+		assertEquals(SMLStoreTest.TAKE_ON_ME, reopened.read("a-ha", "Take On Me"));
+		assertEquals(SMLStoreTest.BEAT_IT, reopened.read("Michael Jackson", "Beat It"));
+		assertNull(reopened.read("Glass Animals", "Heat Waves"));
+		assertEquals(2, reopened.items());
+		assertEquals(store.size(), reopened.size());
+		assertEquals(SMLStoreTest.TAKE_ON_ME.getBytes(StandardCharsets.UTF_8).length + SMLStoreTest.BEAT_IT.getBytes(StandardCharsets.UTF_8).length, reopened.size());
+		assertTrue(reopened.keys().contains(SML.getInstance().getCacheKey("Michael Jackson", "Beat It")));
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertTrue(reopened.transfer("a-ha", "Take On Me", output));
+		assertEquals(SMLStoreTest.TAKE_ON_ME, output.toString(StandardCharsets.UTF_8));
+	}
+}
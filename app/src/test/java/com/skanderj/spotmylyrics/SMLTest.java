@@ -0,0 +1,160 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Fetches of the same song sharing a single request: however many callers
+ * ask for it while it's in flight, and without the song staying in flight
+ * when starting the fetch fails. The cache and the songs without lyrics are
+ * kept in a temporary directory, and the previous cache, engine and misses
+ * are put back after each test.
+ *
+ * @author Skander J.
+ */
+class SMLTest {
+	private static final String ARTIST = "Sml Test", TITLE = "Take On Me";
+	private static final int CALLERS = 32;
+
+	@TempDir
+	Path directory;
+
+	private SMLFixtureServer server;
+	private SML sml;
+	private SMLLyricsEngine fixtures, engine;
+	// Holds the provider's answer back until every caller asked
+	private CountDownLatch answer;
+
+	@BeforeEach
+	void start() throws IOException {
+		this.server = new SMLFixtureServer();
+		this.sml = SML.getInstance();
+		this.answer = new CountDownLatch(1);
+		final byte[] page = SMLFixtureServer.fixture("azlyrics-take-on-me.html");
+		this.server.handle("/lyrics/", exchange -> {
+			try {
+				this.answer.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException interruptedException) {
+				return;
+			}
+			exchange.sendResponseHeaders(200, page.length);
+			try (final OutputStream output = exchange.getResponseBody()) {
+				output.write(page);
+			}
+		});
+		this.sml.useCache(new SMLFileCache(this.directory.resolve("cache").toFile()));
+		this.sml.useMisses(new SMLNegativeCache(this.directory.resolve("cache.misses").toFile(), SML.MISSES_TTL_MS));
+		this.fixtures = new SMLLyricsEngine(List.of(SMLPageProvider.parse(String.join("\t", "fixtures", this.server.url("/lyrics/%s/%s.html"), SML.TARGET_WARNING, "</div>"))));
+		this.engine = this.sml.useEngine(this.fixtures);
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.close();
+		this.sml.useEngine(this.engine);
+		this.sml.useCache(new SMLFileCache());
+		final SMLNegativeCache misses = new SMLNegativeCache(SML.MISSES, SML.MISSES_TTL_MS);
+		misses.load();
+		this.sml.useMisses(misses);
+	}
+
+	/**
+	 * @return the lyrics in the page served, as fetchLyrics gives them
+	 */
+	private static String lyrics() throws IOException {
+		return SML.getInstance().formatSource(SMLExtractor.extractLyrics(new ByteArrayInputStream(SMLFixtureServer.fixture("azlyrics-take-on-me.html")))).strip();
+	}
+
+	@Test
+	void sendsOneRequestForConcurrentCallers() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+		final List<CompletableFuture<String>> fetches = new ArrayList<>();
+		final CyclicBarrier barrier = new CyclicBarrier(SMLTest.CALLERS);
+		final List<Thread> callers = new ArrayList<>();
+		for (int caller = 0; caller < SMLTest.CALLERS; caller += 1) {
+			final CompletableFuture<String> fetch = new CompletableFuture<>();
+			fetches.add(fetch);
+			final Thread thread = new Thread(() -> {
+				try {
+					barrier.await(5, TimeUnit.SECONDS);
+					this.sml.fetchLyrics(SMLTest.ARTIST, SMLTest.TITLE).whenComplete((lyrics, throwable) -> {
+						if (throwable == null) {
+							fetch.complete(lyrics);
+						} else {
+							fetch.completeExceptionally(throwable);
+						}
+					});
+				} catch (final Exception exception) {
+					fetch.completeExceptionally(exception);
+				}
+			});
+			callers.add(thread);
+			thread.start();
+		}
+		for (final Thread thread : callers) {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		this.answer.countDown();
+		final String expected = SMLTest.lyrics();
+		for (final CompletableFuture<String> fetch : fetches) {
+			assertEquals(expected, fetch.get(SML.FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+		}
+		assertEquals(1, this.server.requests("/lyrics/"));
+		// Later callers find the lyrics cached
+		assertEquals(expected, this.sml.fetchLyrics(SMLTest.ARTIST, SMLTest.TITLE).get(0, TimeUnit.SECONDS));
+		assertEquals(1, this.server.requests("/lyrics/"));
+	}
+
+	@Test
+	void letsGoOfAFetchWhichCouldntStart() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+		final AtomicInteger calls = new AtomicInteger();
+		this.sml.useEngine(new SMLLyricsEngine(List.of(new SMLLyricsProvider() {
+			@Override
+			public String name() {
+				return "broken";
+			}
+
+			@Override
+			public String host(final String compliantArtist, final String compliantTitle) {
+				return "localhost";
+			}
+
+			@Override
+			public CompletableFuture<SMLFetchResult> fetch(final String compliantArtist, final String compliantTitle) {
+				calls.incrementAndGet();
+				throw new IllegalStateException("Broken provider");
+			}
+		})));
+		for (int attempt = 1; attempt <= 2; attempt += 1) {
+			final CompletableFuture<String> fetch = this.sml.fetchLyrics(SMLTest.ARTIST, SMLTest.TITLE);
+			final ExecutionException exception = assertThrows(ExecutionException.class, () -> fetch.get(1, TimeUnit.SECONDS));
+			assertTrue(exception.getCause() instanceof IllegalStateException, exception.toString());
+			// Not left in flight: the next caller tries again
+			assertEquals(attempt, calls.get());
+		}
+		// And the song can be fetched once the providers work
+		this.sml.useEngine(this.fixtures);
+		this.answer.countDown();
+		assertEquals(SMLTest.lyrics(), this.sml.fetchLyrics(SMLTest.ARTIST, SMLTest.TITLE).get(SML.FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+		assertEquals(1, this.server.requests("/lyrics/"));
+	}
+}
@@ -0,0 +1,150 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The --warm batch mode against a local provider serving saved pages, with the
+ * cache and the songs without lyrics kept in a temporary directory. The
+ * previous cache, engine and misses are put back after each test.
+ *
+ * @author Skander J.
+ */
+class SMLWarmerTest {
+	private static final String ARTIST = "Sml Test";
+
+	@TempDir
+	Path directory;
+
+	private SMLFixtureServer server;
+	private SML sml;
+	private SMLLyricsEngine engine;
+
+	@BeforeEach
+	void start() throws IOException {
+		this.server = new SMLFixtureServer();
+		this.sml = SML.getInstance();
+		this.server.serve(this.path("takeonme"), 200, SMLFixtureServer.fixture("azlyrics-take-on-me.html"));
+		this.server.serve(this.path("beatit"), 200, SMLFixtureServer.fixture("azlyrics-beat-it.html"));
+		this.server.serve(this.path("nerevienspas"), 200, SMLFixtureServer.fixture("azlyrics-ne-reviens-pas.html"));
+		this.server.serve(this.path("down"), 500, new byte[0]);
+		this.server.serve(this.path("gone"), 404, new byte[0]);
+		this.sml.useCache(new SMLFileCache(this.directory.resolve("cache").toFile()));
+		this.sml.useMisses(new SMLNegativeCache(this.directory.resolve("cache.misses").toFile(), SML.MISSES_TTL_MS));
+		this.engine = this.sml.useEngine(new SMLLyricsEngine(List.of(SMLPageProvider.parse(String.join("\t", "fixtures", this.server.url("/lyrics/%s/%s.html"), SML.TARGET_WARNING, "</div>")))));
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.close();
+		this.sml.useEngine(this.engine);
+		this.sml.useCache(new SMLFileCache());
+		final SMLNegativeCache misses = new SMLNegativeCache(SML.MISSES, SML.MISSES_TTL_MS);
+		misses.load();
+		this.sml.useMisses(misses);
+	}
+
+	/**
+	 * @return where the provider serves @param title by the test artist
+	 */
+	private String path(final String title) {
+		return String.format("/lyrics/%s/%s.html", SML.getInstance().formatArtist(SMLWarmerTest.ARTIST), title);
+	}
+
+	/**
+	 * @return a songs file listing @param titles by the test artist, and
+	 *         @param lines as they are
+	 */
+	private File songs(final List<String> titles, final String... lines) throws IOException {
+		final List<String> songs = new ArrayList<>();
+		for (final String title : titles) {
+			songs.add(SMLWarmerTest.ARTIST + ", " + title);
+		}
+		songs.addAll(List.of(lines));
+		final Path file = this.directory.resolve("songs.txt");
+		Files.write(file, songs, StandardCharsets.UTF_8);
+		return file.toFile();
+	}
+
+	/**
+	 * @return the report printed by @param warmer warming the cache with
+	 *         @param songs
+	 */
+	private static String warm(final SMLWarmer warmer, final File songs) {
+		final PrintStream out = System.out;
+		final ByteArrayOutputStream report = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(report, true, StandardCharsets.UTF_8));
+		try {
+			assertTrue(warmer.warm(songs));
+		} finally {
+			System.setOut(out);
+		}
+		return report.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void cachesEverySongOnce() throws IOException {
+		final String report = SMLWarmerTest.warm(new SMLWarmer(4, 0), this.songs(List.of("Take On Me", "Beat It", "take on me", "Ne Reviens Pas", "Down"), "Not a song", "A-ha, Take On Me"));
+		assertTrue(report.contains("\t0 already cached, 3 fetched, 2 failed, 2 skipped"), report);
+		for (final String title : new String[] { "takeonme", "beatit", "nerevienspas", "down" }) {
+			assertEquals(1, this.server.requests(this.path(title)), title);
+		}
+		assertTrue(this.sml.isCached(SMLWarmerTest.ARTIST, "Take On Me"));
+		assertTrue(this.sml.isCached(SMLWarmerTest.ARTIST, "Beat It"));
+		assertTrue(this.sml.isCached(SMLWarmerTest.ARTIST, "Ne Reviens Pas"));
+		assertFalse(this.sml.isCached(SMLWarmerTest.ARTIST, "Down"));
+		// The same lyrics as the tracked copy, saved in the temporary cache only
+		final SMLFileCache cache = new SMLFileCache(this.directory.resolve("cache").toFile());
+		assertEquals(new SMLFileCache().read("a-ha", "take on me"), cache.read(SMLWarmerTest.ARTIST, "Take On Me"));
+		assertFalse(new SMLFileCache().contains(SMLWarmerTest.ARTIST, "Take On Me"));
+	}
+
+	@Test
+	void resumesWhereItStopped() throws IOException {
+		SMLWarmerTest.warm(new SMLWarmer(4, 0), this.songs(List.of("Take On Me", "Down")));
+		final String report = SMLWarmerTest.warm(new SMLWarmer(4, 0), this.songs(List.of("Take On Me", "Down", "Beat It")));
+		assertTrue(report.contains("\t1 already cached, 1 fetched, 1 failed, 0 skipped"), report);
+		assertEquals(1, this.server.requests(this.path("takeonme")));
+		assertEquals(1, this.server.requests(this.path("beatit")));
+		// Failures are tried again
+		assertEquals(2, this.server.requests(this.path("down")));
+	}
+
+	@Test
+	void skipsSongsWithoutLyrics() throws IOException {
+		String report = SMLWarmerTest.warm(new SMLWarmer(4, 0), this.songs(List.of("Take On Me", "Gone")));
+		assertTrue(report.contains("\t0 already cached, 1 fetched, 1 failed, 0 skipped"), report);
+		report = SMLWarmerTest.warm(new SMLWarmer(4, 0), this.songs(List.of("Take On Me", "Gone")));
+		assertTrue(report.contains("\t1 already cached, 0 fetched, 0 failed, 1 skipped"), report);
+		assertEquals(1, this.server.requests(this.path("gone")));
+		assertTrue(Files.isRegularFile(this.directory.resolve("cache.misses")));
+	}
+
+	@Test
+	void spacesTheRequestsToAHost() throws IOException {
+		// The clock stands still, so each request waits for its whole slot
+		final List<Long> waits = Collections.synchronizedList(new ArrayList<>());
+		final SMLRateLimiter limiter = new SMLRateLimiter(200, () -> 0L, waits::add);
+		SMLWarmerTest.warm(new SMLWarmer(4, limiter), this.songs(List.of("Take On Me", "Beat It", "Ne Reviens Pas")));
+		Collections.sort(waits);
+		assertEquals(List.of(TimeUnit.MILLISECONDS.toNanos(200), TimeUnit.MILLISECONDS.toNanos(400)), waits);
+	}
+}
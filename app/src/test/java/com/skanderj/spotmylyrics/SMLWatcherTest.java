@@ -0,0 +1,119 @@
+package com.skanderj.spotmylyrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Track change events, pushed by scripts/fakespotify.py --watch: the lines
+ * must reach the right listeners, only changes must be printed, and a helper
+ * which keeps dying must make way for polling.
+ *
+ * @author Skander J.
+ */
+class SMLWatcherTest {
+	@TempDir
+	Path directory;
+
+	private SMLWatcher watcher;
+
+	@AfterEach
+	void stop() {
+		if (this.watcher != null) {
+			this.watcher.stop();
+		}
+	}
+
+	/**
+	 * Points the event mode at the fake helper playing @param songs, one every
+	 * 50 ms.
+	 */
+	private void script(final String... songs) throws IOException {
+		final Path file = this.directory.resolve("songs.txt");
+		Files.write(file, List.of(songs), StandardCharsets.UTF_8);
+		assertTrue(SMLSYS.enableTrackEvents("python3", "./scripts/fakespotify.py", file.toString(), "--watch", "--every-ms", "50"));
+	}
+
+	/**
+	 * Waits up to 5s for @param condition.
+	 */
+	private static void await(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "Timed out");
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	void dispatchesTheScriptedEvents() throws IOException, InterruptedException {
+		this.script("a-ha, Take On Me", "PAUSED", "Michael Jackson, Beat It");
+		final List<String> songs = new CopyOnWriteArrayList<>(), upcoming = new CopyOnWriteArrayList<>();
+		final List<Long> positions = new CopyOnWriteArrayList<>();
+		final CountDownLatch fallback = new CountDownLatch(1);
+		this.watcher = SMLSYS.watchSpotify(songs::add, upcoming::add, (position, playing) -> positions.add(playing ? position : -1), fallback::countDown);
+		SMLWatcherTest.await(() -> songs.size() >= 2);
+		// PAUSED isn't a song
+		assertEquals(List.of("a-ha, Take On Me", "Michael Jackson, Beat It"), songs.subList(0, 2));
+		assertEquals(List.of("PAUSED", "Michael Jackson, Beat It", "Michael Jackson, Beat It", "a-ha, Take On Me"), upcoming.subList(0, 4));
+		assertEquals(0L, positions.get(0));
+		assertEquals(1, fallback.getCount());
+	}
+
+	@Test
+	void printsOnlyTrackChanges() throws IOException, InterruptedException {
+		final SML sml = SML.getInstance();
+		sml.onSpotifyAnswer("Glass Animals, Heat Waves");
+		final long renders = sml.renders();
+		this.script("a-ha, Take On Me", "a-ha, Take On Me (feat. Nobody)", "a-ha, Take On Me", "Michael Jackson, Beat It");
+		this.watcher = SMLSYS.watchSpotify(sml::onSpotifyAnswer, sml::onUpcomingAnswer, sml::onPosition, () -> {
+			return;
+		});
+		SMLWatcherTest.await(() -> "Beat It".equals(sml.nowPlaying()[3]));
+		this.watcher.stop();
+		assertEquals(renders + 2, sml.renders());
+		// And without a watcher
+		sml.onSpotifyAnswer(null);
+		sml.onSpotifyAnswer("Michael Jackson, Beat It");
+		assertEquals(renders + 2, sml.renders());
+	}
+
+	@Test
+	void fallsBackToPollingWhenTheHelperKeepsDying() throws InterruptedException, IOException {
+		final Path starts = this.directory.resolve("starts");
+		final CountDownLatch fallback = new CountDownLatch(1);
+		this.watcher = new SMLWatcher(new String[] { "python3", "-c", "import sys; open(sys.argv[1], 'a').write('.')", starts.toString() }, line -> {
+			return;
+		}, fallback::countDown);
+		this.watcher.start();
+		assertTrue(fallback.await(5, TimeUnit.SECONDS));
+		assertFalse(this.watcher.isRunning());
+		assertEquals(SMLWatcher.MAX_RESTARTS + 1, Files.size(starts));
+	}
+
+	@Test
+	void restartsAHelperWhichSpeaks() throws InterruptedException {
+		// Each run says something before dying, which doesn't count as failing
+		final List<String> lines = new CopyOnWriteArrayList<>();
+		final CountDownLatch fallback = new CountDownLatch(1);
+		this.watcher = new SMLWatcher(new String[] { "python3", "-c", "print('a-ha, Take On Me')" }, lines::add, fallback::countDown);
+		this.watcher.start();
+		SMLWatcherTest.await(() -> lines.size() > (SMLWatcher.MAX_RESTARTS + 2));
+		assertTrue(this.watcher.isRunning());
+		assertEquals(1, fallback.getCount());
+	}
+}
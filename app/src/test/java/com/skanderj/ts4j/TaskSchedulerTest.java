@@ -0,0 +1,158 @@
+package com.skanderj.ts4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stress tests of the scheduler's registry: several threads scheduling and
+ * cancelling tasks under the same identifiers at once must leave neither
+ * tasks running unseen nor entries behind. Shutting the scheduler down stops
+ * everything, and the next task starts it again.
+ *
+ * @author Skander J.
+ */
+class TaskSchedulerTest {
+	private static final int THREADS = 8, OPERATIONS = 2_000, IDENTIFIERS = 32;
+
+	/**
+	 * @return a task counting its runs in @param runs
+	 */
+	private static Task task(final TimeValue initialDelay, final TimeValue period, final AtomicInteger runs) {
+		return new Task(initialDelay, period) {
+			@Override
+			public void execute() {
+				runs.incrementAndGet();
+			}
+
+			@Override
+			public TaskType type() {
+				return TaskType.FIXED_RATE;
+			}
+		};
+	}
+
+	/**
+	 * Runs @param operation on THREADS threads at once, each passing its index.
+	 */
+	private static void race(final Operation operation) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(TaskSchedulerTest.THREADS);
+		final List<Throwable> failures = new ArrayList<>();
+		for (int thread = 0; thread < TaskSchedulerTest.THREADS; thread += 1) {
+			final int index = thread;
+			new Thread(() -> {
+				try {
+					start.await();
+					operation.run(index);
+				} catch (final Throwable throwable) {
+					synchronized (failures) {
+						failures.add(throwable);
+					}
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(done.await(60, TimeUnit.SECONDS), "The threads didn't finish in time");
+		assertTrue(failures.isEmpty(), () -> "A thread failed: " + failures.get(0));
+	}
+
+	@Test
+	void concurrentSchedulesLeaveOneTaskPerIdentifier() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		TaskSchedulerTest.race(thread -> {
+			for (int operation = 0; operation < TaskSchedulerTest.OPERATIONS; operation += 1) {
+				final String identifier = "stress-" + ThreadLocalRandom.current().nextInt(TaskSchedulerTest.IDENTIFIERS);
+				if (ThreadLocalRandom.current().nextInt(4) == 0) {
+					TaskScheduler.cancelTask(identifier, false);
+				} else {
+					assertTrue(TaskScheduler.scheduleTask(identifier, TaskSchedulerTest.task(new TimeValue(1, TimeUnit.MILLISECONDS), new TimeValue(1, TimeUnit.MILLISECONDS), runs)));
+				}
+			}
+		});
+		for (int identifier = 0; identifier < TaskSchedulerTest.IDENTIFIERS; identifier += 1) {
+			TaskScheduler.cancelTask("stress-" + identifier, false);
+			assertEquals(-1, TaskScheduler.getRepeatsCounter("stress-" + identifier));
+		}
+		// A task replaced but never cancelled would keep running
+		Thread.sleep(50);
+		final int stopped = runs.get();
+		Thread.sleep(200);
+		assertEquals(stopped, runs.get(), "Tasks kept running after their identifiers were cancelled");
+	}
+
+	@Test
+	void finishedTasksLeaveTheRegistry() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		TaskSchedulerTest.race(thread -> {
+			for (int operation = 0; operation < TaskSchedulerTest.OPERATIONS; operation += 1) {
+				// Most run before scheduleTask has registered them
+				assertTrue(TaskScheduler.scheduleTask("oneshot-" + thread + "-" + operation, new Task(0, TimeUnit.MILLISECONDS) {
+					@Override
+					public void execute() {
+						runs.incrementAndGet();
+					}
+
+					@Override
+					public TaskType type() {
+						return TaskType.FIXED_DELAY;
+					}
+				}));
+			}
+		});
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while ((runs.get() < (TaskSchedulerTest.THREADS * TaskSchedulerTest.OPERATIONS)) && (System.nanoTime() < deadline)) {
+			Thread.sleep(10);
+		}
+		assertEquals(TaskSchedulerTest.THREADS * TaskSchedulerTest.OPERATIONS, runs.get());
+		Thread.sleep(50);
+		for (int thread = 0; thread < TaskSchedulerTest.THREADS; thread += 1) {
+			for (int operation = 0; operation < TaskSchedulerTest.OPERATIONS; operation += 1) {
+				assertEquals(-1, TaskScheduler.getRepeatsCounter("oneshot-" + thread + "-" + operation), "A finished task stayed registered");
+			}
+		}
+	}
+
+	@Test
+	void shutdownStopsEveryTask() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		final TimeValue millisecond = new TimeValue(1, TimeUnit.MILLISECONDS);
+		assertTrue(TaskScheduler.scheduleTask("shutdown", TaskSchedulerTest.task(millisecond, millisecond, runs)));
+		Thread.sleep(50);
+		TaskScheduler.shutdown();
+		assertEquals(-1, TaskScheduler.getRepeatsCounter("shutdown"));
+		Thread.sleep(50);
+		final int stopped = runs.get();
+		assertTrue(stopped > 0);
+		Thread.sleep(100);
+		assertEquals(stopped, runs.get(), "A task kept running after the shutdown");
+		// Back up with the next task
+		final CountDownLatch restarted = new CountDownLatch(1);
+		assertTrue(TaskScheduler.scheduleTask("restarted", new Task(0, TimeUnit.MILLISECONDS) {
+			@Override
+			public void execute() {
+				restarted.countDown();
+			}
+
+			@Override
+			public TaskType type() {
+				return TaskType.FIXED_DELAY;
+			}
+		}));
+		assertTrue(restarted.await(5, TimeUnit.SECONDS));
+	}
+
+	@FunctionalInterface
+	private interface Operation {
+		void run(int thread) throws Exception;
+	}
+}
@@ -0,0 +1,165 @@
+package com.skanderj.ts4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The timing wheel on its own: timers fire in deadline order, never early and
+ * at most a few ticks late, including those further away than a turn of the
+ * wheel, cancelled timers don't fire (nor keep their runnable) and a wheel
+ * shut down stops its threads.
+ *
+ * @author Skander J.
+ */
+class TimingWheelTest {
+	private static final long TICK_MS = 5;
+
+	private static final ThreadFactory DAEMONS = runnable -> {
+		final Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		return thread;
+	};
+
+	@Test
+	void firesInDeadlineOrder() throws InterruptedException {
+		// A single worker runs the timers in the order they expire; a wheel of 8
+		// buckets makes most timers wait for several rounds
+		final TimingWheel wheel = new TimingWheel(TimingWheelTest.TICK_MS, TimeUnit.MILLISECONDS, 8, 1, TimingWheelTest.DAEMONS);
+		final List<Integer> delays = new ArrayList<>();
+		for (int delay = 0; delay < 400; delay += 2 * TimingWheelTest.TICK_MS) {
+			delays.add(delay);
+		}
+		Collections.shuffle(delays, new Random(42));
+		final List<Integer> fired = Collections.synchronizedList(new ArrayList<>());
+		final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(delays.size());
+		final long start = System.nanoTime();
+		for (final int delay : delays) {
+			wheel.schedule(() -> {
+				final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				if (elapsedMs < delay) {
+					errors.add(String.format("%dms timer fired after %dms", delay, elapsedMs));
+				}
+				fired.add(delay);
+				done.countDown();
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS), "Not every timer fired");
+		assertTrue(errors.isEmpty(), () -> String.join(", ", errors));
+		final List<Integer> sorted = new ArrayList<>(delays);
+		Collections.sort(sorted);
+		assertEquals(sorted, fired);
+	}
+
+	@Test
+	void firesWithinAFewTicks() throws InterruptedException {
+		final TimingWheel wheel = new TimingWheel(TimingWheelTest.TICK_MS, TimeUnit.MILLISECONDS, 16, 1, TimingWheelTest.DAEMONS);
+		final CountDownLatch done = new CountDownLatch(1);
+		final long start = System.nanoTime();
+		final long[] elapsed = new long[1];
+		wheel.schedule(() -> {
+			elapsed[0] = System.nanoTime() - start;
+			done.countDown();
+		}, 300, TimeUnit.MILLISECONDS);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsed[0]);
+		assertTrue((elapsedMs >= 300) && (elapsedMs < (300 + (20 * TimingWheelTest.TICK_MS))), "Fired after " + elapsedMs + "ms");
+	}
+
+	@Test
+	void cancelledTimersDontFire() throws InterruptedException {
+		final TimingWheel wheel = new TimingWheel(TimingWheelTest.TICK_MS, TimeUnit.MILLISECONDS, 8, 1, TimingWheelTest.DAEMONS);
+		final AtomicInteger fired = new AtomicInteger();
+		final List<TaskEngine.Handle> handles = new ArrayList<>();
+		for (int delay = 0; delay < 100; delay += 1) {
+			handles.add(wheel.schedule(fired::incrementAndGet, 50 + delay, TimeUnit.MILLISECONDS));
+		}
+		final CountDownLatch last = new CountDownLatch(1);
+		wheel.schedule(last::countDown, 250, TimeUnit.MILLISECONDS);
+		for (int index = 0; index < handles.size(); index += 2) {
+			assertTrue(handles.get(index).cancel(false));
+			assertFalse(handles.get(index).cancel(false), "Cancelled twice");
+		}
+		assertTrue(last.await(5, TimeUnit.SECONDS));
+		assertEquals(handles.size() / 2, fired.get());
+	}
+
+	@Test
+	void repeatsUntilCancelled() throws InterruptedException {
+		final TimingWheel wheel = new TimingWheel(TimingWheelTest.TICK_MS, TimeUnit.MILLISECONDS, 8, 1, TimingWheelTest.DAEMONS);
+		final AtomicInteger fixedRate = new AtomicInteger(), fixedDelay = new AtomicInteger();
+		final TaskEngine.Handle rate = wheel.scheduleAtFixedRate(fixedRate::incrementAndGet, 0, 20, TimeUnit.MILLISECONDS);
+		final TaskEngine.Handle delay = wheel.scheduleWithFixedDelay(fixedDelay::incrementAndGet, 0, 20, TimeUnit.MILLISECONDS);
+		Thread.sleep(500);
+		rate.cancel(false);
+		delay.cancel(false);
+		// Runs already started when they were cancelled
+		Thread.sleep(20);
+		final int rateRuns = fixedRate.get(), delayRuns = fixedDelay.get();
+		// About 25 each, give or take a tick per run for the fixed delay one
+		assertTrue((rateRuns >= 20) && (rateRuns <= 27), "Fixed rate ran " + rateRuns + " times");
+		assertTrue((delayRuns >= 15) && (delayRuns <= 27), "Fixed delay ran " + delayRuns + " times");
+		Thread.sleep(100);
+		assertEquals(rateRuns, fixedRate.get());
+		assertEquals(delayRuns, fixedDelay.get());
+	}
+
+	@Test
+	void letsGoOfTimersCancelledBeforeTheirTick() throws InterruptedException {
+		// The ticker won't pick anything up for an hour
+		final TimingWheel wheel = new TimingWheel(1, TimeUnit.HOURS, 8, 1, TimingWheelTest.DAEMONS);
+		final AtomicInteger fired = new AtomicInteger();
+		// Capturing, so that it's an instance of its own
+		Runnable runnable = fired::incrementAndGet;
+		final WeakReference<Runnable> reference = new WeakReference<>(runnable);
+		final TaskEngine.Handle handle = wheel.schedule(runnable, 1, TimeUnit.MINUTES);
+		runnable = null;
+		assertTrue(handle.cancel(false));
+		assertFalse(handle.cancel(false), "Cancelled twice");
+		for (int attempt = 0; (attempt < 50) && (reference.get() != null); attempt += 1) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get(), "A cancelled timer kept its runnable");
+		assertEquals(0, fired.get());
+		wheel.shutdown();
+	}
+
+	@Test
+	void shutdownStopsTheThreads() throws InterruptedException {
+		final List<Thread> threads = new CopyOnWriteArrayList<>();
+		final TimingWheel wheel = new TimingWheel(TimingWheelTest.TICK_MS, TimeUnit.MILLISECONDS, 8, 1, runnable -> {
+			final Thread thread = TimingWheelTest.DAEMONS.newThread(runnable);
+			threads.add(thread);
+			return thread;
+		});
+		final CountDownLatch first = new CountDownLatch(1);
+		wheel.schedule(first::countDown, 0, TimeUnit.MILLISECONDS);
+		assertTrue(first.await(5, TimeUnit.SECONDS));
+		final AtomicInteger fired = new AtomicInteger();
+		wheel.schedule(fired::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+		wheel.shutdown();
+		for (final Thread thread : threads) {
+			thread.join(5_000);
+			assertFalse(thread.isAlive(), thread.getName() + " is still running");
+		}
+		assertEquals(2, threads.size());
+		Thread.sleep(100);
+		assertEquals(0, fired.get());
+	}
+}
@@ -0,0 +1,89 @@
+"""
+Compares a JMH run of the benchmarks with the checked-in baseline.
+
+    python benchmarks/compare.py <result.json> [baseline.json] [--threshold P]
+
+both files being written by -prof gc -rf json. For every benchmark found in
+both, prints the throughput and allocated bytes per operation before and
+after. A benchmark regressed if its throughput dropped by more than --threshold
+percent (default 10) beyond the error margins of both runs, or if it allocates
+more than --threshold percent more per operation (allocations barely vary from
+run to run, so no margin is given). Benchmarks counting their correct answers
+(e.g. fuzzyFind) also print their recall, and regressed if it dropped at all.
+Exits with 1 if any benchmark regressed.
+"""
+
+import json
+import os
+import sys
+
+def option(name, default, kind=int):
+    if name in sys.argv:
+        index = sys.argv.index(name)
+        value = sys.argv.pop(index + 1)
+        sys.argv.pop(index)
+        return kind(value)
+    return default
+
+THRESHOLD = option("--threshold", 10.0, float) / 100
+
+def load(path):
+    results = {}
+    with open(path, encoding="utf-8") as file:
+        for result in json.load(file):
+            name = result["benchmark"].rsplit(".", 2)
+            params = ",".join("%s=%s" % item for item in sorted(result.get("params", {}).items()))
+            key = name[-2] + "." + name[-1] + ("(" + params + ")" if params else "")
+            primary = result["primaryMetric"]
+            secondary = result["secondaryMetrics"]
+            allocation = secondary.get("gc.alloc.rate.norm")
+            recall = None
+            if "correct" in secondary and secondary.get("lookups", {}).get("score"):
+                recall = secondary["correct"]["score"] / secondary["lookups"]["score"]
+            results[key] = (primary["score"], primary["scoreError"], primary["scoreUnit"], None if allocation is None else allocation["score"], recall)
+    return results
+
+def error(margin):
+    # JMH reports NaN (as a string) when there are too few iterations
+    margin = float(margin)
+    return 0.0 if margin != margin else margin
+
+def main():
+    if len(sys.argv) < 2:
+        print(__doc__.strip())
+        return 2
+    baseline_path = sys.argv[2] if len(sys.argv) > 2 else os.path.join(os.path.dirname(os.path.abspath(__file__)), "baseline.json")
+    before, after = load(baseline_path), load(sys.argv[1])
+    regressions = 0
+    print("%-58s %14s %14s %8s %12s %12s %8s" % ("Benchmark", "Before", "After", "Change", "B/op before", "B/op after", "Change"))
+    for key in sorted(before.keys() & after.keys()):
+        old_score, old_error, _, old_allocation, old_recall = before[key]
+        new_score, new_error, _, new_allocation, new_recall = after[key]
+        change = (new_score - old_score) / old_score
+        flags = []
+        if (old_score - error(old_error)) * (1 - THRESHOLD) > new_score + error(new_error):
+            flags.append("slower")
+        allocation_change = ""
+        if old_allocation is not None and new_allocation is not None:
+            if old_allocation > 1:
+                allocation_change = "%+7.1f%%" % (100 * (new_allocation - old_allocation) / old_allocation)
+            if new_allocation > max(old_allocation, 1) * (1 + THRESHOLD):
+                flags.append("allocates more")
+        recall_change = None
+        if old_recall is not None and new_recall is not None:
+            recall_change = "%-58s %13.1f%% %13.1f%% %+7.1f pt" % ("  recall", 100 * old_recall, 100 * new_recall, 100 * (new_recall - old_recall))
+            # Lookups are deterministic, the recall shouldn't move
+            if new_recall < old_recall - 0.0005:
+                flags.append("lower recall")
+        print("%-58s %14.1f %14.1f %+7.1f%% %12.1f %12.1f %8s %s" % (key, old_score, new_score, 100 * change, old_allocation or 0, new_allocation or 0, allocation_change, ", ".join(flags)))
+        if recall_change is not None:
+            print(recall_change)
+        if flags:
+            regressions += 1
+    for key in sorted(before.keys() - after.keys()):
+        print("%-58s not in %s" % (key, sys.argv[1]))
+    print("%d of %d benchmarks regressed" % (regressions, len(before.keys() & after.keys())))
+    return 1 if regressions else 0
+
+if __name__ == "__main__":
+    sys.exit(main())
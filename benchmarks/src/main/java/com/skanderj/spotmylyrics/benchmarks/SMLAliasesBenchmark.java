@@ -0,0 +1,72 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.spotmylyrics.SMLAliases;
+
+/**
+ * Replacing aliases in the watcher's answers, with as many aliases as a big
+ * aliases.txt could hold. The aliases are made up (alias0000:Replacement0000...)
+ * so that most answers contain none, like in practice, and every 8th answer
+ * is given one.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLAliasesBenchmark {
+	@Param({ "10000" })
+	public int aliases;
+
+	private SMLAliases compiled;
+	private Map<String, String> map;
+	private String[] answers;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.map = new HashMap<>();
+		for (int index = 0; index < this.aliases; index += 1) {
+			this.map.put(String.format("Alias%05d", index), String.format("Replacement%05d", index));
+		}
+		this.compiled = SMLAliases.compile(this.map);
+		final List<String> keys = SMLFixtures.keys();
+		this.answers = new String[keys.size()];
+		for (int index = 0; index < keys.size(); index += 1) {
+			final String answer = SMLFixtures.answer(keys.get(index));
+			this.answers[index] = (index % 8) == 0 ? answer + String.format(" Alias%05d", (index * 7919) % this.aliases) : answer;
+		}
+		this.next = 0;
+	}
+
+	@Benchmark
+	public String apply() {
+		this.next = (this.next + 1) % this.answers.length;
+		return this.compiled.apply(this.answers[this.next]);
+	}
+
+	@Benchmark
+	public SMLAliases compile() {
+		return SMLAliases.compile(this.map);
+	}
+}
@@ -0,0 +1,93 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.spotmylyrics.SML;
+import com.skanderj.spotmylyrics.SMLFileCache;
+import com.skanderj.spotmylyrics.SMLIO;
+import com.skanderj.spotmylyrics.SMLMemoryCache;
+import com.skanderj.spotmylyrics.SMLRenderer;
+
+/**
+ * Cache hits: reading a song's local copy from disk (getLocalCopy then
+ * readWhole, which the OS page cache keeps warm) and from the in-heap tier,
+ * either decoded into a String or handed as bytes to a stream (transferWhole,
+ * what printing the lyrics does), here a buffer standing for the terminal.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLCacheBenchmark {
+	private SML sml;
+	private SMLMemoryCache memory;
+	private String[][] songs;
+	private ByteArrayOutputStream terminal;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.sml = SML.getInstance();
+		this.memory = new SMLMemoryCache(new SMLFileCache(), SML.MEMORY_CACHE_BYTES);
+		final List<String> keys = SMLFixtures.keys();
+		this.songs = new String[keys.size()][];
+		for (int index = 0; index < keys.size(); index += 1) {
+			this.songs[index] = SMLFixtures.song(keys.get(index));
+			// Fills the tier
+			this.memory.read(this.songs[index][0], this.songs[index][1]);
+		}
+		this.terminal = new ByteArrayOutputStream(SMLRenderer.FRAME_BUFFER_BYTES);
+		this.next = 0;
+	}
+
+	private String[] next() {
+		this.next = (this.next + 1) % this.songs.length;
+		return this.songs[this.next];
+	}
+
+	@Benchmark
+	public String readLocalCopy() {
+		final String[] song = this.next();
+		return SMLIO.readWhole(this.sml.getLocalCopy(song[0], song[1]));
+	}
+
+	@Benchmark
+	public String readMemoryCache() {
+		final String[] song = this.next();
+		return this.memory.read(song[0], song[1]);
+	}
+
+	@Benchmark
+	public int transferLocalCopy() {
+		final String[] song = this.next();
+		this.terminal.reset();
+		SMLIO.transferWhole(this.sml.getLocalCopy(song[0], song[1]), this.terminal);
+		return this.terminal.size();
+	}
+
+	@Benchmark
+	public int transferMemoryCache() {
+		final String[] song = this.next();
+		this.terminal.reset();
+		this.memory.transfer(song[0], song[1], this.terminal);
+		return this.terminal.size();
+	}
+}
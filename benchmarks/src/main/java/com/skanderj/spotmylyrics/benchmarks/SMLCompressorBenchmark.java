@@ -0,0 +1,70 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.spotmylyrics.SML;
+import com.skanderj.spotmylyrics.SMLCompressor;
+
+/**
+ * Compressed cache entries: saving one (compress) and reading one back
+ * (decompress), with a dictionary trained on the cached lyrics.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLCompressorBenchmark {
+	private SMLCompressor compressor;
+	private String[] lyrics;
+	private byte[][] entries;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		final List<String> samples = new ArrayList<>();
+		for (final String key : SMLFixtures.keys()) {
+			samples.add(SMLFixtures.lyrics(key));
+		}
+		this.compressor = SMLCompressor.train(samples, SML.DICTIONARY_BYTES);
+		this.lyrics = samples.toArray(new String[0]);
+		this.entries = new byte[this.lyrics.length][];
+		for (int index = 0; index < this.lyrics.length; index += 1) {
+			this.entries[index] = this.compressor.compress(this.lyrics[index]);
+		}
+		this.next = 0;
+	}
+
+	private int next() {
+		this.next = (this.next + 1) % this.lyrics.length;
+		return this.next;
+	}
+
+	@Benchmark
+	public byte[] compress() {
+		return this.compressor.compress(this.lyrics[this.next()]);
+	}
+
+	@Benchmark
+	public String decompress() {
+		final byte[] entry = this.entries[this.next()];
+		return this.compressor.decompress(entry, entry.length);
+	}
+}
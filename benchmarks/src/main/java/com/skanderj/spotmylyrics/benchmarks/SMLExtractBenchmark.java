@@ -0,0 +1,87 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.spotmylyrics.SML;
+import com.skanderj.spotmylyrics.SMLExtractor;
+
+/**
+ * Getting the lyrics out of an AZLyrics page, both ways the application does
+ * it: from the whole source joined in a String (fetchSource, with and without
+ * reading the page) and from the page's bytes as they're read (fetchLyrics),
+ * each followed by formatSource.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLExtractBenchmark {
+	private SML sml;
+	// Sources as fetchSource returns them (lines joined), and raw pages
+	private String[] sources;
+	private byte[][] pages;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.sml = SML.getInstance();
+		final List<String> keys = SMLFixtures.keys();
+		this.sources = new String[keys.size()];
+		this.pages = new byte[keys.size()][];
+		for (int index = 0; index < keys.size(); index += 1) {
+			final String page = SMLFixtures.page(keys.get(index));
+			this.sources[index] = page.replace("\n", "").strip();
+			this.pages[index] = page.getBytes(StandardCharsets.UTF_8);
+		}
+		this.next = 0;
+	}
+
+	private int next() {
+		this.next = (this.next + 1) % this.sources.length;
+		return this.next;
+	}
+
+	@Benchmark
+	public String extractFromSource() {
+		return this.sml.formatSource(this.sml.extractLyrics(this.sources[this.next()]));
+	}
+
+	@Benchmark
+	public String extractFromReader() throws IOException {
+		// Same as fetchSource
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.pages[this.next()]), StandardCharsets.UTF_8));
+		final StringBuilder source = new StringBuilder();
+		String currentLine = null;
+		while ((currentLine = reader.readLine()) != null) {
+			source.append(currentLine);
+		}
+		return this.sml.formatSource(this.sml.extractLyrics(source.toString().strip()));
+	}
+
+	@Benchmark
+	public String extractFromStream() throws IOException {
+		return this.sml.formatSource(SMLExtractor.extractLyrics(new ByteArrayInputStream(this.pages[this.next()])));
+	}
+}
@@ -0,0 +1,123 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.skanderj.spotmylyrics.SML;
+import com.skanderj.spotmylyrics.SMLFileCache;
+import com.skanderj.spotmylyrics.SMLIO;
+
+/**
+ * Inputs shared by the benchmarks, all derived from the songs in the cache so
+ * that they're measured on the same lyrics the application reads. The
+ * benchmarks must run from the repository root, next to cache/, under a UTF-8
+ * locale.
+ *
+ * @author Skander J.
+ */
+final class SMLFixtures {
+	// Stands for the song in the page template
+	private static final String ARTIST = "{{ARTIST}}", TITLE = "{{TITLE}}", LYRICS = "{{LYRICS}}";
+
+	private SMLFixtures() {
+		return;
+	}
+
+	/**
+	 * @return the keys of the cached songs, sorted so that every run sees them
+	 *         in the same order
+	 */
+	static List<String> keys() {
+		final List<String> keys = new ArrayList<>(new SMLFileCache().keys());
+		if (keys.isEmpty()) {
+			throw new IllegalStateException("Run the benchmarks from the repository root, next to cache/");
+		}
+		Collections.sort(keys);
+		return keys;
+	}
+
+	/**
+	 * @return the (artist, track) pair that's cached under @param key, e.g.
+	 *         { "arctic monkeys", "do i wanna know" }
+	 */
+	static String[] song(final String key) {
+		final int slash = key.indexOf('/');
+		return new String[] { key.substring(0, slash).replace('_', ' '), key.substring(slash + 1).replace('_', ' ') };
+	}
+
+	/**
+	 * @return the song cached under @param key as the watcher script would
+	 *         print it, e.g. "Arctic Monkeys, Do I Wanna Know"
+	 */
+	static String answer(final String key) {
+		final String[] song = SMLFixtures.song(key);
+		return SMLFixtures.capitalize(song[0]) + ", " + SMLFixtures.capitalize(song[1]);
+	}
+
+	/**
+	 * @return the lyrics cached under @param key
+	 */
+	static String lyrics(final String key) {
+		final String[] song = SMLFixtures.song(key);
+		final String lyrics = SMLIO.readWhole(SML.getInstance().getLocalCopy(song[0], song[1]));
+		if (lyrics == null) {
+			// Non-ASCII file names come back mangled under the POSIX locale
+			throw new IllegalStateException("Couldn't read " + new File(SML.CACHE, key + ".txt").getPath() + ", run the benchmarks under a UTF-8 locale (e.g. LANG=C.UTF-8)");
+		}
+		return lyrics;
+	}
+
+	/**
+	 * Rebuilds the AZLyrics page of a cached song: its lyrics are encoded the
+	 * way AZLyrics serves them and put in a copy of their page layout.
+	 *
+	 * @return the page's source, as sent by the server (with line breaks)
+	 */
+	static String page(final String key) {
+		final String[] song = SMLFixtures.song(key);
+		final String artist = SMLFixtures.capitalize(song[0]), title = SMLFixtures.capitalize(song[1]);
+		return SMLFixtures.template().replace(SMLFixtures.ARTIST, artist).replace(SMLFixtures.TITLE, title).replace(SMLFixtures.LYRICS, SMLFixtures.encode(SMLFixtures.lyrics(key)));
+	}
+
+	/**
+	 * Encodes lyrics like AZLyrics does: & and " are escaped, every line ends
+	 * with <br> and a new line, and lines between brackets are in italics.
+	 */
+	private static String encode(final String lyrics) {
+		final StringBuilder builder = new StringBuilder(lyrics.length() + (lyrics.length() / 4));
+		for (final String line : lyrics.strip().split("\n", -1)) {
+			final String escaped = line.replace("&", "&amp;").replace("\"", "&quot;");
+			if (escaped.startsWith("[") && escaped.endsWith("]")) {
+				builder.append("<i>").append(escaped).append("</i>");
+			} else {
+				builder.append(escaped);
+			}
+			builder.append("<br>\n");
+		}
+		return builder.toString();
+	}
+
+	private static String template() {
+		try (final InputStream input = SMLFixtures.class.getResourceAsStream("/azlyrics-page.html")) {
+			return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (final IOException ioException) {
+			throw new IllegalStateException("Couldn't read the page template: " + ioException.getMessage());
+		}
+	}
+
+	private static String capitalize(final String words) {
+		final StringBuilder builder = new StringBuilder(words.length());
+		boolean start = true;
+		for (int index = 0; index < words.length(); index += 1) {
+			final char character = words.charAt(index);
+			builder.append(start ? Character.toUpperCase(character) : character);
+			start = character == ' ';
+		}
+		return builder.toString();
+	}
+}
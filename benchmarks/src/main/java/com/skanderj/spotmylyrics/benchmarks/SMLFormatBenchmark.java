@@ -0,0 +1,74 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.spotmylyrics.SML;
+
+/**
+ * Turning the watcher's answer into the names used in URLs, which runs on
+ * every song change. Each invocation formats the next cached song, with the
+ * aliases from aliases.txt loaded.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLFormatBenchmark {
+	private SML sml;
+	private String[] answers, artists, titles;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.sml = SML.getInstance();
+		this.sml.loadAliases();
+		final List<String> keys = SMLFixtures.keys();
+		this.answers = new String[keys.size()];
+		this.artists = new String[keys.size()];
+		this.titles = new String[keys.size()];
+		for (int index = 0; index < keys.size(); index += 1) {
+			this.answers[index] = SMLFixtures.answer(keys.get(index));
+			final String[] spotifyAnswer = this.sml.formatAnswer(this.answers[index]);
+			this.artists[index] = spotifyAnswer[2];
+			this.titles[index] = spotifyAnswer[3];
+		}
+		this.next = 0;
+	}
+
+	private int next() {
+		this.next = (this.next + 1) % this.answers.length;
+		return this.next;
+	}
+
+	@Benchmark
+	public String[] formatAnswer() {
+		return this.sml.formatAnswer(this.answers[this.next()]);
+	}
+
+	@Benchmark
+	public String formatArtist() {
+		return this.sml.formatArtist(this.artists[this.next()]);
+	}
+
+	@Benchmark
+	public String formatTitle() {
+		return this.sml.formatTitle(this.titles[this.next()]);
+	}
+}
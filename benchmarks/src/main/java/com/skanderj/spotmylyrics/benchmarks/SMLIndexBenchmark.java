@@ -0,0 +1,125 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.spotmylyrics.SML;
+import com.skanderj.spotmylyrics.SMLFuzzyIndex;
+import com.skanderj.spotmylyrics.SMLNormalizer;
+import com.skanderj.spotmylyrics.SMLSearchIndex;
+
+/**
+ * Looking songs up in the cache's indexes: the fuzzy index with a misspelled
+ * key, and the search index with a word, a phrase and a prefix. Both indexes
+ * hold the cached songs plus made-up ones (random words from the cached
+ * lyrics, with a fixed seed) so that they're the size of a big library.
+ * fuzzyFind also counts the lookups which found the right song, so that the
+ * fuzzy index's recall (correct / lookups) can be followed along with its
+ * speed.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLIndexBenchmark {
+	@Param({ "10000", "100000" })
+	public int songs;
+
+	private SMLFuzzyIndex fuzzyIndex;
+	private SMLSearchIndex searchIndex;
+	// Cached keys, and the same keys with a letter dropped from their title
+	private String[] keys, misspelled;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		final List<String> keys = SMLFixtures.keys();
+		final List<String> words = new ArrayList<>();
+		final List<String> lyrics = new ArrayList<>();
+		this.fuzzyIndex = new SMLFuzzyIndex(SML.FUZZY_THRESHOLD);
+		this.searchIndex = new SMLSearchIndex();
+		for (final String key : keys) {
+			final String song = SMLFixtures.lyrics(key);
+			lyrics.add(song);
+			words.addAll(SMLNormalizer.words(song));
+			this.fuzzyIndex.add(key);
+			this.searchIndex.add(key, song);
+		}
+		final Random random = new Random(42);
+		for (int index = keys.size(); index < this.songs; index += 1) {
+			final String key = String.format("%s_%s/%s_%s_%d", words.get(random.nextInt(words.size())), words.get(random.nextInt(words.size())), words.get(random.nextInt(words.size())), words.get(random.nextInt(words.size())), index);
+			this.fuzzyIndex.add(key);
+			this.searchIndex.add(key, lyrics.get(random.nextInt(lyrics.size())));
+		}
+		this.keys = keys.toArray(new String[0]);
+		this.misspelled = new String[keys.size()];
+		for (int index = 0; index < keys.size(); index += 1) {
+			final String key = keys.get(index);
+			final int dropped = key.indexOf('/') + 2;
+			this.misspelled[index] = dropped < key.length() ? key.substring(0, dropped) + key.substring(dropped + 1) : key + "s";
+		}
+		this.next = 0;
+	}
+
+	/**
+	 * How many fuzzy lookups were made and how many found the song that was
+	 * misspelled, reported next to fuzzyFind's throughput.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Recall {
+		public long lookups, correct;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.lookups = 0;
+			this.correct = 0;
+		}
+	}
+
+	@Benchmark
+	public String fuzzyFind(final Recall recall) {
+		this.next = (this.next + 1) % this.misspelled.length;
+		final String found = this.fuzzyIndex.find(this.misspelled[this.next]);
+		recall.lookups += 1;
+		if (this.keys[this.next].equals(found)) {
+			recall.correct += 1;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public List<String> searchWord() {
+		return this.searchIndex.search("love");
+	}
+
+	@Benchmark
+	public List<String> searchPhrase() {
+		return this.searchIndex.search("\"take on me\"");
+	}
+
+	@Benchmark
+	public List<String> searchPrefix() {
+		return this.searchIndex.search("danc*");
+	}
+}
@@ -0,0 +1,106 @@
+package com.skanderj.spotmylyrics.benchmarks;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skanderj.ts4j.Task;
+import com.skanderj.ts4j.TaskScheduler;
+import com.skanderj.ts4j.TaskType;
+import com.skanderj.ts4j.TimeValue;
+
+/**
+ * TS4J's own overhead, on both engines: scheduling and cancelling a task
+ * (what the prefetcher and the watcher do on every song change), replacing a
+ * task scheduled under the same identifier, and the bookkeeping wrapped
+ * around every run, with up to a million other tasks pending (per-track
+ * timers, retries, expiries...) to show how each engine scales. The tasks are
+ * scheduled far enough ahead never to run, the measured ones in the middle of
+ * the pending ones so that the executor's queue has to sort them in. The engine is global, so each
+ * engine gets its own fork.
+ *
+ * @author Skander J.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SMLSchedulerBenchmark {
+	private static final String IDENTIFIER = "SMLSchedulerBenchmark";
+
+	@Param({ "executor", "wheel" })
+	public String engine;
+
+	// Tasks scheduled before the measurement, due within the next hour
+	@Param({ "10000", "100000", "1000000" })
+	public int pending;
+
+	private Runnable run;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		if (this.engine.equals("wheel")) {
+			TaskScheduler.useTimingWheel(10, TimeUnit.MILLISECONDS, 512, 1, Executors.defaultThreadFactory());
+		} else {
+			TaskScheduler.configure(1, Executors.defaultThreadFactory());
+		}
+		for (int index = 0; index < this.pending; index += 1) {
+			TaskScheduler.scheduleTask(SMLSchedulerBenchmark.IDENTIFIER + index, SMLSchedulerBenchmark.task(new TimeValue(60 + (index % 3540), TimeUnit.SECONDS)));
+		}
+		this.run = SMLSchedulerBenchmark.task(new TimeValue(1, TimeUnit.SECONDS)).asRunnable();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		TaskScheduler.cancelTask(SMLSchedulerBenchmark.IDENTIFIER, false);
+		for (int index = 0; index < this.pending; index += 1) {
+			TaskScheduler.cancelTask(SMLSchedulerBenchmark.IDENTIFIER + index, false);
+		}
+		TaskScheduler.shutdown();
+	}
+
+	private static Task task(final TimeValue delay) {
+		return new Task(delay) {
+			@Override
+			public void execute() {
+				return;
+			}
+
+			@Override
+			public TaskType type() {
+				return TaskType.FIXED_RATE;
+			}
+		};
+	}
+
+	@Benchmark
+	public boolean scheduleAndCancel() {
+		TaskScheduler.scheduleTask(SMLSchedulerBenchmark.IDENTIFIER, SMLSchedulerBenchmark.task(new TimeValue(30, TimeUnit.MINUTES)));
+		return TaskScheduler.cancelTask(SMLSchedulerBenchmark.IDENTIFIER, false);
+	}
+
+	@Benchmark
+	public boolean reschedule() {
+		return TaskScheduler.scheduleTask(SMLSchedulerBenchmark.IDENTIFIER, SMLSchedulerBenchmark.task(new TimeValue(30, TimeUnit.MINUTES)));
+	}
+
+	@Benchmark
+	public void run() {
+		this.run.run();
+	}
+}
@@ -0,0 +1,140 @@
+import java.io.File;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test for the --serve mode: a few clients ask for the lyrics to cached
+ * songs as fast as they can (each one waits for its answer before sending the
+ * next request), then the throughput and latency percentiles are reported.
+ * The songs are the ones in the cache folder, so every request should be a
+ * cache hit.
+ *
+ *     java scripts/LoadTest.java [--url http://localhost:8080] [--cache ./cache]
+ *         [--clients 32] [--seconds 10] [--warmup 2]
+ *
+ * @author Skander J.
+ */
+public final class LoadTest {
+	public static void main(final String[] args) throws Exception {
+		final String url = LoadTest.option(args, "--url", "http://localhost:8080");
+		final File cache = new File(LoadTest.option(args, "--cache", "./cache"));
+		final int clients = Integer.parseInt(LoadTest.option(args, "--clients", "32"));
+		final long seconds = Long.parseLong(LoadTest.option(args, "--seconds", "10")), warmup = Long.parseLong(LoadTest.option(args, "--warmup", "2"));
+		final List<URI> songs = new ArrayList<>();
+		LoadTest.listSongs(url, cache, null, songs);
+		if (songs.isEmpty()) {
+			System.err.println("No cached songs in " + cache.getPath());
+			System.exit(1);
+		}
+		final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+		System.out.printf("Warming up for %ds...\n", warmup);
+		LoadTest.run(client, songs, clients, warmup);
+		System.out.printf("Sending requests for %d songs from %d clients for %ds...\n", songs.size(), clients, seconds);
+		final Client[] results = LoadTest.run(client, songs, clients, seconds);
+		long requests = 0, misses = 0, errors = 0;
+		for (final Client result : results) {
+			requests += result.count;
+			misses += result.misses;
+			errors += result.errors;
+		}
+		final long[] latencies = new long[(int) requests];
+		int offset = 0;
+		for (final Client result : results) {
+			System.arraycopy(result.latencies, 0, latencies, offset, result.count);
+			offset += result.count;
+		}
+		Arrays.sort(latencies);
+		System.out.printf("%d requests, %.0f requests/s, %d not found, %d errors\n", requests, requests / (double) seconds, misses, errors);
+		if (latencies.length > 0) {
+			System.out.printf("Latency: p50 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms\n", LoadTest.percentile(latencies, 0.50) / 1e6, LoadTest.percentile(latencies, 0.99) / 1e6, LoadTest.percentile(latencies, 0.999) / 1e6, latencies[latencies.length - 1] / 1e6);
+		}
+	}
+
+	/**
+	 * One client's measurements.
+	 */
+	private static final class Client {
+		private long[] latencies = new long[1024];
+		private int count = 0, misses = 0, errors = 0;
+
+		private void record(final long latency) {
+			if (this.count == this.latencies.length) {
+				this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+			}
+			this.latencies[this.count] = latency;
+			this.count += 1;
+		}
+	}
+
+	private static Client[] run(final HttpClient http, final List<URI> songs, final int clients, final long seconds) throws InterruptedException {
+		final Client[] results = new Client[clients];
+		final CountDownLatch done = new CountDownLatch(clients);
+		final long deadline = System.nanoTime() + (seconds * 1_000_000_000L);
+		for (int index = 0; index < clients; index += 1) {
+			final Client client = results[index] = new Client();
+			new Thread(() -> {
+				while (System.nanoTime() < deadline) {
+					final HttpRequest request = HttpRequest.newBuilder(songs.get(ThreadLocalRandom.current().nextInt(songs.size()))).timeout(Duration.ofSeconds(10)).GET().build();
+					final long start = System.nanoTime();
+					try {
+						final HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+						client.record(System.nanoTime() - start);
+						if (response.statusCode() == 404) {
+							client.misses += 1;
+						} else if (response.statusCode() != 200) {
+							client.errors += 1;
+						}
+					} catch (final Exception exception) {
+						client.errors += 1;
+					}
+				}
+				done.countDown();
+			}, "LoadTestClient").start();
+		}
+		done.await();
+		return results;
+	}
+
+	/**
+	 * Adds the /lyrics URL of each song cached under @param directory, cache
+	 * keys being "artist/title" with underscores for spaces.
+	 */
+	private static void listSongs(final String url, final File directory, final String artist, final List<URI> songs) {
+		final File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (final File child : children) {
+			if (child.isDirectory() && (artist == null)) {
+				LoadTest.listSongs(url, child, child.getName().replace('_', ' '), songs);
+			} else if (child.getName().endsWith(".txt") && (artist != null)) {
+				final String track = child.getName().substring(0, child.getName().length() - ".txt".length()).replace('_', ' ');
+				songs.add(URI.create(url + "/lyrics?artist=" + URLEncoder.encode(artist, StandardCharsets.UTF_8) + "&track=" + URLEncoder.encode(track, StandardCharsets.UTF_8)));
+			}
+		}
+	}
+
+	private static long percentile(final long[] sorted, final double percentile) {
+		final int rank = (int) Math.ceil(percentile * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static String option(final String[] args, final String name, final String fallback) {
+		for (int index = 0; index < (args.length - 1); index += 1) {
+			if (args[index].equals(name)) {
+				return args[index + 1];
+			}
+		}
+		return fallback;
+	}
+}
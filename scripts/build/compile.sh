@@ -1,4 +1,5 @@
 #!/bin/sh
 cd ../../
-find . -name "*.java" > ./scripts/build/sources.txt
-javac -d bin/ @./scripts/build/sources.txt
\ No newline at end of file
+# The application only: the tests and benchmarks are built by Maven and the scripts run as they are
+find src -name "*.java" > ./scripts/build/sources.txt
+javac -encoding UTF-8 -d bin/ @./scripts/build/sources.txt
\ No newline at end of file
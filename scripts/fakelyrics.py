@@ -0,0 +1,67 @@
+"""
+Stub lyrics provider, used to exercise the hedged requests of SpotMyLyrics
+without hitting real websites.
+
+    python fakelyrics.py [--port N] [--delay-ms N] [--jitter-ms N] [--miss-rate P] [--block-rate P]
+
+serves /lyrics/<artist>/<title>.html pages laid out like AZLyrics' ones after
+waiting --delay-ms (default 200) plus up to --jitter-ms (default 0)
+milliseconds, answers 404 to a --miss-rate share of the requests and a page
+without lyrics (like a captcha) to a --block-rate share of them (both default
+0). List it in a providers file like this (fields separated by tabs):
+
+    fake	http://localhost:8081/lyrics/%s/%s.html	<!-- lyrics -->	</div>
+"""
+
+import random
+import sys
+import time
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+def option(name, default, kind=int):
+    if name in sys.argv:
+        return kind(sys.argv[sys.argv.index(name) + 1])
+    return default
+
+PORT = option("--port", 8081)
+DELAY_MS = option("--delay-ms", 200)
+JITTER_MS = option("--jitter-ms", 0)
+MISS_RATE = option("--miss-rate", 0.0, float)
+BLOCK_RATE = option("--block-rate", 0.0, float)
+
+PAGE = """<html><body><div class="lyrics">
+<!-- lyrics -->
+Lyrics to %s by %s,<br>
+served by the fake provider on port %d<br>
+</div></body></html>"""
+
+BLOCKED = """<html><body>
+Our systems have detected unusual activity from your IP address.<br>
+</body></html>"""
+
+class Handler(BaseHTTPRequestHandler):
+    def do_GET(self):
+        time.sleep((DELAY_MS + random.uniform(0, JITTER_MS)) / 1000)
+        parts = self.path.strip("/").split("/")
+        if len(parts) != 3 or parts[0] != "lyrics" or random.random() < MISS_RATE:
+            self.send_error(404)
+            return
+        if random.random() < BLOCK_RATE:
+            body = BLOCKED.encode("utf-8")
+        else:
+            body = (PAGE % (parts[2].replace(".html", ""), parts[1], PORT)).encode("utf-8")
+        self.send_response(200)
+        self.send_header("Content-Type", "text/html; charset=utf-8")
+        self.send_header("Content-Length", str(len(body)))
+        self.end_headers()
+        try:
+            self.wfile.write(body)
+        except BrokenPipeError:
+            # Cancelled, another provider answered first
+            pass
+
+    def log_message(self, format, *args):
+        pass
+
+if __name__ == "__main__":
+    ThreadingHTTPServer(("localhost", PORT), Handler).serve_forever()
@@ -0,0 +1,72 @@
+"""
+Fake replacement for queryspotify.py, used to exercise SpotMyLyrics without
+Spotify. The songs are read from the file given as first argument (one
+"artist, track" per line, PAUSED and NOT RUNNING are allowed too), or taken
+from the built-in list below.
+
+    python fakespotify.py [songs file] --daemon [--every N]
+
+answers each line read from stdin with the current song and moves on to the
+next song every N queries (default 20, i.e. ~5s at 250ms). --die-after N makes
+it exit after N answers, and --hang-after N stop answering (without exiting)
+after N answers, to check that the helper gets restarted.
+
+    python fakespotify.py [songs file] --watch [--every-ms N]
+
+is the scripted event source: prints the next song every N milliseconds
+(default 5000), looping over the list, each time followed by its position
+("POS 0 PLAYING") and the songs queued after it as "NEXT artist, track" lines.
+"""
+
+import sys
+import time
+
+DEFAULT_SONGS = [
+    "Glass Animals, Heat Waves",
+    "Michael Jackson, Beat It",
+    "PAUSED",
+    "a-ha, Take On Me",
+]
+
+def songs():
+    if len(sys.argv) > 1 and not sys.argv[1].startswith("--"):
+        with open(sys.argv[1], encoding="utf-8") as songs_file:
+            return [line.strip() for line in songs_file if line.strip() and not line.startswith("#")]
+    return DEFAULT_SONGS
+
+def option(name, default):
+    if name in sys.argv:
+        return int(sys.argv[sys.argv.index(name) + 1])
+    return default
+
+def daemon(playlist, every, die_after, hang_after):
+    queries = 0
+    for _ in sys.stdin:
+        if queries == hang_after:
+            while True:
+                time.sleep(60)
+        print(playlist[(queries // every) % len(playlist)], flush=True)
+        queries += 1
+        if queries == die_after:
+            sys.exit(1)
+
+QUEUED = 2
+
+def watch(playlist, every_ms):
+    index = 0
+    while True:
+        print(playlist[index % len(playlist)], flush=True)
+        print("POS 0 PLAYING", flush=True)
+        for ahead in range(1, min(QUEUED, len(playlist) - 1) + 1):
+            print("NEXT " + playlist[(index + ahead) % len(playlist)], flush=True)
+        index += 1
+        time.sleep(every_ms / 1000)
+
+if __name__ == "__main__":
+    playlist = songs()
+    if "--daemon" in sys.argv:
+        daemon(playlist, option("--every", 20), option("--die-after", -1), option("--hang-after", -1))
+    elif "--watch" in sys.argv:
+        watch(playlist, option("--every-ms", 5000))
+    else:
+        print(playlist[int(time.time() // 5) % len(playlist)])
@@ -1,4 +1,5 @@
 import sys
+import time
 
 def get_info_windows():
     """
@@ -108,6 +109,56 @@ def get_info_mac():
 
     return a[3], a[1]
 
+def get_position_linux():
+    """
+    Reads the playback position (in microseconds) and status from dbus.
+    """
+
+    import dbus
+    if not hasattr(get_info_linux, 'session_bus'):
+        get_info_linux.session_bus = dbus.SessionBus()
+    spotify_bus = get_info_linux.session_bus.get_object("org.mpris.MediaPlayer2.spotify", "/org/mpris/MediaPlayer2")
+    spotify_properties = dbus.Interface(spotify_bus, "org.freedesktop.DBus.Properties")
+    position = int(spotify_properties.Get("org.mpris.MediaPlayer2.Player", "Position"))
+    status = str(spotify_properties.Get("org.mpris.MediaPlayer2.Player", "PlaybackStatus"))
+    return position // 1000, status.lower() == 'playing'
+
+
+def get_position_mac():
+    """
+    Asks Spotify for the playback position (in seconds) and state.
+    """
+
+    from Foundation import NSAppleScript
+
+    apple_script_code = """
+    tell application "Spotify"
+        return {player position, player state as string}
+    end tell
+    """
+
+    s = NSAppleScript.alloc().initWithSource_(apple_script_code)
+    x = s.executeAndReturnError_(None)
+    position = x[0].descriptorAtIndex_(1).doubleValue()
+    state = str(x[0].descriptorAtIndex_(2).stringValue())
+    return int(position * 1000), state.lower() == 'playing'
+
+def position():
+    """
+    Returns the playback position in milliseconds and whether the song is
+    playing, or None if it can't be read (always the case on Windows).
+    """
+
+    try:
+        if sys.platform.startswith("win"):
+            return None
+        elif sys.platform.startswith("darwin"):
+            return get_position_mac()
+        else:
+            return get_position_linux()
+    except Exception:
+        return None
+
 def current():
     try:
         if sys.platform.startswith("win"):
@@ -116,6 +167,8 @@ def current():
             info = get_info_mac()
         else:
             info = get_info_linux()
+    except Exception:
+        info = "CLOSED"
     if info == "CLOSED":
         return [ "CLOSED" ]
     elif info == "PAUSED":
@@ -130,5 +183,92 @@ def artist():
 def song():
     return current()[0]
 
+def answer():
+    """
+    Formats the current song the way SMLSYS expects it: "artist, track".
+    """
+
+    info = current()
+    if info == [ "CLOSED" ]:
+        return "NOT RUNNING"
+    elif info == [ "PAUSED" ]:
+        return "PAUSED"
+    return "%s, %s" % (info[1], info[0])
+
+def daemon():
+    """
+    Persistent mode: answers every line read from stdin with the current song,
+    so the interpreter (and the dbus session) only has to be set up once.
+    """
+
+    for _ in sys.stdin:
+        print(answer(), flush=True)
+
+# A position further than this from where we expected it to be is a seek
+SEEK_THRESHOLD_MS = 1500
+
+def watch():
+    """
+    Event mode: prints the current song once, then again only when it changes.
+    On Linux the MPRIS PropertiesChanged signal drives it, elsewhere (or when
+    GLib isn't available) we poll in-process, which is still much cheaper than
+    starting a new interpreter on every query.
+
+    The playback position is printed as "POS milliseconds PLAYING|PAUSED" after
+    each change and whenever the song is paused, resumed or seeked, so that the
+    synced lyrics can follow.
+    """
+
+    last = [ None ]
+    # Last position printed and when it was read
+    last_position = [ None, 0.0 ]
+
+    def emit_position(force):
+        current_position = position()
+        if current_position is None:
+            return
+        if not force and last_position[0] is not None:
+            milliseconds, playing = last_position[0]
+            expected = milliseconds + (time.monotonic() - last_position[1]) * 1000 if playing else milliseconds
+            if current_position[1] == playing and abs(current_position[0] - expected) < SEEK_THRESHOLD_MS:
+                return
+        last_position[0] = current_position
+        last_position[1] = time.monotonic()
+        print("POS %d %s" % (current_position[0], "PLAYING" if current_position[1] else "PAUSED"), flush=True)
+
+    def emit(*_):
+        current_answer = answer()
+        changed = current_answer != last[0]
+        if changed:
+            last[0] = current_answer
+            print(current_answer, flush=True)
+        emit_position(changed)
+
+    if not sys.platform.startswith(("win", "darwin")):
+        try:
+            import dbus
+            from dbus.mainloop.glib import DBusGMainLoop
+            from gi.repository import GLib
+            # Must be set before get_info_linux creates its session bus
+            DBusGMainLoop(set_as_default=True)
+            bus = dbus.SessionBus()
+            bus.add_signal_receiver(emit, signal_name="PropertiesChanged", dbus_interface="org.freedesktop.DBus.Properties", path="/org/mpris/MediaPlayer2")
+            bus.add_signal_receiver(emit, signal_name="NameOwnerChanged", dbus_interface="org.freedesktop.DBus", arg0="org.mpris.MediaPlayer2.spotify")
+            bus.add_signal_receiver(lambda *_: emit_position(True), signal_name="Seeked", dbus_interface="org.mpris.MediaPlayer2.Player", path="/org/mpris/MediaPlayer2")
+            emit()
+            GLib.MainLoop().run()
+            return
+        except ImportError:
+            pass
+
+    while True:
+        emit()
+        time.sleep(0.25)
+
 if __name__ == "__main__":
-    print(artist(), song())
\ No newline at end of file
+    if "--daemon" in sys.argv:
+        daemon()
+    elif "--watch" in sys.argv:
+        watch()
+    else:
+        print(artist(), song())
\ No newline at end of file
@@ -1,13 +1,24 @@
 package com.skanderj.spotmylyrics;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.skanderj.ts4j.Task;
 import com.skanderj.ts4j.TaskScheduler;
+import com.skanderj.ts4j.TaskStats;
 import com.skanderj.ts4j.TaskType;
 import com.skanderj.ts4j.TimeValue;
 
@@ -38,15 +49,81 @@ public final class SML {
 
 	public static final int REFRESH_TIME_MS = 250;
 
+	// A helper which doesn't answer a query within this long is restarted
+	public static final int HELPER_TIMEOUT_MS = 2000;
+
+	// Lyrics fetches give up after these
+	public static final int CONNECT_TIMEOUT_MS = 5000, FETCH_TIMEOUT_MS = 10000;
+
+	// How many upcoming songs get their lyrics fetched ahead of time, by how
+	// many threads, how many can wait in line and how far apart the fetches are
+	public static final int PREFETCH_AHEAD = 3, PREFETCH_THREADS = 2, PREFETCH_QUEUE = 16, PREFETCH_INTERVAL_MS = 2000;
+
+	// Same for the --warm batch mode, requests to a host being spaced by the
+	// interval whatever the number of threads
+	public static final int WARM_THREADS = 4, WARM_INTERVAL_MS = 1000;
+
+	// How long a provider is waited for before the next one is asked too, until
+	// its own latency is known (after a few lyrics found), and at least
+	public static final int HEDGE_DELAY_MS = 1000, HEDGE_MIN_SAMPLES = 5, HEDGE_MIN_DELAY_MS = 50;
+
+	// A provider is left alone after this many errors or block pages in a row,
+	// for the base backoff doubled each time it fails again, up to the maximum
+	public static final int BREAKER_FAILURES = 3;
+	public static final long BREAKER_BASE_MS = 30_000, BREAKER_MAX_MS = 30 * 60_000;
+
+	// Songs no provider has lyrics for, and for how long they're not asked for
+	// again
+	public static final File MISSES = new File("./cache.misses");
+	public static final long MISSES_TTL_MS = 7 * 24 * 60 * 60_000L;
+
+	// Requests handled at once by the --serve mode, connections waiting to be
+	// accepted, and how often event streams get a keep-alive comment
+	public static final int SERVE_THREADS = 16, SERVE_BACKLOG = 256, SERVE_KEEP_ALIVE_MS = 15_000;
+
+	// Resolution and number of buckets of the TS4J timing wheel (--wheel)
+	public static final int WHEEL_TICK_MS = 10, WHEEL_SIZE = 512;
+
+	// How many lines are shown above the current one in the synced mode
+	// (--synced)
+	public static final int SYNCED_CONTEXT_LINES = 4;
+
+	// Terminal size assumed until the real one is known
+	public static final int TERMINAL_ROWS = 24, TERMINAL_COLUMNS = 80;
+
 	// Better for memory
 	public static final String EMPTY = new StringBuilder().toString(), SPACE = new StringBuilder(" ").toString();
 
 	// Aliases file, can be customized
 	public static final File ALIASES_FILE = new File("aliases.txt");
 
+	// The aliases file is reloaded once it hasn't changed for this long
+	public static final int ALIASES_SETTLE_MS = 200;
+
 	// Cache folder for storing and loading local lyrics files
 	public static final File CACHE = new File("./cache/");
 
+	// Single-file lyrics store, used instead of the cache folder with --store
+	public static final File STORE = new File("./cache.sml");
+
+	// Byte budget of the in-memory tier in front of the cache
+	public static final long MEMORY_CACHE_BYTES = 8_000_000;
+
+	// Full-text index over the cached lyrics, and how many of the songs matching
+	// a :search are listed
+	public static final File SEARCH_INDEX = new File("./search.idx");
+	public static final int SEARCH_RESULTS = 10;
+
+	// How similar (0 to 1) a cached song must be to stand in for one that isn't
+	// cached under its exact name
+	public static final double FUZZY_THRESHOLD = 0.7;
+
+	// Dictionary used to compress cache entries with --compress, its size in
+	// bytes and how many cached songs it's trained on
+	public static final File DICTIONARY = new File("./lyrics.dict");
+	public static final int DICTIONARY_BYTES = 16_384;
+	public static final int DICTIONARY_SAMPLES = 2_000;
+
 	// Singleton model
 	private static SML instance;
 
@@ -55,41 +132,292 @@ public final class SML {
 	}
 
 	// Aliases for artist names and titles, for specific cases where the regular
-	// formatting just doesn't cut it (mainly French songs & artists)
-	private final Map<String, String> aliases;
+	// formatting just doesn't cut it (mainly French songs & artists). Replaced
+	// as a whole on reload, never modified
+	private volatile SMLAliases aliases;
+
+	// Reloads the aliases when their file changes
+	private final SMLFileWatcher aliasesWatcher;
 
 	// Refreshing handler
 	private boolean autoRefresh;
 
+	// Last song printed by auto refreshing
+	private String[] previousSpotifyAnswer;
+
+	// Pushes track changes when the event mode is enabled, null otherwise
+	private SMLWatcher watcher;
+
+	// Local copies of lyrics, behind an in-memory tier
+	private SMLMemoryCache cache;
+
+	// Trigram index over the cache keys, for songs cached under a slightly
+	// different name
+	private final SMLFuzzyIndex fuzzyIndex;
+
+	// Full-text index over the cached lyrics, replaced by the saved one on
+	// startup
+	private volatile SMLSearchIndex searchIndex;
+
+	// Incremented each time a song is printed, so that late fetches can tell
+	// they're no longer wanted
+	private final AtomicLong renders;
+
+	// Where lyrics are fetched from
+	private SMLLyricsEngine engine;
+
+	// Songs known to have no lyrics
+	private SMLNegativeCache misses;
+
+	// Cache key -> lyrics being fetched, shared by everyone asking for the song
+	// meanwhile
+	private final Map<String, CompletableFuture<String>> inFlight;
+
+	// Fetches the lyrics to upcoming songs
+	private final SMLPrefetcher prefetcher;
+
+	// Songs expected to play in this order (loaded with --playlist), empty if
+	// unknown
+	private List<String> playlist;
+
+	// Draws everything lyrics-related to the terminal
+	private final SMLRenderer renderer;
+
+	// Shows synced lyrics, null unless the synced mode is enabled
+	private SMLSyncedDisplay synced;
+
+	// Where synced lyrics come from
+	private SMLLrcProvider lrcProvider;
+
+	// Serves lyrics over HTTP in the --serve mode, null otherwise
+	private SMLServer server;
+
 	private SML() {
-		this.aliases = new HashMap<>();
+		this.aliases = SMLAliases.compile(Collections.emptyMap());
+		this.aliasesWatcher = new SMLFileWatcher(SML.ALIASES_FILE, SML.ALIASES_SETTLE_MS, () -> {
+			if (this.loadAliases() && SML.VERBOSE) {
+				System.out.printf("Reloaded %d aliases from %s\n", this.aliases.size(), SML.ALIASES_FILE.getPath());
+			}
+		});
 		this.autoRefresh = true;
+		this.previousSpotifyAnswer = null;
+		this.watcher = null;
+		this.cache = new SMLMemoryCache(new SMLFileCache(), SML.MEMORY_CACHE_BYTES);
+		this.fuzzyIndex = new SMLFuzzyIndex(SML.FUZZY_THRESHOLD);
+		this.searchIndex = new SMLSearchIndex();
+		this.renders = new AtomicLong();
+		this.engine = new SMLLyricsEngine(List.of(SMLPageProvider.AZLYRICS));
+		this.misses = new SMLNegativeCache(SML.MISSES, SML.MISSES_TTL_MS);
+		this.misses.load();
+		this.inFlight = new ConcurrentHashMap<>();
+		this.prefetcher = new SMLPrefetcher(SML.PREFETCH_THREADS, SML.PREFETCH_QUEUE, SML.PREFETCH_INTERVAL_MS);
+		this.playlist = Collections.emptyList();
+		this.renderer = new SMLRenderer(System.out, SMLSYS.ansiSupported(), SML.TERMINAL_ROWS, SML.TERMINAL_COLUMNS);
+		this.synced = null;
+		this.lrcProvider = this::readLocalLrc;
+		this.server = null;
+	}
+
+	/**
+	 * Shows time-synchronized lyrics, line by line, for the songs which have
+	 * some. The others are printed as usual.
+	 */
+	public void enableSyncedLyrics() {
+		this.synced = new SMLSyncedDisplay(this.renderer, SML.SYNCED_CONTEXT_LINES);
+	}
+
+	/**
+	 * Saves new cache entries compressed, with the saved dictionary or one
+	 * trained on the cache if there's none yet, then compresses the entries
+	 * already cached.
+	 *
+	 * @return true if compression was enabled, false otherwise
+	 */
+	public boolean enableCompression() {
+		SMLCompressor compressor = SMLCompressor.load(SML.DICTIONARY);
+		if (compressor == null) {
+			final SMLCache backend = this.cache.backend();
+			final List<String> samples = new ArrayList<>();
+			for (final String key : backend.keys()) {
+				if (samples.size() == SML.DICTIONARY_SAMPLES) {
+					break;
+				}
+				// Keys are normalized already, so splitting one anywhere gives it back
+				final int slash = key.indexOf('/');
+				final String lyrics = backend.read(key.substring(0, slash), key.substring(slash + 1));
+				if (lyrics != null) {
+					samples.add(lyrics);
+				}
+			}
+			compressor = SMLCompressor.train(samples, SML.DICTIONARY_BYTES);
+			if (!compressor.save(SML.DICTIONARY)) {
+				return false;
+			}
+			System.out.printf("Trained a compression dictionary on %d songs\n", samples.size());
+		}
+		SMLIO.enableCompression(compressor);
+		final int compressed = this.compressCache(SML.CACHE);
+		if (compressed > 0) {
+			System.out.printf("Compressed %d songs\n", compressed);
+			System.out.println(compressor.stats());
+		}
+		return true;
+	}
+
+	/**
+	 * Rewrites the plain cache entries under @param directory compressed, each
+	 * one being read back before it's kept.
+	 *
+	 * @return how many entries were compressed
+	 */
+	private int compressCache(final File directory) {
+		final File[] children = directory.listFiles();
+		if (children == null) {
+			return 0;
+		}
+		int compressed = 0;
+		for (final File child : children) {
+			if (child.isDirectory()) {
+				compressed += this.compressCache(child);
+			} else if (child.getName().endsWith(".txt") && !SMLIO.isCompressed(child)) {
+				final String lyrics = SMLIO.readWhole(child);
+				if ((lyrics == null) || !SMLIO.saveCacheEntry(child, lyrics, true)) {
+					continue;
+				}
+				if (lyrics.equals(SMLIO.readWhole(child))) {
+					compressed += 1;
+				} else {
+					SMLIO.saveToFile(child, lyrics, true);
+				}
+			}
+		}
+		return compressed;
+	}
+
+	/**
+	 * Switches where synced lyrics come from (local .lrc files by default).
+	 */
+	public void useLrcProvider(final SMLLrcProvider lrcProvider) {
+		this.lrcProvider = lrcProvider;
+	}
+
+	/**
+	 * Reads the synced lyrics to a song from the .lrc file next to its cache
+	 * entry.
+	 *
+	 * @return the synced lyrics, or null if there's no such file
+	 */
+	private SMLLrc readLocalLrc(final String artist, final String track) {
+		final File file = new File(SML.CACHE, String.format("/%s.lrc", this.getCacheKey(artist, track)));
+		if (!file.isFile()) {
+			return null;
+		}
+		final String source = SMLIO.readWhole(file);
+		return source == null ? null : SMLLrc.parse(source);
+	}
+
+	/**
+	 * Loads a playlist file, one (artist, track) pair per line, used to know
+	 * which songs come next. Lines which aren't pairs are skipped.
+	 *
+	 * @return true if success, false otherwise
+	 */
+	public boolean loadPlaylist(final File file) {
+		final List<String> lines = SMLIO.readLines(file);
+		if (lines == null) {
+			return false;
+		}
+		final List<String> playlist = new ArrayList<>(lines.size());
+		for (final String line : lines) {
+			if (!line.contains(",")) {
+				System.err.printf("Skipping malformed line in %s: %s\n", file.getName(), line);
+				continue;
+			}
+			playlist.add(line);
+		}
+		this.playlist = playlist;
+		return true;
+	}
+
+	/**
+	 * Reads the aliases file and swaps the compiled aliases in, in one go, so
+	 * that answers being formatted meanwhile see either the old or new ones.
+	 *
+	 * @return true if success, false otherwise (the current aliases are kept)
+	 */
+	public boolean loadAliases() {
+		final Map<String, String> aliases = new HashMap<>();
+		if (!SMLIO.readFileToMap(SML.ALIASES_FILE, aliases, ":")) {
+			return false;
+		}
+		this.aliases = SMLAliases.compile(aliases);
+		return true;
+	}
+
+	/**
+	 * @return true if the lyrics to the song are cached
+	 */
+	public boolean isCached(final String artist, final String track) {
+		return this.cache.contains(artist, track);
+	}
+
+	/**
+	 * Switches the cache backend, which starts with an empty in-memory tier. The
+	 * closest songs are only looked for among the songs saved from now on.
+	 *
+	 * @param cache where to read and save local copies from now on
+	 */
+	public void useCache(final SMLCache cache) {
+		this.cache = new SMLMemoryCache(cache, SML.MEMORY_CACHE_BYTES);
+		this.fuzzyIndex.clear();
+	}
+
+	/**
+	 * Switches where the songs without lyrics are remembered.
+	 *
+	 * @param misses the songs known to have no lyrics from now on
+	 */
+	void useMisses(final SMLNegativeCache misses) {
+		this.misses = misses;
+	}
+
+	/**
+	 * @return true if no provider had lyrics to the song last time it was
+	 *         fetched, and that wasn't long enough ago to try again
+	 */
+	public boolean isKnownMissing(final String artist, final String track) {
+		return this.misses.contains(this.getCacheKey(artist, track));
 	}
 
 	/**
 	 * @return the size of the cache (or how many local copies of lyrics)
 	 */
 	public int cachedItems() {
-		return SMLIO.countFiles(SML.CACHE);
+		return this.cache.items();
 	}
 
 	/**
 	 * @return the size in bytes of the cache.
 	 */
 	public long cacheSize() {
-		return SMLIO.fileSize(SML.CACHE);
+		return this.cache.size();
 	}
 
 	/**
 	 * Deletes all the files in the cache.
 	 */
 	public boolean clearCache() {
-		return SMLIO.deleteFile(SML.CACHE);
+		this.fuzzyIndex.clear();
+		this.searchIndex.clear();
+		this.misses.clear();
+		SMLIO.deleteFile(SML.SEARCH_INDEX);
+		return this.cache.clear();
 	}
 
 	/**
 	 * Formats an artist name for usage in the AZLyrics base URL. Conditions: - All
-	 * lowercase - No spaces - No extra whitespace - No special characters
+	 * lowercase - No spaces - No extra whitespace - No special characters - No
+	 * accents
 	 *
 	 * @param artist the artist's name
 	 * @return the formatted artist name
@@ -100,23 +428,20 @@ public final class SML {
 			compliantArtist = compliantArtist.replace("The ", SML.EMPTY);
 		}
 		// OLD EXPRESSION: [•èÈÊÂÎêâîïÏÇçôÔ\\?\\-,.()!’'&¿\\:°/]
-		return compliantArtist.replaceAll("é", "e").replaceAll("É", "E").replaceAll("à", "a").replaceAll("À", "A").replaceAll("[^a-zA-Z0-9]", SML.EMPTY).toLowerCase().replaceAll(SML.SPACE, SML.EMPTY).strip();
+		return SMLNormalizer.urlPart(compliantArtist, compliantArtist.length());
 	}
 
 	/**
 	 * Formats an song track for usage in the AZLyrics base URL. Conditions: - All
-	 * lowercase - No spaces - No extra whitespace - No special characters
+	 * lowercase - No spaces - No extra whitespace - No special characters - No
+	 * accents
 	 *
 	 * @param track the song's track
 	 * @return the formatted song track
 	 */
 	public String formatTitle(final String track) {
-		String compliantTitle = new String(track);
-		if (compliantTitle.contains("(")) {
-			final int start = compliantTitle.indexOf("(");
-			compliantTitle = compliantTitle.substring(0, start);
-		}
-		return compliantTitle.replaceAll("é", "e").replaceAll("É", "E").replaceAll("à", "a").replaceAll("À", "A").replaceAll("[^a-zA-Z0-9]", SML.EMPTY).toLowerCase().replaceAll(SML.SPACE, SML.EMPTY).strip();
+		final int start = track.indexOf("(");
+		return SMLNormalizer.urlPart(track, start == -1 ? track.length() : start);
 	}
 
 	/**
@@ -126,7 +451,7 @@ public final class SML {
 	 * @return the formatted source
 	 */
 	public String formatSource(final String source) {
-		return source.replaceAll("<br>", "\n").replaceAll("<br/>", SML.EMPTY).replaceAll("<i>", SML.EMPTY).replaceAll("</i>", SML.EMPTY).replaceAll("&quot;", "'").replaceAll("&amp;", "&");
+		return SMLNormalizer.source(source);
 	}
 
 	/**
@@ -154,14 +479,7 @@ public final class SML {
 	public String[] formatAnswer(String answer) {
 		final String originalAnswer = new StringBuilder(answer).toString();
 		// If we have aliases setup
-		for (final String alias : this.aliases.keySet()) {
-			if (answer.contains(alias)) {
-				if (SML.VERBOSE) {
-					System.out.printf("Found an alias for %s: %s\n", answer, alias);
-				}
-				answer = answer.replace(alias, this.aliases.get(alias)).strip();
-			}
-		}
+		answer = this.aliases.apply(answer);
 		// We don't need the (feat...) part or the (- ...) part or the (with...) part
 		if (answer.contains("(feat") || answer.contains("(with") || answer.contains(" - ")) {
 			int startIndex = answer.indexOf("(feat");
@@ -190,7 +508,7 @@ public final class SML {
 		if (SML.VERBOSE) {
 			System.out.printf("Found %s - %s\n", artist, track);
 		}
-		return new String[] { artist, track, strippedArtist.replaceAll("[\\('\\)]", SML.EMPTY), strippedTitle.replaceAll("[\\('\\)]", SML.EMPTY) };
+		return new String[] { artist, track, SMLNormalizer.stripParentheses(strippedArtist), SMLNormalizer.stripParentheses(strippedTitle) };
 	}
 
 	/**
@@ -201,8 +519,155 @@ public final class SML {
 	 * @return a File object pointing to the lyrics file theoretical location
 	 */
 	public File getLocalCopy(final String artist, final String track) {
-		final String compliantArtist = artist.toLowerCase().replaceAll(SML.SPACE, "_").replaceAll("[\\.\\?\\(']", SML.EMPTY), compliantTitle = track.toLowerCase().replaceAll(SML.SPACE, "_").replaceAll("[\\.\\?\\(']", SML.EMPTY);
-		return new File(SML.CACHE, String.format("/%s/%s.txt", compliantArtist, compliantTitle));
+		return new File(SML.CACHE, String.format("/%s.txt", this.getCacheKey(artist, track)));
+	}
+
+	/**
+	 * Normalizes a song into the key identifying it in the cache.
+	 *
+	 * @param artist the artist's name
+	 * @param track  the song's track
+	 * @return the key, as "<artist>/<title>"
+	 */
+	public String getCacheKey(final String artist, final String track) {
+		final StringBuilder key = new StringBuilder(artist.length() + track.length() + 1);
+		SMLNormalizer.appendKeyPart(key, artist);
+		SMLNormalizer.appendKeyPart(key.append('/'), track);
+		return key.toString();
+	}
+
+	/**
+	 * Fetches the lyrics to a song and saves them in the cache. Songs the
+	 * providers said they don't have are remembered and not asked for again
+	 * for a while. Callers asking for a song while it's being fetched share
+	 * that fetch, so each song is fetched and saved once.
+	 *
+	 * @param compliantArtist the stripped artist name
+	 * @param compliantTitle  the stripped track name
+	 * @return the future lyrics, completed with null if they couldn't be found
+	 */
+	public CompletableFuture<String> fetchLyrics(final String compliantArtist, final String compliantTitle) {
+		final String key = this.getCacheKey(compliantArtist, compliantTitle);
+		final CompletableFuture<String> lyrics = new CompletableFuture<>();
+		final CompletableFuture<String> inFlight = this.inFlight.putIfAbsent(key, lyrics);
+		if (inFlight != null) {
+			if (SML.VERBOSE) {
+				System.out.printf("Already fetching %s - %s\n", compliantArtist, compliantTitle);
+			}
+			return inFlight;
+		}
+		final CompletableFuture<String> fetch;
+		try {
+			fetch = this.fetchUncoalesced(key, compliantArtist, compliantTitle);
+		} catch (final RuntimeException runtimeException) {
+			// Otherwise the song would stay in flight, and every later caller
+			// would wait on a fetch which never completes
+			this.inFlight.remove(key, lyrics);
+			lyrics.completeExceptionally(runtimeException);
+			return lyrics;
+		}
+		fetch.whenComplete((fetched, throwable) -> {
+			// Later callers start over, and find the lyrics cached
+			this.inFlight.remove(key, lyrics);
+			if (throwable == null) {
+				lyrics.complete(fetched);
+			} else {
+				lyrics.completeExceptionally(throwable);
+			}
+		});
+		return lyrics;
+	}
+
+	/**
+	 * fetchLyrics without the sharing.
+	 */
+	private CompletableFuture<String> fetchUncoalesced(final String key, final String compliantArtist, final String compliantTitle) {
+		// Fetched by a caller which was done before this one started
+		final String cached = this.cache.read(compliantArtist, compliantTitle);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		if (this.misses.contains(key)) {
+			if (SML.VERBOSE) {
+				System.out.printf("No lyrics to %s - %s last time, not fetching\n", compliantArtist, compliantTitle);
+			}
+			return CompletableFuture.completedFuture(null);
+		}
+		return this.engine.fetch(compliantArtist, compliantTitle).thenApply(result -> {
+			if (result.outcome() == SMLFetchResult.Outcome.NOT_FOUND) {
+				this.misses.add(key);
+			}
+			final String lyrics = result.lyrics() == null ? null : this.formatSource(result.lyrics()).strip();
+			if ((lyrics != null) && this.cache.save(compliantArtist, compliantTitle, lyrics, false)) {
+				this.fuzzyIndex.add(key);
+				this.searchIndex.add(key, lyrics);
+			}
+			return lyrics;
+		});
+	}
+
+	/**
+	 * @return the host the lyrics to a song will be fetched from first, for rate
+	 *         limiting
+	 */
+	public String lyricsHost(final String compliantArtist, final String compliantTitle) {
+		return this.engine.host(compliantArtist, compliantTitle);
+	}
+
+	/**
+	 * Loads the lyrics providers from a file, one per line, asked in that order
+	 * until their stats say otherwise (see SMLPageProvider.parse); "azlyrics"
+	 * alone stands for the built-in one.
+	 *
+	 * @return true if at least one provider was loaded, false otherwise
+	 */
+	public boolean loadProviders(final File file) {
+		final List<String> lines = SMLIO.readLines(file);
+		if (lines == null) {
+			return false;
+		}
+		final List<SMLLyricsProvider> providers = new ArrayList<>();
+		for (final String line : lines) {
+			final SMLLyricsProvider provider = line.equalsIgnoreCase(SMLPageProvider.AZLYRICS.name()) ? SMLPageProvider.AZLYRICS : SMLPageProvider.parse(line);
+			if (provider != null) {
+				providers.add(provider);
+			}
+		}
+		if (providers.isEmpty()) {
+			System.err.println("No lyrics provider in " + file.getPath());
+			return false;
+		}
+		this.useEngine(new SMLLyricsEngine(providers));
+		return true;
+	}
+
+	/**
+	 * Switches where lyrics are fetched from.
+	 *
+	 * @return the engine used until now
+	 */
+	SMLLyricsEngine useEngine(final SMLLyricsEngine engine) {
+		final SMLLyricsEngine previous = this.engine;
+		this.engine = engine;
+		return previous;
+	}
+
+	/**
+	 * Prefetches the songs following the current one in the playlist, if any.
+	 *
+	 * @param spotifyAnswer the current song, formatted
+	 */
+	private void prefetchUpcoming(final String[] spotifyAnswer) {
+		final List<String> playlist = this.playlist;
+		for (int index = 0; index < playlist.size(); index += 1) {
+			final String[] entry = this.formatAnswer(playlist.get(index));
+			if (entry[2].equals(spotifyAnswer[2]) && entry[3].equals(spotifyAnswer[3])) {
+				for (int ahead = 1; ahead <= Math.min(SML.PREFETCH_AHEAD, playlist.size() - 1); ahead += 1) {
+					this.prefetcher.prefetch(playlist.get((index + ahead) % playlist.size()));
+				}
+				return;
+			}
+		}
 	}
 
 	/**
@@ -214,29 +679,162 @@ public final class SML {
 	public void printLyrics(final String[] spotifyAnswer) {
 		final String artist = spotifyAnswer[0], track = spotifyAnswer[1];
 		final String compliantArtist = spotifyAnswer[2], compliantTitle = spotifyAnswer[3];
-		String lyrics;
-		if ((lyrics = SMLIO.readWhole(this.getLocalCopy(artist, track))) == null) {
-			String source = SMLIO.fetchSource(SML.AZLYRICS_URL, this.formatArtist(compliantArtist), this.formatTitle(compliantTitle));
-			if (source != null) {
-				source = this.formatSource(source);
-				lyrics = this.extractLyrics(source);
+		final long render = this.renders.incrementAndGet();
+		final String header = artist + " - " + track;
+		if (this.synced != null) {
+			final SMLLrc lrc = this.lrcProvider.find(compliantArtist, compliantTitle);
+			if (lrc != null) {
+				this.synced.show(header, lrc);
+				return;
 			}
+			this.synced.stop();
 		}
-		if (SMLSYS._OS == SMLSYS.OS.MACOS) {
-			System.out.println("\033]0;" + artist + " - " + track + "\007");
+		// Cache hit: the local copy goes straight into the page, no String
+		// involved. Lyrics are saved under the stripped names, older copies may be
+		// under the original ones (the memory tier remembers the names a song
+		// isn't under, so replaying it doesn't look for them on disk again)
+		final boolean[] closest = new boolean[1];
+		if (this.renderer.page(header, header, page -> this.cache.transfer(compliantArtist, compliantTitle, page) || (!this.getCacheKey(artist, track).equals(this.getCacheKey(compliantArtist, compliantTitle)) && this.cache.transfer(artist, track, page)) || (closest[0] = this.transferClosest(compliantArtist, track, page)))) {
+			if (closest[0]) {
+				// The closest song may be another one: its lyrics stand in until
+				// the song's own are fetched
+				this.fetchLyrics(compliantArtist, compliantTitle).thenAccept(lyrics -> {
+					if ((lyrics != null) && (this.renders.get() == render)) {
+						this.renderer.page(header, header, page -> SML.write(lyrics, page));
+					}
+				});
+			}
+			return;
+		}
+		// Cache miss: printed whenever the fetch completes, without blocking the
+		// caller (e.g. the polling task)
+		this.fetchLyrics(compliantArtist, compliantTitle).thenAccept(lyrics -> {
+			// Another song was printed in the meantime
+			if (this.renders.get() != render) {
+				return;
+			}
 			if (lyrics != null) {
-				System.out.println((char) (27) + "[2J" + artist + " - " + track + "\n\n" + lyrics + "\n");
-				SMLIO.saveToFile(this.getLocalCopy(compliantArtist, compliantTitle), lyrics, false);
+				this.renderer.print(lyrics + "\n\n");
 			} else {
-				System.out.println((char) (27) + "[2J" + artist + " - " + track + "\n\n" + "No lyrics found." + "\n");
+				this.renderer.print("No lyrics found." + "\n\n");
+			}
+		});
+	}
+
+	/**
+	 * Looks a song up like printLyrics does, without printing it: the cache,
+	 * then the closest cached song, then the providers.
+	 *
+	 * @param spotifyAnswer the song, formatted
+	 * @return the future lyrics, completed with null if they couldn't be found
+	 */
+	public CompletableFuture<String> lyrics(final String[] spotifyAnswer) {
+		final String artist = spotifyAnswer[0], track = spotifyAnswer[1];
+		final String compliantArtist = spotifyAnswer[2], compliantTitle = spotifyAnswer[3];
+		String lyrics = this.cache.read(compliantArtist, compliantTitle);
+		if ((lyrics == null) && !this.getCacheKey(artist, track).equals(this.getCacheKey(compliantArtist, compliantTitle))) {
+			lyrics = this.cache.read(artist, track);
+		}
+		if (lyrics == null) {
+			final String match = this.fuzzyIndex.find(compliantArtist, track);
+			if (match != null) {
+				final int slash = match.indexOf('/');
+				lyrics = this.cache.read(match.substring(0, slash), match.substring(slash + 1));
 			}
-		} else {
 			if (lyrics != null) {
-				System.out.println("\n" + artist + " - " + track + "\n\n" + lyrics + "\n");
-				SMLIO.saveToFile(this.getLocalCopy(compliantArtist, compliantTitle), lyrics, false);
-			} else {
-				System.out.println("\n" + artist + " - " + track + "\n\n" + "No lyrics found." + "\n");
+				// Only until the song's own lyrics are fetched, see printLyrics
+				this.fetchLyrics(compliantArtist, compliantTitle);
+			}
+		}
+		return lyrics == null ? this.fetchLyrics(compliantArtist, compliantTitle) : CompletableFuture.completedFuture(lyrics);
+	}
+
+	/**
+	 * Writes the lyrics to the cached song closest to a song which isn't cached
+	 * under its exact name. The title is looked up as played, its parentheses
+	 * telling editions apart from other songs.
+	 *
+	 * @return true if a close enough song was found and written, false otherwise
+	 */
+	private boolean transferClosest(final String compliantArtist, final String track, final OutputStream output) {
+		final String match = this.fuzzyIndex.find(compliantArtist, track);
+		if (match == null) {
+			return false;
+		}
+		if (SML.VERBOSE) {
+			System.out.printf("Closest cached song to %s - %s: %s\n", compliantArtist, track, match);
+		}
+		// Keys are normalized already, so splitting one anywhere gives it back
+		final int slash = match.indexOf('/');
+		return this.cache.transfer(match.substring(0, slash), match.substring(slash + 1), output);
+	}
+
+	/**
+	 * Writes @param lyrics to @param output, as a page body.
+	 *
+	 * @return true if they were written, false otherwise
+	 */
+	private static boolean write(final String lyrics, final OutputStream output) {
+		try {
+			output.write(lyrics.getBytes(Charset.defaultCharset()));
+			output.flush();
+		} catch (final IOException writeException) {
+			System.err.println("An exception occurred while writing lyrics: " + writeException.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Loads the saved search index on a background thread, then indexes the
+	 * songs cached since it was saved. The index is rebuilt from scratch if it
+	 * has songs which aren't cached anymore.
+	 */
+	private void indexLyrics() {
+		final Thread thread = new Thread(() -> {
+			final SMLCache backend = this.cache.backend();
+			SMLSearchIndex index = SMLSearchIndex.load(SML.SEARCH_INDEX);
+			if ((index == null) || !new HashSet<>(backend.keys()).containsAll(index.keys())) {
+				index = new SMLSearchIndex();
+			}
+			// Songs saved from now on go to the new index, the others are caught up
+			// below: they're listed after the swap, so that a song saved in between
+			// isn't left in the old index only
+			this.searchIndex = index;
+			final List<String> keys = backend.keys();
+			final long start = System.nanoTime();
+			int indexed = 0;
+			for (final String key : keys) {
+				if (index.contains(key)) {
+					continue;
+				}
+				final int slash = key.indexOf('/');
+				final String lyrics = backend.read(key.substring(0, slash), key.substring(slash + 1));
+				if (lyrics != null) {
+					index.add(key, lyrics);
+					indexed += 1;
+				}
 			}
+			index.save(SML.SEARCH_INDEX);
+			if (SML.VERBOSE) {
+				System.out.printf("Indexed %d songs in %.1fs (%d in total)\n", indexed, (System.nanoTime() - start) / 1e9, index.size());
+			}
+		}, "SMLIndexer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Prints the cached songs whose lyrics match a query.
+	 *
+	 * @param query words, "phrases" and prefixes (word*)
+	 */
+	private void search(final String query) {
+		final long start = System.nanoTime();
+		final List<String> results = this.searchIndex.search(query);
+		System.out.printf("%d songs found in %.1fms\n", results.size(), (System.nanoTime() - start) / 1e6);
+		for (final String key : results.subList(0, Math.min(SML.SEARCH_RESULTS, results.size()))) {
+			System.out.printf("\t%s\n", key.replaceFirst("/", " - ").replace('_', ' '));
 		}
 	}
 
@@ -248,6 +846,10 @@ public final class SML {
 	public void handleInput(final Scanner scanner) {
 		while (true) {
 			final String line = scanner.nextLine();
+			if (line.startsWith(":search ")) {
+				this.search(line.substring(":search ".length()));
+				continue;
+			}
 			switch (line) {
 			case ":auto":
 			case ":a":
@@ -268,7 +870,9 @@ public final class SML {
 				System.out.printf("\t:auto (:a)\t\tToggles auto-refreshing\n");
 				System.out.printf("\t:refresh (:r)\t\tFetches the lyrics to the current song\n");
 				System.out.printf("\t:aliases (:as)\t\tReloades the aliases file\n");
-				System.out.printf("\t:emptycache (:ec)\tDeletes all local copies\n");
+				System.out.printf("\t:emptycache (:ec)\tDeletes all local copies (and forgets songs without lyrics)\n");
+				System.out.printf("\t:search <text>\t\tSearches the cached lyrics (words, \"phrases\", prefix*)\n");
+				System.out.printf("\t:stats (:s)\t\tPrints cache & scheduler statistics\n");
 				System.out.printf("\t:quit (:q)\t\tQuits the app\n");
 				break;
 			case ":refresh":
@@ -280,7 +884,7 @@ public final class SML {
 				break;
 			case ":aliases":
 			case ":as":
-				if (SMLIO.readFileToMap(SML.ALIASES_FILE, this.aliases, ":")) {
+				if (this.loadAliases()) {
 					System.out.println("Successfully reloaded the aliases file!");
 				}
 				break;
@@ -290,9 +894,30 @@ public final class SML {
 					System.out.println("Successfully cleared the cache!");
 				}
 				break;
+			case ":stats":
+			case ":s":
+				System.out.printf("(Cache size: %s bytes for %d items)\n", SMLIO.humanReadableByteCountSI(this.cacheSize()), this.cachedItems());
+				System.out.println(this.cache.stats());
+				System.out.println(this.engine.stats());
+				System.out.printf("Songs without lyrics: %d (not fetched again for %dh)\n", this.misses.size(), TimeUnit.MILLISECONDS.toHours(SML.MISSES_TTL_MS));
+				final TaskStats queryStats = TaskScheduler.stats("SpotifyQuery");
+				if (queryStats != null) {
+					System.out.println("Spotify polling: " + queryStats);
+				}
+				System.out.println(this.renderer.stats());
+				if (this.synced != null) {
+					System.out.println(this.synced.stats());
+				}
+				if (SMLIO.compressor() != null) {
+					System.out.println(SMLIO.compressor().stats());
+				}
+				break;
 			case ":quit":
 			case ":q":
-				TaskScheduler.cancelTask("SpotifyQuery", false);
+				this.disableAutoRefreshing();
+				this.aliasesWatcher.stop();
+				this.searchIndex.save(SML.SEARCH_INDEX);
+				SMLSYS.disablePersistentQuery();
 				scanner.close();
 				System.exit(0);
 				break;
@@ -304,32 +929,91 @@ public final class SML {
 	}
 
 	/**
-	 * Uses my TS4J scheduling API for fetching the current song every REFRESH_TIME_MS when
-	 * enabled and printing lyrics accordingly.
+	 * Prints the lyrics for the current song if it's not the one we printed last.
+	 * Called on each polling tick or track change event.
+	 *
+	 * @param answer the (artist, track) pair, may be null
+	 */
+	public synchronized void onSpotifyAnswer(final String answer) {
+		if (answer == null) {
+			return;
+		}
+		final String[] spotifyAnswer = this.formatAnswer(answer);
+		if ((this.previousSpotifyAnswer != null) && spotifyAnswer[2].equals(this.previousSpotifyAnswer[2]) && spotifyAnswer[3].equals(this.previousSpotifyAnswer[3])) {
+			return;
+		}
+		if (this.server == null) {
+			this.printLyrics(spotifyAnswer);
+		} else {
+			this.server.onTrackChange(spotifyAnswer);
+		}
+		this.previousSpotifyAnswer = spotifyAnswer;
+		this.prefetchUpcoming(spotifyAnswer);
+	}
+
+	/**
+	 * @return the song playing (or last played), formatted, or null if none was
+	 *         seen yet
+	 */
+	public synchronized String[] nowPlaying() {
+		return this.previousSpotifyAnswer;
+	}
+
+	/**
+	 * @return how many songs were printed so far
+	 */
+	long renders() {
+		return this.renders.get();
+	}
+
+	/**
+	 * Called when the watcher announces an upcoming song.
+	 *
+	 * @param answer the (artist, track) pair
+	 */
+	public void onUpcomingAnswer(final String answer) {
+		if (answer.contains(",")) {
+			this.prefetcher.prefetch(answer);
+		}
+	}
+
+	/**
+	 * Called when the watcher reports the playback position.
+	 *
+	 * @param position the position in milliseconds
+	 * @param playing  whether the song is playing
+	 */
+	public void onPosition(final long position, final boolean playing) {
+		if (this.synced != null) {
+			this.synced.onPosition(position, playing);
+		}
+	}
+
+	/**
+	 * Subscribes to track change events when the event mode is enabled, polls
+	 * otherwise.
 	 */
 	public void enableAutoRefreshing() {
-		TaskScheduler.scheduleTask("SpotifyQuery", new Task(new TimeValue(0, TimeUnit.MILLISECONDS), new TimeValue(SML.REFRESH_TIME_MS, TimeUnit.MILLISECONDS)) {
-			private String[] previousSpotifyAnswer;
+		if (SMLSYS.trackEventsEnabled()) {
+			this.watcher = SMLSYS.watchSpotify(this::onSpotifyAnswer, this::onUpcomingAnswer, this::onPosition, () -> {
+				this.watcher = null;
+				this.enablePolling();
+			});
+		} else {
+			this.enablePolling();
+		}
+	}
 
+	/**
+	 * Uses my TS4J scheduling API for fetching the current song every
+	 * REFRESH_TIME_MS and printing lyrics accordingly. Fallback for when track
+	 * change events aren't available.
+	 */
+	public void enablePolling() {
+		TaskScheduler.scheduleTask("SpotifyQuery", new Task(new TimeValue(0, TimeUnit.MILLISECONDS), new TimeValue(SML.REFRESH_TIME_MS, TimeUnit.MILLISECONDS)) {
 			@Override
 			public void execute() {
-				if (this.previousSpotifyAnswer == null) {
-					final String[] spotifyAnswer = SML.this.formatAnswer(SMLSYS.querySpotify());
-					if (spotifyAnswer != null) {
-						SML.this.printLyrics(spotifyAnswer);
-						this.previousSpotifyAnswer = spotifyAnswer;
-					}
-				} else {
-					final String[] spotifyAnswer = SML.this.formatAnswer(SMLSYS.querySpotify());
-					if (spotifyAnswer != null) {
-						if (spotifyAnswer[2].equals(this.previousSpotifyAnswer[2]) && spotifyAnswer[3].equals(this.previousSpotifyAnswer[3])) {
-							return;
-						} else {
-							SML.this.printLyrics(spotifyAnswer);
-							this.previousSpotifyAnswer = spotifyAnswer;
-						}
-					}
-				}
+				SML.this.onSpotifyAnswer(SMLSYS.querySpotify());
 			}
 
 			@Override
@@ -340,28 +1024,219 @@ public final class SML {
 	}
 
 	/**
-	 * Cancels the auto updating task.
+	 * Cancels the auto updating task, or stops listening to track changes.
 	 */
 	public void disableAutoRefreshing() {
+		if (this.watcher != null) {
+			this.watcher.stop();
+			this.watcher = null;
+		}
 		TaskScheduler.cancelTask("SpotifyQuery", false);
 	}
 
+	/**
+	 * Batch mode: fetches the lyrics to every song listed in @param file which
+	 * isn't cached yet.
+	 *
+	 * @return true if the whole list was processed, false otherwise
+	 */
+	public boolean warm(final File file) {
+		if (!this.loadAliases()) {
+			return false;
+		}
+		return new SMLWarmer(SML.WARM_THREADS, SML.WARM_INTERVAL_MS).warm(file);
+	}
+
+	/**
+	 * Reads the terminal's size and redraws the synced lyrics (if shown) to fit.
+	 */
+	private void fitTerminal() {
+		final int[] size = SMLSYS.terminalSize();
+		if (size != null) {
+			this.renderer.resize(size[0], size[1]);
+			if (this.synced != null) {
+				this.synced.redraw();
+			}
+		}
+	}
+
 	/**
 	 * Starts the app.
 	 */
 	public void run() {
 		System.out.printf("SpotMyLyrics v.%s - By Skander J. (%s)\nThanks for using my software!\n", SML.SPOT_MY_LYRICS_VERSION, SML.GITHUB_URL);
 		System.out.printf("(Cache size: %s bytes for %d items)\n", SMLIO.humanReadableByteCountSI(this.cacheSize()), this.cachedItems());
+		this.fuzzyIndex.addAll(this.cache.keys());
+		this.indexLyrics();
+		this.fitTerminal();
+		SMLSYS.onTerminalResize(this::fitTerminal);
 		final Scanner scanner = new Scanner(System.in);
 		System.out.print("Press [ENTER] key to continue...");
 		scanner.nextLine();
-		if (SMLIO.readFileToMap(SML.ALIASES_FILE, this.aliases, ":")) {
+		if (this.loadAliases()) {
+			this.aliasesWatcher.start();
 			this.enableAutoRefreshing();
 			this.handleInput(scanner);
 		}
 	}
 
+	/**
+	 * Headless counterpart of run: serves lyrics over HTTP (see SMLServer)
+	 * instead of printing them, until the app is killed.
+	 *
+	 * @param port the port to listen on
+	 * @return true if the server started, false otherwise
+	 */
+	public boolean serve(final int port) {
+		System.out.printf("SpotMyLyrics v.%s - By Skander J. (%s)\nThanks for using my software!\n", SML.SPOT_MY_LYRICS_VERSION, SML.GITHUB_URL);
+		System.out.printf("(Cache size: %s bytes for %d items)\n", SMLIO.humanReadableByteCountSI(this.cacheSize()), this.cachedItems());
+		this.fuzzyIndex.addAll(this.cache.keys());
+		this.indexLyrics();
+		if (!this.loadAliases()) {
+			return false;
+		}
+		this.aliasesWatcher.start();
+		try {
+			this.server = new SMLServer(port, SML.SERVE_THREADS);
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while starting the server: " + ioException.getMessage());
+			return false;
+		}
+		this.server.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			this.disableAutoRefreshing();
+			this.server.stop();
+			this.searchIndex.save(SML.SEARCH_INDEX);
+			SMLSYS.disablePersistentQuery();
+		}, "SMLShutdown"));
+		System.out.printf("Serving lyrics on port %d (/lyrics?artist=&track=, /now-playing, /events)\n", port);
+		this.enableAutoRefreshing();
+		return true;
+	}
+
+	/**
+	 * Options: --daemon keeps a single queryspotify.py helper alive instead of
+	 * spawning one per query, --helper "<command>" does the same with a custom
+	 * helper (e.g. "python ./scripts/fakespotify.py --daemon"). --watch and
+	 * --watcher "<command>" are their event-driven counterparts: the helper
+	 * prints a line only when the song changes. --store keeps the cache in a
+	 * single indexed file, migrating the cache folder into it the first time.
+	 * --playlist <file> lists the songs (one "artist, track" per line) in the
+	 * order they'll play, so that the next ones can be prefetched. --warm
+	 * <file> fetches the lyrics to all the songs listed the same way and exits.
+	 * --wheel runs the scheduled tasks on a timing wheel instead of an executor.
+	 * --synced shows the lyrics line by line when there's a .lrc file for the
+	 * song, following the playback position reported by --watch. --compress
+	 * saves the cache entries compressed with a dictionary trained on the cache
+	 * (not with --store).
+	 * --providers <file> fetches lyrics from the providers listed in the file,
+	 * asking the next ones when the first are slow. --serve <port> serves the
+	 * lyrics over HTTP instead of printing them.
+	 */
 	public static void main(final String[] args) {
+		File warmFile = null;
+		int servePort = -1;
+		// Only the cache folder's entries are compressed, the store would keep its
+		// records plain
+		if (List.of(args).contains("--compress") && List.of(args).contains("--store")) {
+			System.err.println("--compress can't be used with --store!");
+			System.exit(1);
+		}
+		for (int index = 0; index < args.length; index += 1) {
+			switch (args[index]) {
+			case "--daemon":
+				if (!SMLSYS.enablePersistentQuery()) {
+					System.err.println("The persistent query mode isn't supported on this system!");
+				}
+				break;
+			case "--helper":
+				if ((index + 1) < args.length) {
+					SMLSYS.enablePersistentQuery(args[index += 1].split(SML.SPACE));
+				} else {
+					System.err.println("Missing helper command after --helper");
+				}
+				break;
+			case "--watch":
+				if (!SMLSYS.enableTrackEvents()) {
+					System.err.println("The event mode isn't supported on this system!");
+				}
+				break;
+			case "--watcher":
+				if ((index + 1) < args.length) {
+					SMLSYS.enableTrackEvents(args[index += 1].split(SML.SPACE));
+				} else {
+					System.err.println("Missing watcher command after --watcher");
+				}
+				break;
+			case "--store":
+				final SMLStore store = new SMLStore(SML.STORE);
+				if ((store.items() == 0) && SML.CACHE.isDirectory()) {
+					System.out.printf("Migrated %d songs from %s to %s\n", store.migrate(SML.CACHE), SML.CACHE.getPath(), SML.STORE.getPath());
+				}
+				SML.getInstance().useCache(store);
+				break;
+			case "--playlist":
+				if ((index + 1) < args.length) {
+					SML.getInstance().loadPlaylist(new File(args[index += 1]));
+				} else {
+					System.err.println("Missing playlist file after --playlist");
+				}
+				break;
+			case "--wheel":
+				// Daemons, so that the ticker doesn't keep the app alive
+				TaskScheduler.useTimingWheel(SML.WHEEL_TICK_MS, TimeUnit.MILLISECONDS, SML.WHEEL_SIZE, TaskScheduler.DEFAULT_CORE_POOL_SIZE, runnable -> {
+					final Thread thread = new Thread(runnable, "SMLScheduler");
+					thread.setDaemon(true);
+					return thread;
+				});
+				break;
+			case "--synced":
+				SML.getInstance().enableSyncedLyrics();
+				break;
+			case "--providers":
+				if ((index + 1) < args.length) {
+					SML.getInstance().loadProviders(new File(args[index += 1]));
+				} else {
+					System.err.println("Missing providers file after --providers");
+				}
+				break;
+			case "--compress":
+				if (!SML.getInstance().enableCompression()) {
+					System.err.println("Couldn't enable the compression!");
+				}
+				break;
+			case "--serve":
+				if ((index + 1) < args.length) {
+					try {
+						servePort = Integer.parseInt(args[index += 1]);
+					} catch (final NumberFormatException numberFormatException) {
+						System.err.println("Invalid port after --serve: " + args[index]);
+					}
+				} else {
+					System.err.println("Missing port after --serve");
+				}
+				break;
+			case "--warm":
+				if ((index + 1) < args.length) {
+					warmFile = new File(args[index += 1]);
+				} else {
+					System.err.println("Missing songs file after --warm");
+				}
+				break;
+			default:
+				System.err.println("Unknown option " + args[index]);
+				break;
+			}
+		}
+		if (warmFile != null) {
+			System.exit(SML.getInstance().warm(warmFile) ? 0 : 1);
+		}
+		if (servePort != -1) {
+			if (!SML.getInstance().serve(servePort)) {
+				System.exit(1);
+			}
+			return;
+		}
 		SML.getInstance().run();
 	}
 }
\ No newline at end of file
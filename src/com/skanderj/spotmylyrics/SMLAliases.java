@@ -0,0 +1,185 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * The aliases compiled into an Aho-Corasick automaton, so that an answer is
+ * matched against all of them in a single pass whatever their number.
+ * Replacements are leftmost-longest: of the aliases found in an answer, the
+ * one starting first wins, then the longest of those starting there, and the
+ * scan goes on after it. Immutable, a reload builds a new instance.
+ *
+ * @author Skander J.
+ */
+public final class SMLAliases {
+	// Transitions of each node, sorted by character
+	private final char[][] keys;
+	private final int[][] targets;
+	// Longest proper suffix of each node which is also a node
+	private final int[] failure;
+	// Nearest node down the failure chain which ends an alias, -1 if none
+	private final int[] dictionary;
+	// Alias ending at each node, -1 if none
+	private final int[] alias;
+	private final String[] patterns, replacements;
+
+	private SMLAliases(final char[][] keys, final int[][] targets, final int[] failure, final int[] dictionary, final int[] alias, final String[] patterns, final String[] replacements) {
+		this.keys = keys;
+		this.targets = targets;
+		this.failure = failure;
+		this.dictionary = dictionary;
+		this.alias = alias;
+		this.patterns = patterns;
+		this.replacements = replacements;
+	}
+
+	/**
+	 * Builds the automaton.
+	 *
+	 * @param aliases original -> replacement, empty originals are ignored
+	 * @return the compiled aliases
+	 */
+	public static SMLAliases compile(final Map<String, String> aliases) {
+		final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+		final List<Integer> ends = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		ends.add(-1);
+		final String[] patterns = new String[aliases.size()], replacements = new String[aliases.size()];
+		int count = 0;
+		for (final Map.Entry<String, String> entry : aliases.entrySet()) {
+			if (entry.getKey().isEmpty()) {
+				continue;
+			}
+			int node = 0;
+			for (int index = 0; index < entry.getKey().length(); index += 1) {
+				final char character = entry.getKey().charAt(index);
+				Integer next = trie.get(node).get(character);
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<>());
+					ends.add(-1);
+					trie.get(node).put(character, next);
+				}
+				node = next;
+			}
+			patterns[count] = entry.getKey();
+			replacements[count] = entry.getValue();
+			ends.set(node, count);
+			count += 1;
+		}
+		final int size = trie.size();
+		final char[][] keys = new char[size][];
+		final int[][] targets = new int[size][];
+		final int[] alias = new int[size];
+		for (int node = 0; node < size; node += 1) {
+			keys[node] = new char[trie.get(node).size()];
+			targets[node] = new int[trie.get(node).size()];
+			int index = 0;
+			for (final Map.Entry<Character, Integer> transition : trie.get(node).entrySet()) {
+				keys[node][index] = transition.getKey();
+				targets[node][index] = transition.getValue();
+				index += 1;
+			}
+			alias[node] = ends.get(node);
+		}
+		// Breadth first, so that a node's failure is known before its children's
+		final int[] failure = new int[size], dictionary = new int[size];
+		dictionary[0] = -1;
+		final Queue<Integer> queue = new ArrayDeque<>();
+		for (final int child : targets[0]) {
+			failure[child] = 0;
+			dictionary[child] = -1;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			final int node = queue.poll();
+			for (int index = 0; index < keys[node].length; index += 1) {
+				final char character = keys[node][index];
+				final int child = targets[node][index];
+				int fallback = failure[node];
+				int next;
+				while (((next = SMLAliases.step(keys, targets, fallback, character)) == -1) && (fallback != 0)) {
+					fallback = failure[fallback];
+				}
+				failure[child] = next == -1 ? 0 : next;
+				dictionary[child] = alias[failure[child]] != -1 ? failure[child] : dictionary[failure[child]];
+				queue.add(child);
+			}
+		}
+		return new SMLAliases(keys, targets, failure, dictionary, alias, Arrays.copyOf(patterns, count), Arrays.copyOf(replacements, count));
+	}
+
+	/**
+	 * @return the node reached from @param node through @param character, -1 if
+	 *         there's no such transition
+	 */
+	private static int step(final char[][] keys, final int[][] targets, final int node, final char character) {
+		final int index = Arrays.binarySearch(keys[node], character);
+		return index < 0 ? -1 : targets[node][index];
+	}
+
+	/**
+	 * Replaces the aliases found in @param answer.
+	 *
+	 * @return the answer with its aliases replaced and stripped, or the answer
+	 *         itself if there's none in it
+	 */
+	public String apply(final String answer) {
+		if (this.patterns.length == 0) {
+			return answer;
+		}
+		// Longest alias starting at each index, -1 if none
+		int[] longest = null;
+		int node = 0;
+		for (int index = 0; index < answer.length(); index += 1) {
+			final char character = answer.charAt(index);
+			int next;
+			while (((next = SMLAliases.step(this.keys, this.targets, node, character)) == -1) && (node != 0)) {
+				node = this.failure[node];
+			}
+			node = next == -1 ? 0 : next;
+			for (int match = this.alias[node] != -1 ? node : this.dictionary[node]; match != -1; match = this.dictionary[match]) {
+				final int found = this.alias[match], start = (index - this.patterns[found].length()) + 1;
+				if (longest == null) {
+					longest = new int[answer.length()];
+					Arrays.fill(longest, -1);
+				}
+				if ((longest[start] == -1) || (this.patterns[found].length() > this.patterns[longest[start]].length())) {
+					longest[start] = found;
+				}
+			}
+		}
+		if (longest == null) {
+			return answer;
+		}
+		final StringBuilder builder = new StringBuilder(answer.length());
+		int index = 0;
+		while (index < answer.length()) {
+			final int found = longest[index];
+			if (found == -1) {
+				builder.append(answer.charAt(index));
+				index += 1;
+				continue;
+			}
+			if (SML.VERBOSE) {
+				System.out.printf("Found an alias for %s: %s\n", answer, this.patterns[found]);
+			}
+			builder.append(this.replacements[found]);
+			index += this.patterns[found].length();
+		}
+		return builder.toString().strip();
+	}
+
+	/**
+	 * @return the number of aliases
+	 */
+	public int size() {
+		return this.patterns.length;
+	}
+}
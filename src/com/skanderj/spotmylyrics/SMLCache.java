@@ -0,0 +1,60 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Where local copies of lyrics are kept. Songs are identified by their artist
+ * and track, which each backend normalizes through SML.getCacheKey.
+ *
+ * @author Skander J.
+ */
+public interface SMLCache {
+	/**
+	 * @return the lyrics to the song, or null if they're not cached
+	 */
+	String read(String artist, String track);
+
+	/**
+	 * @return true if the lyrics to the song are cached
+	 */
+	boolean contains(String artist, String track);
+
+	/**
+	 * Writes the lyrics to a song straight to an output stream, without building
+	 * a String out of them.
+	 *
+	 * @return true if the lyrics were cached and written, false otherwise
+	 */
+	boolean transfer(String artist, String track, OutputStream output);
+
+	/**
+	 * Stores the lyrics to a song.
+	 *
+	 * @param override whether to replace an existing copy
+	 * @return true if the lyrics were written, false otherwise
+	 */
+	boolean save(String artist, String track, String lyrics, boolean override);
+
+	/**
+	 * @return the keys of all the cached songs
+	 */
+	List<String> keys();
+
+	/**
+	 * @return the number of cached songs
+	 */
+	int items();
+
+	/**
+	 * @return the size in bytes of the cached lyrics
+	 */
+	long size();
+
+	/**
+	 * Deletes all the cached lyrics.
+	 *
+	 * @return true if success, false otherwise
+	 */
+	boolean clear();
+}
@@ -0,0 +1,119 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Stops sending requests to a site after a few failures in a row (errors or
+ * block pages), so that a temporary IP block isn't made worse. The site is
+ * tried again with a single request once a backoff has passed, the backoff
+ * doubling (with jitter, up to a maximum) each time that request fails too.
+ *
+ * @author Skander J.
+ */
+public final class SMLCircuitBreaker {
+	public enum State {
+		// Requests go through
+		CLOSED,
+		// Requests are refused until the backoff is over
+		OPEN,
+		// One request was let through to see whether the site is back
+		HALF_OPEN;
+	}
+
+	private final int threshold;
+	private final long baseMs, maxMs;
+	private final LongSupplier clock;
+	private final LongUnaryOperator jitter;
+	private State state;
+	// Failures in a row, times opened in a row and when the backoff (or the
+	// request let through) ends
+	private int failures, opens;
+	private long reopenAt;
+
+	public SMLCircuitBreaker(final int threshold, final long baseMs, final long maxMs) {
+		this(threshold, baseMs, maxMs, System::nanoTime, bound -> ThreadLocalRandom.current().nextLong(bound + 1));
+	}
+
+	/**
+	 * @param clock  the time in nanoseconds
+	 * @param jitter a random number of milliseconds from 0 to the given bound
+	 *               (included)
+	 */
+	SMLCircuitBreaker(final int threshold, final long baseMs, final long maxMs, final LongSupplier clock, final LongUnaryOperator jitter) {
+		this.threshold = threshold;
+		this.baseMs = baseMs;
+		this.maxMs = maxMs;
+		this.clock = clock;
+		this.jitter = jitter;
+		this.state = State.CLOSED;
+		this.failures = 0;
+		this.opens = 0;
+		this.reopenAt = 0;
+	}
+
+	/**
+	 * @return true if a request may be sent now, false if it must not be sent
+	 *         at all
+	 */
+	public synchronized boolean allow() {
+		switch (this.state) {
+		case OPEN:
+		case HALF_OPEN:
+			// Only one request at a time until it's back, another one if that one
+			// never told how it went (e.g. it was cancelled)
+			if ((this.clock.getAsLong() - this.reopenAt) < 0) {
+				return false;
+			}
+			this.state = State.HALF_OPEN;
+			this.reopenAt = this.clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(SML.FETCH_TIMEOUT_MS);
+			return true;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * The site answered (with lyrics or not).
+	 */
+	public synchronized void success() {
+		this.state = State.CLOSED;
+		this.failures = 0;
+		this.opens = 0;
+	}
+
+	/**
+	 * The site failed to answer or answered with a block page.
+	 */
+	public synchronized void failure() {
+		this.failures += 1;
+		if ((this.state == State.HALF_OPEN) || (this.failures >= this.threshold)) {
+			final long backoff = Math.min(this.maxMs, this.baseMs << Math.min(this.opens, 30));
+			// Equal jitter, so that the retries of several instances spread out
+			final long delay = (backoff / 2) + this.jitter.applyAsLong(backoff / 2);
+			this.reopenAt = this.clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(delay);
+			this.state = State.OPEN;
+			this.opens += 1;
+			this.failures = 0;
+			if (SML.VERBOSE) {
+				System.out.printf("Circuit breaker opened for %dms\n", delay);
+			}
+		}
+	}
+
+	public synchronized State state() {
+		return this.state;
+	}
+
+	/**
+	 * @return a one-line summary of the breaker's state
+	 */
+	public synchronized String stats() {
+		if (this.state == State.OPEN) {
+			return String.format("open (retrying in %ds)", Math.max(0, TimeUnit.NANOSECONDS.toSeconds(this.reopenAt - this.clock.getAsLong())));
+		}
+		return this.state == State.HALF_OPEN ? "half-open" : "closed";
+	}
+}
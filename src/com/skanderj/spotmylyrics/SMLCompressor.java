@@ -0,0 +1,222 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses lyrics with Deflate primed with a dictionary of what lyrics
+ * usually contain (common words and lines, trained on the cache), which is
+ * what makes short texts compress well. Compressed entries start with a
+ * marker, the format version and the dictionary's checksum, so plain entries
+ * written before compression was enabled still load as they are.
+ *
+ * @author Skander J.
+ */
+public final class SMLCompressor {
+	// "SMLZ", then the version and the dictionary's Adler-32
+	private static final byte[] MAGIC = { 'S', 'M', 'L', 'Z' };
+	private static final byte VERSION = 1;
+	public static final int HEADER_BYTES = SMLCompressor.MAGIC.length + 1 + Integer.BYTES;
+
+	private final byte[] dictionary;
+	private final int dictionaryId;
+	// Totals, for the stats
+	private long plainBytes, compressedBytes, decodedBytes, decodeNanos;
+
+	public SMLCompressor(final byte[] dictionary) {
+		this.dictionary = dictionary;
+		final Deflater deflater = new Deflater();
+		deflater.setDictionary(dictionary);
+		this.dictionaryId = deflater.getAdler();
+		deflater.end();
+		this.plainBytes = 0;
+		this.compressedBytes = 0;
+		this.decodedBytes = 0;
+		this.decodeNanos = 0;
+	}
+
+	/**
+	 * Builds a dictionary from sample lyrics: the lines and words found in the
+	 * most songs, weighted by their length, the most useful ones last (closest
+	 * to the data).
+	 *
+	 * @param samples lyrics
+	 * @param size    the dictionary's maximum size in bytes
+	 * @return the compressor using it
+	 */
+	public static SMLCompressor train(final Collection<String> samples, final int size) {
+		// In how many songs each line and word appears
+		final Map<String, Integer> frequencies = new HashMap<>();
+		for (final String sample : samples) {
+			final Set<String> seen = new HashSet<>();
+			for (final String line : sample.split("\n")) {
+				seen.add(line.strip() + "\n");
+				for (final String word : line.strip().split(SML.SPACE)) {
+					seen.add(word + SML.SPACE);
+				}
+			}
+			for (final String fragment : seen) {
+				frequencies.merge(fragment, 1, Integer::sum);
+			}
+		}
+		final List<String> fragments = new ArrayList<>();
+		for (final Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+			// Fragments in a single song only help that song
+			if ((entry.getValue() > 1) && (entry.getKey().length() > 2)) {
+				fragments.add(entry.getKey());
+			}
+		}
+		fragments.sort((first, second) -> Long.compare((long) frequencies.get(second) * second.length(), (long) frequencies.get(first) * first.length()));
+		final List<byte[]> chosen = new ArrayList<>();
+		int total = 0;
+		for (final String fragment : fragments) {
+			final byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+			if ((total + bytes.length) <= size) {
+				chosen.add(bytes);
+				total += bytes.length;
+			}
+		}
+		final byte[] dictionary = new byte[total];
+		int offset = total;
+		for (final byte[] bytes : chosen) {
+			offset -= bytes.length;
+			System.arraycopy(bytes, 0, dictionary, offset, bytes.length);
+		}
+		return new SMLCompressor(dictionary);
+	}
+
+	/**
+	 * @return the compressor using the dictionary saved in @param file, or null
+	 *         if there's none
+	 */
+	public static SMLCompressor load(final File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try (FileInputStream input = new FileInputStream(file)) {
+			return new SMLCompressor(input.readAllBytes());
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while loading the compression dictionary: " + ioException.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if success, false otherwise
+	 */
+	public boolean save(final File file) {
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(this.dictionary);
+			return true;
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while saving the compression dictionary: " + ioException.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if @param data starts like a compressed entry
+	 */
+	public static boolean isCompressed(final byte[] data, final int length) {
+		if (length < SMLCompressor.HEADER_BYTES) {
+			return false;
+		}
+		for (int index = 0; index < SMLCompressor.MAGIC.length; index += 1) {
+			if (data[index] != SMLCompressor.MAGIC[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the compressed entry, header included
+	 */
+	public byte[] compress(final String lyrics) {
+		final byte[] plain = lyrics.getBytes(StandardCharsets.UTF_8);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(SMLCompressor.HEADER_BYTES + (plain.length / 2));
+		output.writeBytes(SMLCompressor.MAGIC);
+		output.write(SMLCompressor.VERSION);
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			output.write(this.dictionaryId >>> shift);
+		}
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setDictionary(this.dictionary);
+		deflater.setInput(plain);
+		deflater.finish();
+		final byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			output.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		synchronized (this) {
+			this.plainBytes += plain.length;
+			this.compressedBytes += output.size();
+		}
+		return output.toByteArray();
+	}
+
+	/**
+	 * @param data a compressed entry, header included
+	 * @return the lyrics, or null if the entry is corrupted or was compressed
+	 *         with another dictionary
+	 */
+	public String decompress(final byte[] data, final int length) {
+		final long start = System.nanoTime();
+		if (data[SMLCompressor.MAGIC.length] != SMLCompressor.VERSION) {
+			System.err.println("Can't read a compressed entry written by another version");
+			return null;
+		}
+		final Inflater inflater = new Inflater();
+		inflater.setInput(data, SMLCompressor.HEADER_BYTES, length - SMLCompressor.HEADER_BYTES);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(length * 4);
+		final byte[] buffer = new byte[8192];
+		try {
+			while (!inflater.finished()) {
+				final int inflated = inflater.inflate(buffer);
+				if ((inflated == 0) && inflater.needsDictionary()) {
+					if (inflater.getAdler() != this.dictionaryId) {
+						System.err.println("Can't read a compressed entry written with another dictionary");
+						return null;
+					}
+					inflater.setDictionary(this.dictionary);
+				} else if ((inflated == 0) && inflater.needsInput()) {
+					System.err.println("Can't read a truncated compressed entry");
+					return null;
+				}
+				output.write(buffer, 0, inflated);
+			}
+		} catch (final DataFormatException dataFormatException) {
+			System.err.println("An exception occurred while decompressing an entry: " + dataFormatException.getMessage());
+			return null;
+		} finally {
+			inflater.end();
+		}
+		synchronized (this) {
+			this.decodedBytes += output.size();
+			this.decodeNanos += System.nanoTime() - start;
+		}
+		return output.toString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return a one-line summary of the compression ratio and decoding speed
+	 */
+	public synchronized String stats() {
+		return String.format("Compression: %s -> %s (ratio %.2f), %s decoded at %.1f MB/s", SMLIO.humanReadableByteCountSI(this.plainBytes), SMLIO.humanReadableByteCountSI(this.compressedBytes), this.compressedBytes == 0 ? 0.0 : this.plainBytes / (double) this.compressedBytes, SMLIO.humanReadableByteCountSI(this.decodedBytes), this.decodeNanos == 0 ? 0.0 : (this.decodedBytes / 1e6) / (this.decodeNanos / 1e9));
+	}
+}
@@ -0,0 +1,174 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Looks for an ASCII marker in a byte stream as it's being read, using the
+ * Knuth-Morris-Pratt failure table so that each byte is looked at once. The
+ * stream is read in chunks and each chunk is scanned as an array. Line
+ * terminators are skipped, as if the stream had been read line by line and
+ * joined (which is what fetchSource does).
+ *
+ * @author Skander J.
+ */
+public final class SMLExtractor {
+	// Where the lyrics start and end in AZLyrics' pages
+	public static final SMLExtractor LYRICS_START = new SMLExtractor(SML.TARGET_WARNING), LYRICS_END = new SMLExtractor("</div>");
+
+	// How much of the stream is read at once
+	public static final int CHUNK_BYTES = 8192;
+
+	private final byte[] marker;
+	// failure[i] = length of the longest proper prefix of marker[0..i] which is
+	// also a suffix of it
+	private final int[] failure;
+
+	public SMLExtractor(final String marker) {
+		this.marker = marker.getBytes(StandardCharsets.US_ASCII);
+		this.failure = new int[this.marker.length];
+		int prefix = 0;
+		for (int index = 1; index < this.marker.length; index += 1) {
+			while ((prefix > 0) && (this.marker[index] != this.marker[prefix])) {
+				prefix = this.failure[prefix - 1];
+			}
+			if (this.marker[index] == this.marker[prefix]) {
+				prefix += 1;
+			}
+			this.failure[index] = prefix;
+		}
+	}
+
+	/**
+	 * Reads an AZLyrics page up to the end of the lyrics section only.
+	 *
+	 * @param input the page's stream, left open
+	 * @return the raw (still HTML-formatted) lyrics section, or null if it
+	 *         couldn't be found
+	 * @throws IOException if reading fails
+	 */
+	public static String extractLyrics(final InputStream input) throws IOException {
+		return SMLExtractor.extractSection(input, SMLExtractor.LYRICS_START, SMLExtractor.LYRICS_END);
+	}
+
+	/**
+	 * Reads a page up to the end of the section delimited by two markers only
+	 * (give or take a chunk).
+	 *
+	 * @param input the page's stream, left open
+	 * @param start what comes right before the section
+	 * @param end   what comes right after the section
+	 * @return the raw section, or null if it couldn't be found
+	 * @throws IOException if reading fails
+	 */
+	public static String extractSection(final InputStream input, final SMLExtractor start, final SMLExtractor end) throws IOException {
+		final byte[] chunk = new byte[SMLExtractor.CHUNK_BYTES];
+		final Search before = new Search(start, false), section = new Search(end, true);
+		Search search = before;
+		int read;
+		while ((read = input.read(chunk)) != -1) {
+			int offset = 0;
+			if (search == before) {
+				offset = before.feed(chunk, 0, read);
+				if (offset == -1) {
+					continue;
+				}
+				search = section;
+			}
+			if (section.feed(chunk, offset, read) != -1) {
+				return new String(section.kept, 0, section.size, StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The progress of a search for a marker across chunks, and optionally what
+	 * was read before the marker.
+	 */
+	private static final class Search {
+		private final SMLExtractor extractor;
+		// How much of the marker the last bytes matched
+		private int matched;
+		// What was read before the marker, if kept
+		private byte[] kept;
+		private int size;
+
+		private Search(final SMLExtractor extractor, final boolean keep) {
+			this.extractor = extractor;
+			this.matched = 0;
+			this.kept = keep ? new byte[4096] : null;
+			this.size = 0;
+		}
+
+		private void keep(final byte[] bytes, final int offset, final int length) {
+			if ((this.size + length) > this.kept.length) {
+				this.kept = Arrays.copyOf(this.kept, Math.max(this.kept.length * 2, this.size + length));
+			}
+			System.arraycopy(bytes, offset, this.kept, this.size, length);
+			this.size += length;
+		}
+
+		/**
+		 * Scans @param chunk from @param from to @param to.
+		 *
+		 * @return the index right after the marker, or -1 if it wasn't found in
+		 *         the chunk
+		 */
+		private int feed(final byte[] chunk, final int from, final int to) {
+			final byte[] marker = this.extractor.marker;
+			final int[] failure = this.extractor.failure;
+			final byte first = marker[0];
+			final boolean keep = this.kept != null;
+			int matched = this.matched;
+			int index = from;
+			while (index < to) {
+				if (matched == 0) {
+					// Nothing matched yet: skip to the next possible start of the
+					// marker, keeping what's skipped but line terminators
+					final int run = index;
+					byte read = 0;
+					while ((index < to) && ((read = chunk[index]) != first) && (read != '\n') && (read != '\r')) {
+						index += 1;
+					}
+					if (keep) {
+						this.keep(chunk, run, index - run);
+					}
+					if (index == to) {
+						break;
+					}
+					index += 1;
+					if (read == first) {
+						matched = 1;
+					}
+				} else {
+					final byte read = chunk[index];
+					index += 1;
+					if ((read == '\n') || (read == '\r')) {
+						continue;
+					}
+					while ((matched > 0) && (read != marker[matched])) {
+						// The bytes we thought were part of the marker weren't
+						if (keep) {
+							this.keep(marker, 0, matched - failure[matched - 1]);
+						}
+						matched = failure[matched - 1];
+					}
+					if (read == marker[matched]) {
+						matched += 1;
+					} else if (keep) {
+						this.keep(chunk, index - 1, 1);
+					}
+				}
+				if (matched == marker.length) {
+					this.matched = 0;
+					return index;
+				}
+			}
+			this.matched = matched;
+			return -1;
+		}
+	}
+}
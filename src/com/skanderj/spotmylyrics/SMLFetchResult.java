@@ -0,0 +1,57 @@
+package com.skanderj.spotmylyrics;
+
+/**
+ * What a lyrics fetch ended with: the lyrics, or why there are none, which
+ * tells a song that doesn't exist apart from a site that's down or blocking
+ * us.
+ *
+ * @author Skander J.
+ */
+public final class SMLFetchResult {
+	public enum Outcome {
+		// The lyrics were in the page
+		FOUND,
+		// The site answered that it doesn't have the song
+		NOT_FOUND,
+		// The site answered with something other than lyrics (e.g. a captcha) or
+		// refused to answer, most likely because we're IP-blocked
+		BLOCKED,
+		// The request failed or timed out, or wasn't sent at all
+		FAILED;
+	}
+
+	public static final SMLFetchResult NOT_FOUND = new SMLFetchResult(Outcome.NOT_FOUND, null), BLOCKED = new SMLFetchResult(Outcome.BLOCKED, null), FAILED = new SMLFetchResult(Outcome.FAILED, null);
+
+	private final Outcome outcome;
+	private final String lyrics;
+
+	private SMLFetchResult(final Outcome outcome, final String lyrics) {
+		this.outcome = outcome;
+		this.lyrics = lyrics;
+	}
+
+	/**
+	 * @return a found result, or NOT_FOUND if @param lyrics are blank
+	 */
+	public static SMLFetchResult found(final String lyrics) {
+		return (lyrics == null) || lyrics.isBlank() ? SMLFetchResult.NOT_FOUND : new SMLFetchResult(Outcome.FOUND, lyrics);
+	}
+
+	public Outcome outcome() {
+		return this.outcome;
+	}
+
+	/**
+	 * @return the raw lyrics, or null if they weren't found
+	 */
+	public String lyrics() {
+		return this.lyrics;
+	}
+
+	/**
+	 * @return true if the site answered, whether it had the lyrics or not
+	 */
+	public boolean answered() {
+		return (this.outcome == Outcome.FOUND) || (this.outcome == Outcome.NOT_FOUND);
+	}
+}
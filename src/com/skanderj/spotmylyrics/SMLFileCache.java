@@ -0,0 +1,92 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original cache layout: one text file per song, <artist>/<title>.txt
+ * under a root directory (SML.CACHE unless told otherwise), see
+ * SML.getLocalCopy.
+ *
+ * @author Skander J.
+ */
+public final class SMLFileCache implements SMLCache {
+	private final File root;
+
+	public SMLFileCache() {
+		this(SML.CACHE);
+	}
+
+	public SMLFileCache(final File root) {
+		this.root = root;
+	}
+
+	/**
+	 * @return the file holding the lyrics to the song
+	 */
+	private File file(final String artist, final String track) {
+		return new File(this.root, String.format("/%s.txt", SML.getInstance().getCacheKey(artist, track)));
+	}
+
+	@Override
+	public String read(final String artist, final String track) {
+		return SMLIO.readWhole(this.file(artist, track));
+	}
+
+	@Override
+	public boolean contains(final String artist, final String track) {
+		return this.file(artist, track).isFile();
+	}
+
+	@Override
+	public boolean transfer(final String artist, final String track, final OutputStream output) {
+		return SMLIO.transferWhole(this.file(artist, track), output);
+	}
+
+	@Override
+	public boolean save(final String artist, final String track, final String lyrics, final boolean override) {
+		return SMLIO.saveCacheEntry(this.file(artist, track), lyrics, override);
+	}
+
+	@Override
+	public List<String> keys() {
+		final List<String> keys = new ArrayList<>();
+		this.listKeys(this.root, SML.EMPTY, keys);
+		return keys;
+	}
+
+	/**
+	 * Adds the keys of the files under @param directory, @param prefix being the
+	 * directory's own key.
+	 */
+	private void listKeys(final File directory, final String prefix, final List<String> keys) {
+		final File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (final File child : children) {
+			if (child.isDirectory()) {
+				this.listKeys(child, prefix + child.getName() + "/", keys);
+			} else if (child.getName().endsWith(".txt")) {
+				keys.add(prefix + child.getName().substring(0, child.getName().length() - ".txt".length()));
+			}
+		}
+	}
+
+	@Override
+	public int items() {
+		return SMLIO.countFiles(this.root);
+	}
+
+	@Override
+	public long size() {
+		return SMLIO.fileSize(this.root);
+	}
+
+	@Override
+	public boolean clear() {
+		return SMLIO.deleteFile(this.root);
+	}
+}
@@ -0,0 +1,111 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls a listener on a background thread whenever a file is written,
+ * created or replaced. Editors tend to save in several steps (truncate, write,
+ * rename...), so events are gathered for a short while before the listener
+ * runs once.
+ *
+ * @author Skander J.
+ */
+public final class SMLFileWatcher {
+	private final File file;
+	private final long settleMs;
+	private final Runnable listener;
+	private volatile WatchService service;
+
+	/**
+	 * @param file     the file to watch
+	 * @param settleMs how long to wait for more events before calling
+	 *                 @param listener
+	 * @param listener called after the file changed
+	 */
+	public SMLFileWatcher(final File file, final long settleMs, final Runnable listener) {
+		this.file = file.getAbsoluteFile();
+		this.settleMs = settleMs;
+		this.listener = listener;
+		this.service = null;
+	}
+
+	/**
+	 * Starts watching the file's folder.
+	 *
+	 * @return true if success, false otherwise
+	 */
+	public synchronized boolean start() {
+		if (this.service != null) {
+			return true;
+		}
+		try {
+			final WatchService service = FileSystems.getDefault().newWatchService();
+			this.file.getParentFile().toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			this.service = service;
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while watching " + this.file.getName() + ": " + ioException.getMessage());
+			return false;
+		}
+		final Thread thread = new Thread(this::watch, "FileWatcher");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	/**
+	 * Stops watching.
+	 */
+	public synchronized void stop() {
+		if (this.service != null) {
+			try {
+				this.service.close();
+			} catch (final IOException ioException) {
+				System.err.println("An exception occurred while closing a file watcher: " + ioException.getMessage());
+			}
+			this.service = null;
+		}
+	}
+
+	private void watch() {
+		final WatchService service = this.service;
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				boolean changed = false;
+				// Gather what comes in while the file settles
+				while (key != null) {
+					changed |= this.concernsFile(key);
+					if (!key.reset()) {
+						System.err.println("Stopped watching " + this.file.getName() + ", its folder is gone");
+						return;
+					}
+					key = service.poll(this.settleMs, TimeUnit.MILLISECONDS);
+				}
+				if (changed) {
+					this.listener.run();
+				}
+			}
+		} catch (final InterruptedException | ClosedWatchServiceException exception) {
+			return;
+		}
+	}
+
+	private boolean concernsFile(final WatchKey key) {
+		boolean concerns = false;
+		for (final WatchEvent<?> event : key.pollEvents()) {
+			if ((event.kind() == StandardWatchEventKinds.OVERFLOW) || ((event.context() instanceof Path) && ((Path) event.context()).toString().equals(this.file.getName()))) {
+				concerns = true;
+			}
+		}
+		return concerns;
+	}
+}
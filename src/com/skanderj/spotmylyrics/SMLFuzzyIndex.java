@@ -0,0 +1,266 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram index over the cache keys, used to find the cached song closest to
+ * one that isn't cached under its exact key (different punctuation, accents,
+ * typos...). The artist and title of each key are folded to lowercase ASCII
+ * words and split into trigrams, and each trigram points to the keys
+ * containing it. A lookup counts the trigrams shared with every candidate and
+ * computes the Dice coefficient of the artists and of the titles: both must
+ * reach the threshold, otherwise any two short titles by the same artist
+ * would match, and the best title wins. Numbers in the titles must be the
+ * same, so that part 2 of a song never stands in for part 1.
+ *
+ * @author Skander J.
+ */
+public final class SMLFuzzyIndex {
+	// Marks the trigrams of titles
+	private static final long TITLE = 1L << 48;
+
+	// Words telling editions of a song apart, which don't change its lyrics: a
+	// part of a title in parentheses or brackets, or after " - ", with one of
+	// them is dropped
+	private static final Set<String> NOISE = Set.of("remastered", "remaster", "version", "edit", "radio", "live", "mono", "stereo", "deluxe", "edition", "bonus", "single", "album", "explicit", "feat", "ft", "featuring");
+
+	private final double threshold;
+	private final List<String> keys;
+	private final Map<String, Integer> ids;
+	// Number of distinct trigrams in the artist and title of each key
+	private int[] artistSizes, titleSizes;
+	// Numbers in the title of each key, see numbers
+	private String[] titleNumbers;
+	// Trigram -> ids of the keys containing it, preceded by their number
+	private final Map<Long, int[]> postings;
+	// Scratch space for lookups: shared trigrams per key, and which keys have
+	// any
+	private int[] artistShared, titleShared;
+	private int[] touched;
+
+	/**
+	 * @param threshold the minimum similarity (Dice coefficient, between 0 and
+	 *                  1) of a match
+	 */
+	public SMLFuzzyIndex(final double threshold) {
+		this.threshold = threshold;
+		this.keys = new ArrayList<>();
+		this.ids = new HashMap<>();
+		this.artistSizes = new int[16];
+		this.titleSizes = new int[16];
+		this.titleNumbers = new String[16];
+		this.postings = new HashMap<>();
+		this.artistShared = new int[16];
+		this.titleShared = new int[16];
+		this.touched = new int[16];
+	}
+
+	/**
+	 * @return true if @param edition, a part of a title in parentheses or after
+	 *         " - ", has an edition word ("remastered", "live"...)
+	 */
+	private static boolean isNoise(final String edition) {
+		for (final String word : SMLNormalizer.words(edition)) {
+			if (SMLFuzzyIndex.NOISE.contains(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the editions from @param part: the parts in parentheses or brackets,
+	 * and the part after " - ", which have an edition word. Underscores count as
+	 * spaces, so that the " - " of a cache key is found too.
+	 *
+	 * @return what's left of the part
+	 */
+	private static String dropEditions(final String part) {
+		final String spaced = part.replace('_', ' ');
+		final int dash = spaced.indexOf(" - ");
+		final int end = dash == -1 ? spaced.length() : dash;
+		final StringBuilder kept = new StringBuilder(end);
+		int index = 0;
+		while (index < end) {
+			final char character = spaced.charAt(index);
+			if ((character != '(') && (character != '[')) {
+				kept.append(character);
+				index += 1;
+				continue;
+			}
+			int close = spaced.indexOf(character == '(' ? ')' : ']', index);
+			close = (close == -1) || (close > end) ? end : close + 1;
+			final String edition = spaced.substring(index, close);
+			if (!SMLFuzzyIndex.isNoise(edition)) {
+				kept.append(edition);
+			}
+			kept.append(' ');
+			index = close;
+		}
+		if ((dash != -1) && !SMLFuzzyIndex.isNoise(spaced.substring(dash))) {
+			kept.append(spaced, dash, spaced.length());
+		}
+		return kept.toString();
+	}
+
+	/**
+	 * Folds accents, lowercases and splits into words on anything that isn't a
+	 * letter or a digit, dropping the editions unless that leaves nothing.
+	 *
+	 * @return the words joined and surrounded by spaces
+	 */
+	private static String fold(final String part) {
+		List<String> words = SMLNormalizer.words(SMLFuzzyIndex.dropEditions(part));
+		if (words.isEmpty()) {
+			words = SMLNormalizer.words(part);
+		}
+		return ' ' + String.join(SML.SPACE, words) + ' ';
+	}
+
+	/**
+	 * @return the words of @param folded which are numbers, in order and
+	 *         surrounded by spaces
+	 */
+	private static String numbers(final String folded) {
+		final StringBuilder numbers = new StringBuilder().append(' ');
+		for (final String word : folded.split(SML.SPACE)) {
+			if (!word.isEmpty() && word.chars().allMatch(character -> (character >= '0') && (character <= '9'))) {
+				numbers.append(word).append(' ');
+			}
+		}
+		return numbers.toString();
+	}
+
+	/**
+	 * Adds the distinct trigrams of @param folded to @param trigrams, each
+	 * packed in a long along with @param title.
+	 *
+	 * @return the number of trigrams added
+	 */
+	private static int trigrams(final String folded, final boolean title, final Set<Long> trigrams) {
+		final int before = trigrams.size();
+		for (int index = 0; (index + 3) <= folded.length(); index += 1) {
+			trigrams.add((title ? SMLFuzzyIndex.TITLE : 0) | ((long) folded.charAt(index) << 32) | ((long) folded.charAt(index + 1) << 16) | folded.charAt(index + 2));
+		}
+		return trigrams.size() - before;
+	}
+
+	private static boolean isTitle(final long trigram) {
+		return (trigram & SMLFuzzyIndex.TITLE) != 0;
+	}
+
+	/**
+	 * Indexes a key, unless it already is.
+	 */
+	public synchronized void add(final String key) {
+		if (this.ids.containsKey(key)) {
+			return;
+		}
+		final int id = this.keys.size();
+		this.keys.add(key);
+		this.ids.put(key, id);
+		if (id == this.artistSizes.length) {
+			this.artistSizes = Arrays.copyOf(this.artistSizes, id * 2);
+			this.titleSizes = Arrays.copyOf(this.titleSizes, id * 2);
+			this.titleNumbers = Arrays.copyOf(this.titleNumbers, id * 2);
+			this.artistShared = new int[id * 2];
+			this.titleShared = new int[id * 2];
+			this.touched = new int[id * 2];
+		}
+		final Set<Long> trigrams = new HashSet<>();
+		final int slash = key.indexOf('/');
+		final String title = SMLFuzzyIndex.fold(key.substring(slash + 1));
+		this.artistSizes[id] = SMLFuzzyIndex.trigrams(SMLFuzzyIndex.fold(key.substring(0, slash)), false, trigrams);
+		this.titleSizes[id] = SMLFuzzyIndex.trigrams(title, true, trigrams);
+		this.titleNumbers[id] = SMLFuzzyIndex.numbers(title);
+		for (final Long trigram : trigrams) {
+			int[] posting = this.postings.get(trigram);
+			if (posting == null) {
+				posting = new int[4];
+			} else if ((posting[0] + 1) == posting.length) {
+				posting = Arrays.copyOf(posting, posting.length * 2);
+			}
+			posting[0] += 1;
+			posting[posting[0]] = id;
+			this.postings.put(trigram, posting);
+		}
+	}
+
+	public synchronized void addAll(final Collection<String> keys) {
+		for (final String key : keys) {
+			this.add(key);
+		}
+	}
+
+	public synchronized void clear() {
+		this.keys.clear();
+		this.ids.clear();
+		this.postings.clear();
+	}
+
+	/**
+	 * @param key a key which isn't in the index, as "<artist>/<title>"
+	 * @return the indexed key most similar to @param key, or null if none is
+	 *         similar enough
+	 */
+	public String find(final String key) {
+		final int slash = key.indexOf('/');
+		return this.find(key.substring(0, slash), key.substring(slash + 1));
+	}
+
+	/**
+	 * @param artist the artist of a song which isn't in the index
+	 * @param title  its title, as played: editions can only be told apart while
+	 *               the parentheses are still there
+	 * @return the indexed key most similar to the song, or null if none is
+	 *         similar enough
+	 */
+	public synchronized String find(final String artist, final String title) {
+		final Set<Long> trigrams = new HashSet<>();
+		final String foldedTitle = SMLFuzzyIndex.fold(title), numbers = SMLFuzzyIndex.numbers(foldedTitle);
+		final int artistSize = SMLFuzzyIndex.trigrams(SMLFuzzyIndex.fold(artist), false, trigrams), titleSize = SMLFuzzyIndex.trigrams(foldedTitle, true, trigrams);
+		int touchedCount = 0;
+		for (final Long trigram : trigrams) {
+			final int[] posting = this.postings.get(trigram);
+			if (posting == null) {
+				continue;
+			}
+			final int[] shared = SMLFuzzyIndex.isTitle(trigram) ? this.titleShared : this.artistShared;
+			for (int index = 1; index <= posting[0]; index += 1) {
+				final int id = posting[index];
+				if ((this.artistShared[id] == 0) && (this.titleShared[id] == 0)) {
+					this.touched[touchedCount] = id;
+					touchedCount += 1;
+				}
+				shared[id] += 1;
+			}
+		}
+		String best = null;
+		double bestScore = this.threshold;
+		for (int index = 0; index < touchedCount; index += 1) {
+			final int id = this.touched[index];
+			final double artistScore = (2.0 * this.artistShared[id]) / (artistSize + this.artistSizes[id]), titleScore = (2.0 * this.titleShared[id]) / (titleSize + this.titleSizes[id]);
+			if ((artistScore >= this.threshold) && (titleScore >= bestScore) && numbers.equals(this.titleNumbers[id])) {
+				best = this.keys.get(id);
+				bestScore = titleScore;
+			}
+			this.artistShared[id] = 0;
+			this.titleShared[id] = 0;
+		}
+		return best;
+	}
+
+	/**
+	 * @return the number of indexed keys
+	 */
+	public synchronized int size() {
+		return this.keys.size();
+	}
+}
@@ -0,0 +1,166 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A long-lived helper process answering "what's playing" queries over its
+ * stdin/stdout, so that we don't have to spawn a new interpreter every
+ * REFRESH_TIME_MS. Each query is a single line written to the helper, each
+ * answer a single line read back from it. The helper is (re)started lazily
+ * whenever it isn't alive, and killed then restarted when it doesn't answer
+ * in time: answers are read on a separate thread, so a hung helper can't
+ * block the polling task for good.
+ *
+ * @author Skander J.
+ */
+public final class SMLHelper {
+	// What we send to the helper to ask for the current song
+	public static final String QUERY = "?";
+
+	// How many times we try to (re)start the helper for a single query
+	public static final int MAX_RESTARTS = 1;
+
+	private final String[] command;
+	// Reads the answers; a read stuck on a hung helper keeps its thread until
+	// the helper is killed, the next ones get a new thread
+	private final ExecutorService readers;
+	private Process process;
+	private BufferedReader reader;
+	private BufferedWriter writer;
+
+	public SMLHelper(final String... command) {
+		this.command = command;
+		this.readers = Executors.newCachedThreadPool(runnable -> {
+			final Thread thread = new Thread(runnable, "SMLHelper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.process = null;
+		this.reader = null;
+		this.writer = null;
+	}
+
+	/**
+	 * Starts the helper process if it's not already running.
+	 *
+	 * @return true if the helper is alive, false otherwise
+	 */
+	private boolean ensureStarted() {
+		if ((this.process != null) && this.process.isAlive()) {
+			return true;
+		}
+		this.stop();
+		if (SML.VERBOSE) {
+			System.out.printf("Starting helper %s...", String.join(SML.SPACE, this.command));
+		}
+		try {
+			final ProcessBuilder processBuilder = new ProcessBuilder(this.command);
+			// Helper errors shouldn't end up in the answers
+			processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+			this.process = processBuilder.start();
+			this.reader = new BufferedReader(new InputStreamReader(this.process.getInputStream()));
+			this.writer = new BufferedWriter(new OutputStreamWriter(this.process.getOutputStream()));
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while starting the helper: " + ioException.getMessage());
+			this.process = null;
+			return false;
+		}
+		if (SML.VERBOSE) {
+			System.out.printf("\tSuccess!\n");
+		}
+		return true;
+	}
+
+	/**
+	 * Asks the helper for the current song, restarting it if it died in between.
+	 *
+	 * @return the helper's answer, or null if it couldn't be reached
+	 */
+	public synchronized String query() {
+		for (int attempt = 0; attempt <= SMLHelper.MAX_RESTARTS; attempt += 1) {
+			if (!this.ensureStarted()) {
+				return null;
+			}
+			try {
+				this.writer.write(SMLHelper.QUERY);
+				this.writer.newLine();
+				this.writer.flush();
+				final BufferedReader reader = this.reader;
+				final Future<String> read = this.readers.submit(reader::readLine);
+				final String answer = read.get(SML.HELPER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+				if (answer != null) {
+					return answer.strip();
+				}
+			} catch (final IOException ioException) {
+				if (SML.VERBOSE) {
+					System.out.printf("Helper died: %s\n", ioException.getMessage());
+				}
+			} catch (final ExecutionException executionException) {
+				if (SML.VERBOSE) {
+					System.out.printf("Helper died: %s\n", executionException.getCause().getMessage());
+				}
+			} catch (final TimeoutException timeoutException) {
+				if (SML.VERBOSE) {
+					System.out.printf("Helper didn't answer within %dms, restarting it\n", SML.HELPER_TIMEOUT_MS);
+				}
+				// The pending read ends with the process, the reader can't be
+				// closed before that
+				this.kill();
+				continue;
+			} catch (final InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			this.stop();
+		}
+		System.err.println("The helper stopped answering, can't identify the current track!");
+		return null;
+	}
+
+	/**
+	 * Kills a hung helper without closing its streams, which a pending read
+	 * still holds; they're released once the process and its children (which
+	 * may have inherited them) are gone.
+	 */
+	private void kill() {
+		if (this.process != null) {
+			this.process.descendants().forEach(ProcessHandle::destroyForcibly);
+			this.process.destroyForcibly();
+			this.process = null;
+		}
+		this.reader = null;
+		this.writer = null;
+	}
+
+	/**
+	 * Kills the helper process, if any.
+	 */
+	public synchronized void stop() {
+		if (this.process != null) {
+			this.process.destroy();
+			this.process = null;
+		}
+		try {
+			if (this.reader != null) {
+				this.reader.close();
+			}
+			if (this.writer != null) {
+				this.writer.close();
+			}
+		} catch (final IOException ioException) {
+			// Nothing to do here
+		}
+		this.reader = null;
+		this.writer = null;
+	}
+}
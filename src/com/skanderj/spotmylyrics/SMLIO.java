@@ -1,74 +1,305 @@
 package com.skanderj.spotmylyrics;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.StandardCopyOption;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public final class SMLIO {
+	// Reused so that writing to stdout doesn't allocate a new copy buffer each
+	// time
+	private static final WritableByteChannel STDOUT = Channels.newChannel(System.out);
+
+	// Runs the HTTP client and reads the responses, daemons so they don't keep
+	// the app alive
+	private static final ExecutorService FETCHER = Executors.newCachedThreadPool(runnable -> {
+		final Thread thread = new Thread(runnable, "SMLFetcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Shared by all fetches so that connections are kept alive and reused
+	private static final HttpClient CLIENT = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).followRedirects(HttpClient.Redirect.NORMAL).connectTimeout(Duration.ofMillis(SML.CONNECT_TIMEOUT_MS)).executor(SMLIO.FETCHER).build();
+
+	// Set with --compress to save new entries compressed, loaded on demand to
+	// read compressed entries otherwise
+	private static SMLCompressor compressor = null;
+	private static boolean compressing = false;
+
 	private SMLIO() {
 		return;
 	}
 
 	/**
-	 * Fetches the source code of the lyrics page.
+	 * Makes saveCacheEntry compress from now on, with @param compressor.
+	 */
+	public static synchronized void enableCompression(final SMLCompressor compressor) {
+		SMLIO.compressor = compressor;
+		SMLIO.compressing = true;
+	}
+
+	/**
+	 * Makes saveCacheEntry save plain entries again, and forgets the
+	 * compressor.
+	 */
+	static synchronized void disableCompression() {
+		SMLIO.compressor = null;
+		SMLIO.compressing = false;
+	}
+
+	/**
+	 * @return the compressor reading and writing compressed entries, loading
+	 *         the dictionary if needed, or null if there's none
+	 */
+	public static synchronized SMLCompressor compressor() {
+		if (SMLIO.compressor == null) {
+			SMLIO.compressor = SMLCompressor.load(SML.DICTIONARY);
+		}
+		return SMLIO.compressor;
+	}
+
+	/**
+	 * @return the lyrics in a compressed entry, or null if they can't be read
+	 */
+	private static String decompress(final File file, final byte[] data, final int length) {
+		final SMLCompressor compressor = SMLIO.compressor();
+		if (compressor == null) {
+			System.err.println("Can't read " + file.getName() + " without the compression dictionary " + SML.DICTIONARY.getPath());
+			return null;
+		}
+		return compressor.decompress(data, length);
+	}
+
+	/**
+	 * Builds the request for a page.
 	 *
-	 * @param artist the artist's name
-	 * @param track  the song's track
-	 * @return the source code, or null if an exception occurred
+	 * @param url  the page's URL format
+	 * @param args the URL's arguments
+	 * @return the request, or null if the URL is malformed
 	 */
-	public static final String fetchSource(final String url, final Object... args) {
+	private static HttpRequest buildRequest(final String url, final Object... args) {
 		final String formattedURL = String.format(url, args);
 		if (SML.VERBOSE) {
-			System.out.printf("Fetching page source for %s\n", formattedURL);
+			System.out.printf("Fetching %s\n", formattedURL);
 		}
-		URL urlObject = null;
 		try {
-			urlObject = new URL(formattedURL);
-		} catch (final MalformedURLException malformedURLException) {
-			System.err.println("An exception occurred while building the URL: " + malformedURLException.getMessage());
+			return HttpRequest.newBuilder(new URI(formattedURL)).timeout(Duration.ofMillis(SML.FETCH_TIMEOUT_MS)).header("Accept-Encoding", "gzip, deflate").GET().build();
+		} catch (final URISyntaxException | IllegalArgumentException uriException) {
+			System.err.println("An exception occurred while building the URL: " + uriException.getMessage());
 			return null;
 		}
-		InputStream urlInputStream = null;
-		try {
-			urlInputStream = urlObject.openStream();
-		} catch (final IOException ioException) {
-			System.err.println("An exception occurred while opening the input stream from the URL: " + ioException.getMessage());
-			return null;
+	}
+
+	/**
+	 * Sends a request and reads the response body through @param reader on the
+	 * fetcher threads, undoing the content encoding if needed. Missing pages
+	 * (404, or a redirection to a page without lyrics) are told apart from
+	 * pages refusing to answer (403, 429, 503, or a page without lyrics),
+	 * which are most likely blocks, and from errors.
+	 *
+	 * @return the future result of @param reader
+	 */
+	private static CompletableFuture<SMLFetchResult> fetch(final HttpRequest request, final BodyReader reader) {
+		if (request == null) {
+			return CompletableFuture.completedFuture(SMLFetchResult.FAILED);
 		}
-		final BufferedReader reader = new BufferedReader(new InputStreamReader(urlInputStream));
-		final StringBuilder source = new StringBuilder();
-		String currentLine = null;
-		try {
+		final CompletableFuture<HttpResponse<InputStream>> exchange = SMLIO.CLIENT.sendAsync(request, BodyHandlers.ofInputStream());
+		final CompletableFuture<SMLFetchResult> result = new CompletableFuture<>();
+		exchange.thenApplyAsync(response -> {
+			try (final InputStream body = SMLIO.decode(response)) {
+				switch (response.statusCode()) {
+				case 200:
+					final String read = reader.read(body);
+					if (read != null) {
+						return SMLFetchResult.found(read);
+					}
+					return response.uri().equals(request.uri()) ? SMLFetchResult.BLOCKED : SMLFetchResult.NOT_FOUND;
+				case 404:
+				case 410:
+					return SMLFetchResult.NOT_FOUND;
+				case 403:
+				case 429:
+				case 503:
+					System.err.printf("Got HTTP %d from %s, most likely IP-blocked\n", response.statusCode(), request.uri());
+					return SMLFetchResult.BLOCKED;
+				default:
+					System.err.printf("Got HTTP %d from %s\n", response.statusCode(), request.uri());
+					return SMLFetchResult.FAILED;
+				}
+			} catch (final IOException ioException) {
+				// Reads of a cancelled request fail once its body is closed
+				if (!result.isCancelled()) {
+					System.err.println("An exception occurred while reading from the URL's input stream: " + ioException.getMessage());
+				}
+				return SMLFetchResult.FAILED;
+			}
+		}, SMLIO.FETCHER).orTimeout(SML.FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS).exceptionally(throwable -> {
+			final Throwable cause = throwable.getCause() == null ? throwable : throwable.getCause();
+			if (cause instanceof CancellationException) {
+				return SMLFetchResult.FAILED;
+			}
+			System.err.println("An exception occurred while fetching " + request.uri() + ": " + (cause instanceof TimeoutException ? "timed out" : cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage()));
+			return SMLFetchResult.FAILED;
+		}).thenAccept(result::complete);
+		// Cancelling the result (e.g. a hedged request that lost) aborts the
+		// exchange, or closes the body if it's already being read so that the
+		// fetcher thread and the connection are freed right away
+		result.whenComplete((lyrics, throwable) -> {
+			if (result.isCancelled()) {
+				exchange.cancel(true);
+				exchange.thenAccept(response -> {
+					try {
+						response.body().close();
+					} catch (final IOException ioException) {
+						return;
+					}
+				});
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the response's body, gunzipped or inflated if the server compressed
+	 *         it
+	 */
+	private static InputStream decode(final HttpResponse<InputStream> response) throws IOException {
+		final String encoding = response.headers().firstValue("Content-Encoding").orElse(SML.EMPTY);
+		// Buffered whatever the encoding, bodies may be read a byte at a time
+		switch (encoding.toLowerCase()) {
+		case "gzip":
+			return new BufferedInputStream(new GZIPInputStream(response.body()));
+		case "deflate":
+			return new BufferedInputStream(new InflaterInputStream(response.body()));
+		default:
+			return new BufferedInputStream(response.body());
+		}
+	}
+
+	/**
+	 * Fetches the source code of the lyrics page.
+	 *
+	 * @param url  the page's URL format
+	 * @param args the URL's arguments
+	 * @return the source code, or null if an exception occurred
+	 */
+	public static final String fetchSource(final String url, final Object... args) {
+		return SMLIO.fetchSourceAsync(url, args).join();
+	}
+
+	/**
+	 * Asynchronous version of fetchSource.
+	 *
+	 * @return the future source code, completed with null if an exception
+	 *         occurred
+	 */
+	public static final CompletableFuture<String> fetchSourceAsync(final String url, final Object... args) {
+		return SMLIO.fetch(SMLIO.buildRequest(url, args), body -> {
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+			final StringBuilder source = new StringBuilder();
+			String currentLine = null;
 			while ((currentLine = reader.readLine()) != null) {
 				source.append(currentLine);
 			}
-		} catch (final IOException ioException) {
-			System.err.println("An exception occurred while reading from the URL's input stream: " + ioException.getMessage());
-			return null;
-		} finally {
-			try {
-				urlInputStream.close();
-				reader.close();
-			} catch (final IOException ioException) {
-				// Nothing to do here
+			return source.toString().strip();
+		}).thenApply(SMLFetchResult::lyrics);
+	}
+
+	/**
+	 * Fetches only the lyrics section of the lyrics page: the page is scanned as
+	 * it arrives and the connection is released as soon as the section ends, so
+	 * the rest of the page is never downloaded.
+	 *
+	 * @param url  the page's URL format
+	 * @param args the URL's arguments
+	 * @return the raw lyrics section, or null if an exception occurred or the
+	 *         section wasn't found
+	 */
+	public static final String fetchLyrics(final String url, final Object... args) {
+		return SMLIO.fetchLyricsAsync(url, args).join();
+	}
+
+	/**
+	 * Asynchronous version of fetchLyrics.
+	 *
+	 * @return the future raw lyrics section, completed with null if an exception
+	 *         occurred or the section wasn't found
+	 */
+	public static final CompletableFuture<String> fetchLyricsAsync(final String url, final Object... args) {
+		return SMLIO.fetchSectionAsync(SMLExtractor.LYRICS_START, SMLExtractor.LYRICS_END, url, args).thenApply(SMLFetchResult::lyrics);
+	}
+
+	/**
+	 * Same as fetchLyricsAsync for pages where the lyrics are delimited by other
+	 * markers. Cancelling the returned future aborts the request.
+	 *
+	 * @param start what comes right before the lyrics in the page
+	 * @param end   what comes right after the lyrics in the page
+	 * @return the future raw lyrics section, or why it couldn't be fetched
+	 */
+	public static final CompletableFuture<SMLFetchResult> fetchSectionAsync(final SMLExtractor start, final SMLExtractor end, final String url, final Object... args) {
+		return SMLIO.fetch(SMLIO.buildRequest(url, args), body -> {
+			final String lyrics = SMLExtractor.extractSection(body, start, end);
+			if (lyrics == null) {
+				System.err.println("Couldn't find the lyrics section in the page, either wrong page source or IP-blocked");
+			} else if (SML.VERBOSE) {
+				System.out.printf("\tSuccess!\n");
 			}
-		}
-		if (SML.VERBOSE) {
-			System.out.printf("\tSuccess!\n");
-		}
-		return source.toString().strip();
+			return lyrics;
+		});
 	}
 
+	/**
+	 * Turns a response body into the fetch result.
+	 */
+	@FunctionalInterface
+	private interface BodyReader {
+		String read(InputStream body) throws IOException;
+	}
+
+	/**
+	 * Reads "key<separator>value" lines into a map. Comments (#) and blank lines
+	 * are skipped, malformed lines are reported and skipped.
+	 *
+	 * @return true if the file could be read, false otherwise
+	 */
 	public static boolean readFileToMap(final File file, final Map<String, String> map, final String separator) {
 		if (SML.VERBOSE) {
 			System.out.printf("Reading aliases from %s...", file.getAbsolutePath());
@@ -77,12 +308,18 @@ public final class SMLIO {
 		try {
 			final BufferedReader reader = new BufferedReader(new FileReader(file));
 			String currentLine = null;
+			int lineNumber = 0;
 			while ((currentLine = reader.readLine()) != null) {
-				if (currentLine.startsWith("#")) {
+				lineNumber += 1;
+				if (currentLine.startsWith("#") || currentLine.isBlank()) {
+					continue;
+				}
+				final int separatorIndex = currentLine.indexOf(separator);
+				if (separatorIndex < 1) {
+					System.err.printf("Skipping malformed line %d in %s: %s\n", lineNumber, file.getName(), currentLine);
 					continue;
 				}
-				final String key = currentLine.split(":")[0], value = currentLine.split(separator)[1];
-				map.put(key, value);
+				map.put(currentLine.substring(0, separatorIndex), currentLine.substring(separatorIndex + separator.length()));
 			}
 			reader.close();
 		} catch (final IOException exception) {
@@ -95,6 +332,29 @@ public final class SMLIO {
 		return true;
 	}
 
+	/**
+	 * Reads the lines of a file, skipping blank lines and # comments.
+	 *
+	 * @param file the file
+	 * @return the lines, or null if an exception occurred
+	 */
+	public static List<String> readLines(final File file) {
+		final List<String> lines = new ArrayList<>();
+		try (final BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String currentLine = null;
+			while ((currentLine = reader.readLine()) != null) {
+				if (currentLine.isBlank() || currentLine.startsWith("#")) {
+					continue;
+				}
+				lines.add(currentLine.strip());
+			}
+		} catch (final IOException exception) {
+			System.err.println("An exception occurred while reading " + file.getPath() + ": " + exception.getMessage());
+			return null;
+		}
+		return lines;
+	}
+
 	/**
 	 * Reads the entire content of a file into a single string.
 	 *
@@ -107,13 +367,20 @@ public final class SMLIO {
 		}
 		if (file.exists()) {
 			final StringBuilder lyrics = new StringBuilder();
-			try {
-				final BufferedReader reader = new BufferedReader(new FileReader(file));
+			try (final FileInputStream input = new FileInputStream(file)) {
+				final byte[] data = input.readAllBytes();
+				if (SMLCompressor.isCompressed(data, data.length)) {
+					final String decompressed = SMLIO.decompress(file, data, data.length);
+					if (SML.VERBOSE) {
+						System.out.printf(decompressed == null ? "\tFailed!\n" : "\tSuccess!\n");
+					}
+					return decompressed == null ? null : decompressed.strip();
+				}
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), Charset.defaultCharset()));
 				String currentLine = null;
 				while ((currentLine = reader.readLine()) != null) {
 					lyrics.append(currentLine + "\n");
 				}
-				reader.close();
 				if (SML.VERBOSE) {
 					System.out.printf("\tSuccess!\n");
 				}
@@ -131,7 +398,79 @@ public final class SMLIO {
 	}
 
 	/**
-	 * Stores a string in a local file on the HDD.
+	 * @return true if @param file is a compressed cache entry
+	 */
+	public static boolean isCompressed(final File file) {
+		try (final FileInputStream input = new FileInputStream(file)) {
+			final byte[] header = input.readNBytes(SMLCompressor.HEADER_BYTES);
+			return SMLCompressor.isCompressed(header, header.length);
+		} catch (final IOException ioException) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the entire content of a file to an output stream without decoding it
+	 * into a String: the file is memory-mapped and its bytes are handed as is to
+	 * the stream. Compressed entries are decompressed first.
+	 *
+	 * @param file   the file
+	 * @param output where to write the contents of the file
+	 * @return true if the file exists and was written, false otherwise
+	 */
+	public static boolean transferWhole(final File file, final OutputStream output) {
+		if (SML.VERBOSE) {
+			System.out.printf("Transferring %s...", file.getAbsolutePath());
+		}
+		if (!file.isFile()) {
+			if (SML.VERBOSE) {
+				System.out.printf("\tFile doesn't exist!\n");
+			}
+			return false;
+		}
+		try (final FileInputStream input = new FileInputStream(file)) {
+			final byte[] header = input.readNBytes(SMLCompressor.HEADER_BYTES);
+			if (SMLCompressor.isCompressed(header, header.length)) {
+				final String lyrics = SMLIO.readWhole(file);
+				if (lyrics == null) {
+					return false;
+				}
+				output.write(lyrics.getBytes(Charset.defaultCharset()));
+				output.flush();
+			} else {
+				SMLIO.transferRegion(input.getChannel(), 0, file.length(), output);
+			}
+		} catch (final IOException transferException) {
+			System.err.println("An exception occurred while transferring local copy: " + transferException.getMessage());
+			return false;
+		}
+		if (SML.VERBOSE) {
+			System.out.printf("\tSuccess!\n");
+		}
+		return true;
+	}
+
+	/**
+	 * Memory-maps a region of a file and writes it to an output stream.
+	 *
+	 * @param channel the file's channel
+	 * @param offset  where the region starts
+	 * @param length  the region's length in bytes
+	 * @param output  where to write the region
+	 * @throws IOException if mapping or writing fails
+	 */
+	public static void transferRegion(final FileChannel channel, final long offset, final long length, final OutputStream output) throws IOException {
+		final MappedByteBuffer region = channel.map(MapMode.READ_ONLY, offset, length);
+		final WritableByteChannel target = output == System.out ? SMLIO.STDOUT : Channels.newChannel(output);
+		while (region.hasRemaining()) {
+			target.write(region);
+		}
+		output.flush();
+	}
+
+	/**
+	 * Stores a string in a local file on the HDD, atomically (see
+	 * writeAtomically).
 	 *
 	 * @param file   the target file
 	 * @param string the content to save
@@ -148,11 +487,74 @@ public final class SMLIO {
 				}
 				return false;
 			}
-			file.getParentFile().mkdirs();
-			final BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-			writer.write(string);
-			writer.flush();
-			writer.close();
+			SMLIO.writeAtomically(file, string.getBytes(Charset.defaultCharset()));
+			if (SML.VERBOSE) {
+				System.out.printf("\tSuccess!\n");
+			}
+			return true;
+		} catch (final IOException exception) {
+			System.err.println("An exception occurred while writing to a file: " + exception.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Writes a file through a temporary file in the same directory which is then
+	 * renamed over it, so that readers see either the previous file or the
+	 * whole new one, never a half-written one.
+	 *
+	 * @param file the target file
+	 * @param data its new content
+	 * @throws IOException if writing or renaming fails
+	 */
+	public static void writeAtomically(final File file, final byte[] data) throws IOException {
+		final File directory = file.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		final File temporary = File.createTempFile(file.getName() + ".", ".tmp", directory);
+		try {
+			try (final FileOutputStream output = new FileOutputStream(temporary)) {
+				output.write(data);
+			}
+			try {
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (final InvalidPathException invalidPathException) {
+				// Name not representable as a Path in this locale, rename(2) is atomic
+				// as well
+				if (!temporary.renameTo(file)) {
+					throw new IOException("Couldn't rename " + temporary.getName() + " to " + file.getName());
+				}
+			}
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Stores lyrics in a cache file, compressed if compression is enabled.
+	 *
+	 * @param file   the target file
+	 * @param lyrics the lyrics to save
+	 * @return true if success, false otherwise
+	 */
+	public static boolean saveCacheEntry(final File file, final String lyrics, final boolean override) {
+		final SMLCompressor compressor;
+		synchronized (SMLIO.class) {
+			compressor = SMLIO.compressing ? SMLIO.compressor : null;
+		}
+		if (compressor == null) {
+			return SMLIO.saveToFile(file, lyrics, override);
+		}
+		if (SML.VERBOSE) {
+			System.out.printf("Saving %s (compressed)...", file.getAbsolutePath());
+		}
+		if (file.exists() && !override) {
+			if (SML.VERBOSE) {
+				System.out.println("\tAlready exists!");
+			}
+			return false;
+		}
+		try {
+			SMLIO.writeAtomically(file, compressor.compress(lyrics));
 			if (SML.VERBOSE) {
 				System.out.printf("\tSuccess!\n");
 			}
@@ -0,0 +1,147 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time-synchronized lyrics parsed from the LRC format: "[mm:ss.xx]line", a
+ * line possibly having several timestamps, and an optional "[offset:ms]" tag
+ * (positive values show the lines earlier). Other tags are ignored.
+ *
+ * @author Skander J.
+ */
+public final class SMLLrc {
+	// Start of each line in milliseconds, sorted
+	private final long[] times;
+	private final String[] lines;
+
+	private SMLLrc(final long[] times, final String[] lines) {
+		this.times = times;
+		this.lines = lines;
+	}
+
+	/**
+	 * @param source the LRC file's content
+	 * @return the parsed lyrics, or null if there's no timed line in there
+	 */
+	public static SMLLrc parse(final String source) {
+		final List<long[]> timed = new ArrayList<>();
+		final List<String> texts = new ArrayList<>();
+		long offset = 0;
+		for (final String rawLine : source.split("\r?\n")) {
+			final String line = rawLine.strip();
+			final int textStart = SMLLrc.skipTimestamps(line, timed, texts.size());
+			if (textStart > 0) {
+				texts.add(line.substring(textStart).strip());
+			} else if (line.startsWith("[offset:") && line.endsWith("]")) {
+				try {
+					offset = Long.parseLong(line.substring(8, line.length() - 1).strip());
+				} catch (final NumberFormatException numberFormatException) {
+					System.err.println("Ignoring malformed LRC offset: " + line);
+				}
+			}
+		}
+		if (timed.isEmpty()) {
+			return null;
+		}
+		// Stable, so that lines sharing a timestamp keep their order
+		timed.sort((first, second) -> Long.compare(first[0], second[0]));
+		final long[] times = new long[timed.size()];
+		final String[] lines = new String[timed.size()];
+		for (int index = 0; index < times.length; index += 1) {
+			times[index] = Math.max(0, timed.get(index)[0] - offset);
+			lines[index] = texts.get((int) timed.get(index)[1]);
+		}
+		return new SMLLrc(times, lines);
+	}
+
+	/**
+	 * Reads the timestamps at the start of @param line, adding a { time, text
+	 * index } pair to @param timed for each.
+	 *
+	 * @return where the line's text starts, or 0 if it isn't timed
+	 */
+	private static int skipTimestamps(final String line, final List<long[]> timed, final int textIndex) {
+		int index = 0;
+		while (line.startsWith("[", index)) {
+			final int end = line.indexOf(']', index);
+			final long time = end == -1 ? -1 : SMLLrc.parseTimestamp(line.substring(index + 1, end));
+			if (time == -1) {
+				break;
+			}
+			timed.add(new long[] { time, textIndex });
+			index = end + 1;
+		}
+		return index;
+	}
+
+	/**
+	 * @param timestamp "mm:ss", "mm:ss.x[x[x]]" or "mm:ss:xx"
+	 * @return the timestamp in milliseconds, or -1 if it isn't one
+	 */
+	private static long parseTimestamp(final String timestamp) {
+		final int colon = timestamp.indexOf(':');
+		if ((colon < 1) || !Character.isDigit(timestamp.charAt(timestamp.length() - 1))) {
+			return -1;
+		}
+		int fractionStart = timestamp.indexOf('.', colon);
+		if (fractionStart == -1) {
+			fractionStart = timestamp.indexOf(':', colon + 1);
+		}
+		try {
+			final long minutes = Long.parseLong(timestamp.substring(0, colon));
+			final long seconds = Long.parseLong(timestamp.substring(colon + 1, fractionStart == -1 ? timestamp.length() : fractionStart));
+			long millis = 0;
+			if (fractionStart != -1) {
+				final String fraction = timestamp.substring(fractionStart + 1);
+				if ((fraction.length() == 0) || (fraction.length() > 3)) {
+					return -1;
+				}
+				millis = Long.parseLong(fraction) * (fraction.length() == 1 ? 100 : fraction.length() == 2 ? 10 : 1);
+			}
+			return (((minutes * 60) + seconds) * 1000) + millis;
+		} catch (final NumberFormatException numberFormatException) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the index of the line being sung at @param position (in
+	 *         milliseconds), -1 if it's before the first one
+	 */
+	public int indexAt(final long position) {
+		final int index = Arrays.binarySearch(this.times, position);
+		if (index >= 0) {
+			// Last of the lines starting at this exact time
+			int last = index;
+			while (((last + 1) < this.times.length) && (this.times[last + 1] == position)) {
+				last += 1;
+			}
+			return last;
+		}
+		return -index - 2;
+	}
+
+	/**
+	 * @return when the line at @param index starts, in milliseconds
+	 */
+	public long timeAt(final int index) {
+		return this.times[index];
+	}
+
+	public String lineAt(final int index) {
+		return this.lines[index];
+	}
+
+	/**
+	 * @return a copy of all the lines, in order
+	 */
+	public String[] lines() {
+		return this.lines.clone();
+	}
+
+	public int size() {
+		return this.lines.length;
+	}
+}
@@ -0,0 +1,15 @@
+package com.skanderj.spotmylyrics;
+
+/**
+ * Where the time-synchronized lyrics used by the synced mode come from. The
+ * default one reads .lrc files next to the cache entries.
+ *
+ * @author Skander J.
+ */
+@FunctionalInterface
+public interface SMLLrcProvider {
+	/**
+	 * @return the synced lyrics to the song, or null if there are none
+	 */
+	SMLLrc find(String artist, String track);
+}
@@ -0,0 +1,262 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import com.skanderj.ts4j.TimeHistogram;
+
+/**
+ * Fetches lyrics from several providers with hedged requests: the best
+ * provider is asked first, and if it hasn't answered within its usual (95th
+ * percentile) latency, or if it couldn't find the lyrics, the next one is asked
+ * too. The first lyrics found win and the requests still running are
+ * cancelled. Providers are ranked by how often they find lyrics and how fast,
+ * as measured so far; those asked only a few times yet are asked first, so
+ * that they get measured too. Providers failing or blocking us in a row are
+ * left alone for a while, see SMLCircuitBreaker.
+ *
+ * @author Skander J.
+ */
+public final class SMLLyricsEngine {
+	private final List<Source> sources;
+
+	public SMLLyricsEngine(final List<? extends SMLLyricsProvider> providers) {
+		this.sources = new ArrayList<>();
+		for (final SMLLyricsProvider provider : providers) {
+			this.sources.add(new Source(provider, this.sources.size()));
+		}
+	}
+
+	/**
+	 * @return the sources, best first (configured order when they're as good)
+	 */
+	private List<Source> ranking() {
+		final List<Source> ranking = new ArrayList<>(this.sources);
+		ranking.sort(Comparator.comparingDouble(Source::score).thenComparingInt(source -> source.order));
+		return ranking;
+	}
+
+	/**
+	 * @return the host the next request for a song will go to first, for rate
+	 *         limiting
+	 */
+	public String host(final String compliantArtist, final String compliantTitle) {
+		return this.ranking().get(0).provider.host(compliantArtist, compliantTitle);
+	}
+
+	/**
+	 * Fetches the lyrics to a song from the providers.
+	 *
+	 * @return the future raw lyrics, or why no provider found them: NOT_FOUND
+	 *         only if every provider answered they don't have them
+	 */
+	public CompletableFuture<SMLFetchResult> fetch(final String compliantArtist, final String compliantTitle) {
+		final Hedge hedge = new Hedge(compliantArtist, compliantTitle, this.ranking());
+		hedge.launchNext();
+		return hedge.result;
+	}
+
+	/**
+	 * @return a summary of each provider's counters, one per line
+	 */
+	public String stats() {
+		final StringBuilder stats = new StringBuilder();
+		for (final Source source : this.ranking()) {
+			stats.append(stats.length() == 0 ? SML.EMPTY : "\n").append(source.stats());
+		}
+		return stats.toString();
+	}
+
+	/**
+	 * A provider and what's been measured of it.
+	 */
+	private static final class Source {
+		private final SMLLyricsProvider provider;
+		// Position in the configuration
+		private final int order;
+		// Time taken to find lyrics
+		private final TimeHistogram latencies;
+		private final SMLCircuitBreaker breaker;
+		private long found, missed, wins, hedges;
+
+		private Source(final SMLLyricsProvider provider, final int order) {
+			this.provider = provider;
+			this.order = order;
+			this.latencies = new TimeHistogram();
+			this.breaker = new SMLCircuitBreaker(SML.BREAKER_FAILURES, SML.BREAKER_BASE_MS, SML.BREAKER_MAX_MS);
+			this.found = 0;
+			this.missed = 0;
+			this.wins = 0;
+			this.hedges = 0;
+		}
+
+		/**
+		 * @return how long this provider is waited for before the next one is
+		 *         asked too
+		 */
+		private synchronized long hedgeDelayMs() {
+			if (this.found < SML.HEDGE_MIN_SAMPLES) {
+				return SML.HEDGE_DELAY_MS;
+			}
+			return Math.max(SML.HEDGE_MIN_DELAY_MS, TimeUnit.NANOSECONDS.toMillis(this.latencies.getValueAtPercentile(95)));
+		}
+
+		/**
+		 * @return the expected time to get lyrics out of this provider, the lower
+		 *         the better: its median latency over its (smoothed) success rate,
+		 *         0 while it hasn't been asked enough to tell
+		 */
+		private synchronized double score() {
+			final long fetches = this.found + this.missed;
+			if (fetches < SML.HEDGE_MIN_SAMPLES) {
+				return 0;
+			}
+			final double latency = this.found == 0 ? TimeUnit.MILLISECONDS.toNanos(SML.HEDGE_DELAY_MS) : this.latencies.getValueAtPercentile(50);
+			return (latency * (fetches + 2)) / (this.found + 1);
+		}
+
+		private synchronized void record(final SMLFetchResult result, final long latency) {
+			if (result.outcome() == SMLFetchResult.Outcome.FOUND) {
+				this.found += 1;
+				this.latencies.record(latency);
+			} else {
+				this.missed += 1;
+			}
+			if (result.answered()) {
+				this.breaker.success();
+			} else {
+				this.breaker.failure();
+			}
+		}
+
+		private synchronized void won() {
+			this.wins += 1;
+		}
+
+		private synchronized void hedged() {
+			this.hedges += 1;
+		}
+
+		private synchronized String stats() {
+			final long fetches = this.found + this.missed;
+			return String.format("Provider %s: %d fetches, %.1f%% found, %d won, %d asked as backup, latency p50 %.1fms p95 %.1fms, circuit %s", this.provider.name(), fetches, fetches == 0 ? 0.0 : (100.0 * this.found) / fetches, this.wins, this.hedges, this.latencies.getValueAtPercentile(50) / 1e6, this.latencies.getValueAtPercentile(95) / 1e6, this.breaker.stats());
+		}
+	}
+
+	/**
+	 * One song being fetched from the sources, in order.
+	 */
+	private static final class Hedge {
+		private final String compliantArtist, compliantTitle;
+		private final List<Source> order;
+		private final CompletableFuture<SMLFetchResult> result;
+		private final List<CompletableFuture<SMLFetchResult>> attempts;
+		// Sources taken from the order (asked or skipped), actually asked, done,
+		// done without having the lyrics and done blocking us
+		private int launched, asked, finished, notFound, blocked;
+
+		private Hedge(final String compliantArtist, final String compliantTitle, final List<Source> order) {
+			this.compliantArtist = compliantArtist;
+			this.compliantTitle = compliantTitle;
+			this.order = order;
+			this.result = new CompletableFuture<>();
+			this.attempts = new ArrayList<>();
+			this.launched = 0;
+			this.asked = 0;
+			this.finished = 0;
+			this.notFound = 0;
+			this.blocked = 0;
+		}
+
+		/**
+		 * Asks the next source whose circuit is closed, and schedules asking the
+		 * one after it if this one is slow.
+		 */
+		private synchronized void launchNext() {
+			while (!this.result.isDone() && (this.launched < this.order.size())) {
+				final Source source = this.order.get(this.launched);
+				this.launched += 1;
+				if (!source.breaker.allow()) {
+					continue;
+				}
+				if (this.asked > 0) {
+					source.hedged();
+				}
+				this.asked += 1;
+				final int launched = this.launched;
+				if (launched < this.order.size()) {
+					CompletableFuture.delayedExecutor(source.hedgeDelayMs(), TimeUnit.MILLISECONDS).execute(() -> this.hedge(launched));
+				}
+				final long start = System.nanoTime();
+				final CompletableFuture<SMLFetchResult> attempt = source.provider.fetch(this.compliantArtist, this.compliantTitle);
+				this.attempts.add(attempt);
+				attempt.whenComplete((result, throwable) -> this.onResult(source, result, throwable, System.nanoTime() - start));
+				return;
+			}
+			this.completeIfDone();
+		}
+
+		/**
+		 * Asks the next source unless one was asked since the timer was set,
+		 * @param launched being how many had been taken then.
+		 */
+		private synchronized void hedge(final int launched) {
+			if (this.launched == launched) {
+				this.launchNext();
+			}
+		}
+
+		private synchronized void onResult(final Source source, final SMLFetchResult result, final Throwable throwable, final long latency) {
+			if ((throwable instanceof CancellationException) || ((throwable instanceof CompletionException) && (throwable.getCause() instanceof CancellationException))) {
+				// Lost to another source
+				return;
+			}
+			final SMLFetchResult fetched = result == null ? SMLFetchResult.FAILED : result;
+			if ((fetched.outcome() != SMLFetchResult.Outcome.FOUND) && this.result.isDone()) {
+				// Most likely aborted as it lost, can't tell how it went
+				return;
+			}
+			source.record(fetched, latency);
+			this.finished += 1;
+			if (fetched.outcome() == SMLFetchResult.Outcome.FOUND) {
+				if (this.result.complete(fetched)) {
+					source.won();
+					for (final CompletableFuture<SMLFetchResult> attempt : this.attempts) {
+						attempt.cancel(true);
+					}
+				}
+				return;
+			}
+			if (fetched.outcome() == SMLFetchResult.Outcome.NOT_FOUND) {
+				this.notFound += 1;
+			} else if (fetched.outcome() == SMLFetchResult.Outcome.BLOCKED) {
+				this.blocked += 1;
+			}
+			// No need to wait, this one won't find them
+			this.launchNext();
+		}
+
+		/**
+		 * Completes the result once every source was taken and every source asked
+		 * is done.
+		 */
+		private void completeIfDone() {
+			if ((this.launched < this.order.size()) || (this.finished < this.asked)) {
+				return;
+			}
+			if (this.notFound == this.order.size()) {
+				this.result.complete(SMLFetchResult.NOT_FOUND);
+			} else if ((this.blocked > 0) || (this.asked < this.order.size())) {
+				// Blocked, or some circuits are open
+				this.result.complete(SMLFetchResult.BLOCKED);
+			} else {
+				this.result.complete(SMLFetchResult.FAILED);
+			}
+		}
+	}
+}
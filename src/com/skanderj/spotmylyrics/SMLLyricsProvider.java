@@ -0,0 +1,30 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A website lyrics can be fetched from. The engine asks several of them at
+ * once when the first ones are slow, see SMLLyricsEngine.
+ *
+ * @author Skander J.
+ */
+public interface SMLLyricsProvider {
+	/**
+	 * @return the provider's name, for the stats
+	 */
+	String name();
+
+	/**
+	 * @return the host requests for the song are sent to, for rate limiting
+	 */
+	String host(String compliantArtist, String compliantTitle);
+
+	/**
+	 * Fetches the lyrics to a song. Cancelling the returned future aborts the
+	 * request.
+	 *
+	 * @return the future raw (still HTML-formatted) lyrics, or why they couldn't
+	 *         be fetched
+	 */
+	CompletableFuture<SMLFetchResult> fetch(String compliantArtist, String compliantTitle);
+}
@@ -0,0 +1,239 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hot in-heap tier in front of a disk cache. Lyrics are kept encoded (so they
+ * can be written to stdout as is) in an access-ordered map, and the least
+ * recently used songs are evicted once the tier holds more than its byte
+ * budget. Replaying a song that's still in the tier never touches the disk,
+ * and a song written out from the disk goes into the tier as the bytes that
+ * were written, without being decoded. Keys which weren't on disk either are
+ * remembered too (until they're saved), so looking a song up under a name it
+ * isn't stored under doesn't go to the disk every time.
+ *
+ * @author Skander J.
+ */
+public final class SMLMemoryCache implements SMLCache {
+	// How many keys known not to be on disk are remembered
+	public static final int ABSENT_KEYS = 1024;
+
+	private final SMLCache disk;
+	private final long capacity;
+	// Cache key -> encoded lyrics, least recently used first
+	private final LinkedHashMap<String, byte[]> entries;
+	// Cache keys the disk had nothing under, least recently used first
+	private final Set<String> absent;
+	private long bytes;
+	private long hits, misses, evictions;
+
+	public SMLMemoryCache(final SMLCache disk, final long capacity) {
+		this.disk = disk;
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.absent = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+				return this.size() > SMLMemoryCache.ABSENT_KEYS;
+			}
+		});
+		this.bytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Adds lyrics to the tier, then evicts the least recently used songs until
+	 * it fits its budget again. Songs bigger than the whole budget aren't kept.
+	 */
+	private void put(final String key, final byte[] lyrics) {
+		if (lyrics.length > this.capacity) {
+			return;
+		}
+		final byte[] previous = this.entries.put(key, lyrics);
+		this.bytes += lyrics.length - (previous == null ? 0 : previous.length);
+		final Iterator<Map.Entry<String, byte[]>> iterator = this.entries.entrySet().iterator();
+		while ((this.bytes > this.capacity) && iterator.hasNext()) {
+			final Map.Entry<String, byte[]> eldest = iterator.next();
+			this.bytes -= eldest.getValue().length;
+			this.evictions += 1;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Looks a song up in the tier, then on disk (keeping it in the tier if found
+	 * there).
+	 *
+	 * @return the encoded lyrics, or null if they're not cached at all
+	 */
+	private byte[] lookup(final String artist, final String track) {
+		final String key = SML.getInstance().getCacheKey(artist, track);
+		byte[] lyrics = this.entries.get(key);
+		if (lyrics != null) {
+			this.hits += 1;
+			return lyrics;
+		}
+		this.misses += 1;
+		if (this.absent.contains(key)) {
+			return null;
+		}
+		final String diskLyrics = this.disk.read(artist, track);
+		if (diskLyrics == null) {
+			this.absent.add(key);
+			return null;
+		}
+		lyrics = diskLyrics.getBytes(Charset.defaultCharset());
+		this.put(key, lyrics);
+		return lyrics;
+	}
+
+	@Override
+	public synchronized String read(final String artist, final String track) {
+		final byte[] lyrics = this.lookup(artist, track);
+		return lyrics == null ? null : new String(lyrics, Charset.defaultCharset());
+	}
+
+	@Override
+	public synchronized boolean contains(final String artist, final String track) {
+		return this.entries.containsKey(SML.getInstance().getCacheKey(artist, track)) || this.disk.contains(artist, track);
+	}
+
+	@Override
+	public synchronized boolean transfer(final String artist, final String track, final OutputStream output) {
+		final String key = SML.getInstance().getCacheKey(artist, track);
+		final byte[] lyrics = this.entries.get(key);
+		if (lyrics == null) {
+			this.misses += 1;
+			if (this.absent.contains(key)) {
+				return false;
+			}
+			// Straight from the disk to the output, keeping what goes through
+			final Capture capture = new Capture(output, this.capacity);
+			if (!this.disk.transfer(artist, track, capture)) {
+				this.absent.add(key);
+				return false;
+			}
+			if (capture.copy != null) {
+				this.put(key, capture.copy.toByteArray());
+			}
+			return true;
+		}
+		this.hits += 1;
+		try {
+			output.write(lyrics);
+			output.flush();
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while writing cached lyrics: " + ioException.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized boolean save(final String artist, final String track, final String lyrics, final boolean override) {
+		// The song was just fetched, it's likely to be read again soon
+		final String key = SML.getInstance().getCacheKey(artist, track);
+		this.absent.remove(key);
+		this.put(key, lyrics.getBytes(Charset.defaultCharset()));
+		return this.disk.save(artist, track, lyrics, override);
+	}
+
+	@Override
+	public List<String> keys() {
+		return this.disk.keys();
+	}
+
+	@Override
+	public int items() {
+		return this.disk.items();
+	}
+
+	@Override
+	public long size() {
+		return this.disk.size();
+	}
+
+	@Override
+	public synchronized boolean clear() {
+		this.entries.clear();
+		this.absent.clear();
+		this.bytes = 0;
+		return this.disk.clear();
+	}
+
+	/**
+	 * @return the cache behind the tier, to read songs without going through
+	 *         (and churning) the tier
+	 */
+	public SMLCache backend() {
+		return this.disk;
+	}
+
+	/**
+	 * @return a one-line summary of the tier's usage and counters
+	 */
+	public synchronized String stats() {
+		final long lookups = this.hits + this.misses;
+		return String.format("Memory cache: %d songs, %s / %s, %d hits, %d misses (%.1f%% hit rate), %d evictions", this.entries.size(), SMLIO.humanReadableByteCountSI(this.bytes), SMLIO.humanReadableByteCountSI(this.capacity), this.hits, this.misses, lookups == 0 ? 0.0 : (100.0 * this.hits) / lookups, this.evictions);
+	}
+
+	/**
+	 * Writes through to an output stream and keeps a copy of what was written,
+	 * unless it outgrows the tier's budget (it wouldn't be kept anyway).
+	 */
+	private static final class Capture extends OutputStream {
+		private final OutputStream output;
+		private final long capacity;
+		private ByteArrayOutputStream copy;
+
+		private Capture(final OutputStream output, final long capacity) {
+			this.output = output;
+			this.capacity = capacity;
+			this.copy = new ByteArrayOutputStream(4096);
+		}
+
+		/**
+		 * @return true if @param length more bytes still fit in the copy
+		 */
+		private boolean fits(final int length) {
+			if ((this.copy != null) && ((this.copy.size() + length) > this.capacity)) {
+				this.copy = null;
+			}
+			return this.copy != null;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			this.output.write(b);
+			if (this.fits(1)) {
+				this.copy.write(b);
+			}
+		}
+
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			this.output.write(bytes, offset, length);
+			if (this.fits(length)) {
+				this.copy.write(bytes, offset, length);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.output.flush();
+		}
+	}
+}
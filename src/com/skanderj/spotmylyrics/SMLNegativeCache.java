@@ -0,0 +1,117 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the songs no provider has lyrics for, so that replaying them
+ * doesn't send the same requests again until their entry expires (the lyrics
+ * may be added in the meantime). Kept in a file next to the cache, one "key
+ * <tab> expiry" line per song.
+ *
+ * @author Skander J.
+ */
+public final class SMLNegativeCache {
+	private final File file;
+	private final long ttlMs;
+	private final LongSupplier clock;
+	// Cache key -> when the entry expires (epoch milliseconds)
+	private final Map<String, Long> expiries;
+
+	public SMLNegativeCache(final File file, final long ttlMs) {
+		this(file, ttlMs, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param clock the time in epoch milliseconds
+	 */
+	SMLNegativeCache(final File file, final long ttlMs, final LongSupplier clock) {
+		this.file = file;
+		this.ttlMs = ttlMs;
+		this.clock = clock;
+		this.expiries = new HashMap<>();
+	}
+
+	/**
+	 * Loads the entries saved in the file, if any, dropping the expired ones.
+	 */
+	public synchronized void load() {
+		if (!this.file.isFile()) {
+			return;
+		}
+		final List<String> lines = SMLIO.readLines(this.file);
+		if (lines == null) {
+			return;
+		}
+		final long now = this.clock.getAsLong();
+		for (final String line : lines) {
+			final int tab = line.lastIndexOf('\t');
+			try {
+				final long expiry = Long.parseLong(line.substring(tab + 1));
+				if ((tab > 0) && (expiry > now)) {
+					this.expiries.put(line.substring(0, tab), expiry);
+				}
+			} catch (final NumberFormatException numberFormatException) {
+				System.err.println("Skipping malformed line in " + this.file.getName() + ": " + line);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the song with the cache key @param key is known to have
+	 *         no lyrics
+	 */
+	public synchronized boolean contains(final String key) {
+		final Long expiry = this.expiries.get(key);
+		if (expiry == null) {
+			return false;
+		}
+		if (expiry <= this.clock.getAsLong()) {
+			this.expiries.remove(key);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers that the song with the cache key @param key has no lyrics.
+	 */
+	public synchronized void add(final String key) {
+		this.expiries.put(key, this.clock.getAsLong() + this.ttlMs);
+		this.save();
+	}
+
+	/**
+	 * Forgets every song.
+	 */
+	public synchronized void clear() {
+		this.expiries.clear();
+		SMLIO.deleteFile(this.file);
+	}
+
+	public synchronized int size() {
+		return this.expiries.size();
+	}
+
+	/**
+	 * Writes the entries that haven't expired to the file.
+	 */
+	private void save() {
+		final long now = this.clock.getAsLong();
+		final StringBuilder entries = new StringBuilder();
+		final Iterator<Map.Entry<String, Long>> iterator = this.expiries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<String, Long> entry = iterator.next();
+			if (entry.getValue() <= now) {
+				iterator.remove();
+			} else {
+				entries.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+			}
+		}
+		SMLIO.saveToFile(this.file, entries.toString(), true);
+	}
+}
@@ -0,0 +1,198 @@
+package com.skanderj.spotmylyrics;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass replacements for the replaceAll chains that used to format
+ * artists, titles, cache keys and page sources. Each method walks its input
+ * once and decides what to do with every ASCII character through a
+ * precomputed table, so no regex is compiled and no intermediate String is
+ * built along the way.
+ *
+ * @author Skander J.
+ */
+public final class SMLNormalizer {
+	// Marks a character as removed in the tables below
+	private static final char DROP = 0;
+
+	// [a-zA-Z0-9] lowercased, everything else dropped (URL parts)
+	private static final char[] URL_TABLE = new char[128];
+
+	// Spaces to underscores, [.?('] dropped, the rest kept (cache keys)
+	private static final char[] KEY_TABLE = new char[128];
+
+	static {
+		for (char character = 0; character < 128; character += 1) {
+			if (((character >= 'a') && (character <= 'z')) || ((character >= '0') && (character <= '9'))) {
+				SMLNormalizer.URL_TABLE[character] = character;
+			} else if ((character >= 'A') && (character <= 'Z')) {
+				SMLNormalizer.URL_TABLE[character] = (char) (character + ('a' - 'A'));
+			} else {
+				SMLNormalizer.URL_TABLE[character] = SMLNormalizer.DROP;
+			}
+			SMLNormalizer.KEY_TABLE[character] = character;
+		}
+		SMLNormalizer.KEY_TABLE[' '] = '_';
+		SMLNormalizer.KEY_TABLE['.'] = SMLNormalizer.DROP;
+		SMLNormalizer.KEY_TABLE['?'] = SMLNormalizer.DROP;
+		SMLNormalizer.KEY_TABLE['('] = SMLNormalizer.DROP;
+		SMLNormalizer.KEY_TABLE['\''] = SMLNormalizer.DROP;
+	}
+
+	private SMLNormalizer() {
+		return;
+	}
+
+	/**
+	 * @return true if the first @param end characters of @param string are ASCII
+	 */
+	private static boolean isASCII(final String string, final int end) {
+		for (int index = 0; index < end; index += 1) {
+			if (string.charAt(index) >= 128) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Folds accents (é -> e, ç -> c...), lowercases and drops anything that
+	 * isn't a letter or a digit. Only non-ASCII input pays for the NFD
+	 * decomposition; combining marks are dropped like any non-ASCII character.
+	 *
+	 * @param string the string to normalize
+	 * @param end    where to stop in @param string
+	 * @return the normalized string
+	 */
+	public static String urlPart(final String string, final int end) {
+		CharSequence decomposed = string;
+		int length = end;
+		if (!SMLNormalizer.isASCII(string, end)) {
+			decomposed = Normalizer.normalize(string.subSequence(0, end), Normalizer.Form.NFD);
+			length = decomposed.length();
+		}
+		final StringBuilder builder = new StringBuilder(length);
+		for (int index = 0; index < length; index += 1) {
+			final char character = decomposed.charAt(index);
+			if (character < 128) {
+				final char mapped = SMLNormalizer.URL_TABLE[character];
+				if (mapped != SMLNormalizer.DROP) {
+					builder.append(mapped);
+				}
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Splits text into words for searching: accents are folded, everything is
+	 * lowercased and anything that isn't a letter or a digit separates words.
+	 *
+	 * @param text the text to split
+	 * @return the words, in order
+	 */
+	public static List<String> words(final String text) {
+		final String decomposed = SMLNormalizer.isASCII(text, text.length()) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+		final List<String> words = new ArrayList<>();
+		final StringBuilder word = new StringBuilder();
+		for (int index = 0; index <= decomposed.length(); index += 1) {
+			final char character = index < decomposed.length() ? decomposed.charAt(index) : ' ';
+			if (character >= 128) {
+				// Combining marks
+				continue;
+			}
+			final char mapped = SMLNormalizer.URL_TABLE[character];
+			if (mapped != SMLNormalizer.DROP) {
+				word.append(mapped);
+			} else if (word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Lowercases, turns spaces into underscores and drops [.?(']; same as the
+	 * original getLocalCopy expressions, so existing cache entries keep their
+	 * names.
+	 *
+	 * @param builder where to append the normalized string
+	 * @param string  the string to normalize
+	 */
+	public static void appendKeyPart(final StringBuilder builder, final String string) {
+		final String lowercase = string.toLowerCase();
+		for (int index = 0; index < lowercase.length(); index += 1) {
+			final char character = lowercase.charAt(index);
+			if (character >= 128) {
+				builder.append(character);
+			} else if (SMLNormalizer.KEY_TABLE[character] != SMLNormalizer.DROP) {
+				builder.append(SMLNormalizer.KEY_TABLE[character]);
+			}
+		}
+	}
+
+	/**
+	 * Drops every (, ' and ) from a string.
+	 *
+	 * @param string the string to clean
+	 * @return the cleaned string
+	 */
+	public static String stripParentheses(final String string) {
+		final StringBuilder builder = new StringBuilder(string.length());
+		for (int index = 0; index < string.length(); index += 1) {
+			final char character = string.charAt(index);
+			if ((character != '(') && (character != '\'') && (character != ')')) {
+				builder.append(character);
+			}
+		}
+		return builder.length() == string.length() ? string : builder.toString();
+	}
+
+	/**
+	 * Replaces <br> with new lines, &quot; with ', &amp; with & and drops <br/>,
+	 * <i> and </i>, all in one pass over the page source.
+	 *
+	 * @param source the HTML source code
+	 * @return the formatted source
+	 */
+	public static String source(final String source) {
+		final StringBuilder builder = new StringBuilder(source.length());
+		final int length = source.length();
+		int index = 0;
+		while (index < length) {
+			final char character = source.charAt(index);
+			if (character == '<') {
+				if (source.startsWith("<br>", index)) {
+					builder.append('\n');
+					index += 4;
+					continue;
+				} else if (source.startsWith("<br/>", index)) {
+					index += 5;
+					continue;
+				} else if (source.startsWith("<i>", index)) {
+					index += 3;
+					continue;
+				} else if (source.startsWith("</i>", index)) {
+					index += 4;
+					continue;
+				}
+			} else if (character == '&') {
+				if (source.startsWith("&quot;", index)) {
+					builder.append('\'');
+					index += 6;
+					continue;
+				} else if (source.startsWith("&amp;", index)) {
+					builder.append('&');
+					index += 5;
+					continue;
+				}
+			}
+			builder.append(character);
+			index += 1;
+		}
+		return builder.toString();
+	}
+}
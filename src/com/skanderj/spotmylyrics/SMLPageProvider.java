@@ -0,0 +1,96 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provider whose lyrics pages are found by putting the artist and title in a
+ * URL, the lyrics being delimited in the page by two markers (like AZLyrics'
+ * warning comment and the next </div>).
+ *
+ * @author Skander J.
+ */
+public final class SMLPageProvider implements SMLLyricsProvider {
+	/**
+	 * How the artist and title are written in a provider's URLs.
+	 */
+	public enum Style {
+		// "arcticmonkeys", "505", as AZLyrics does, see SML.formatArtist
+		COMPACT,
+		// "arctic-monkeys", "505"
+		DASHED;
+	}
+
+	// Where the lyrics come from by default
+	public static final SMLPageProvider AZLYRICS = new SMLPageProvider("azlyrics", SML.AZLYRICS_URL, Style.COMPACT, SMLExtractor.LYRICS_START, SMLExtractor.LYRICS_END);
+
+	private final String name, url;
+	private final Style style;
+	private final SMLExtractor start, end;
+
+	public SMLPageProvider(final String name, final String url, final Style style, final SMLExtractor start, final SMLExtractor end) {
+		this.name = name;
+		this.url = url;
+		this.style = style;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Parses a provider from a line of the providers file: name, URL format (two
+	 * %s, the artist then the title), start marker, end marker and optionally
+	 * the style (compact by default), separated by tabs.
+	 *
+	 * @return the provider, or null if the line is malformed
+	 */
+	public static SMLPageProvider parse(final String line) {
+		final String[] fields = line.split("\t");
+		if ((fields.length < 4) || (fields.length > 5)) {
+			System.err.println("Skipping malformed provider: " + line);
+			return null;
+		}
+		Style style = Style.COMPACT;
+		if (fields.length == 5) {
+			try {
+				style = Style.valueOf(fields[4].strip().toUpperCase());
+			} catch (final IllegalArgumentException illegalArgumentException) {
+				System.err.println("Unknown URL style " + fields[4].strip() + " for provider " + fields[0].strip());
+				return null;
+			}
+		}
+		return new SMLPageProvider(fields[0].strip(), fields[1].strip(), style, new SMLExtractor(fields[2].strip()), new SMLExtractor(fields[3].strip()));
+	}
+
+	/**
+	 * @return the URL arguments (artist, title) for a song
+	 */
+	private Object[] arguments(final String compliantArtist, final String compliantTitle) {
+		final SML sml = SML.getInstance();
+		switch (this.style) {
+		case DASHED:
+			final int parenthesis = compliantTitle.indexOf('(');
+			return new Object[] { SMLPageProvider.dashed(SMLNormalizer.words(compliantArtist)), SMLPageProvider.dashed(SMLNormalizer.words(parenthesis == -1 ? compliantTitle : compliantTitle.substring(0, parenthesis))) };
+		default:
+			return new Object[] { sml.formatArtist(compliantArtist), sml.formatTitle(compliantTitle) };
+		}
+	}
+
+	private static String dashed(final List<String> words) {
+		return String.join("-", words);
+	}
+
+	@Override
+	public String name() {
+		return this.name;
+	}
+
+	@Override
+	public String host(final String compliantArtist, final String compliantTitle) {
+		return SMLRateLimiter.hostOf(this.url, this.arguments(compliantArtist, compliantTitle));
+	}
+
+	@Override
+	public CompletableFuture<SMLFetchResult> fetch(final String compliantArtist, final String compliantTitle) {
+		return SMLIO.fetchSectionAsync(this.start, this.end, this.url, this.arguments(compliantArtist, compliantTitle));
+	}
+}
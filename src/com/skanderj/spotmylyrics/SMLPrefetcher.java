@@ -0,0 +1,67 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the lyrics to upcoming songs in the background so that they're
+ * already cached when the songs start. The pool and its queue are bounded
+ * (songs that don't fit are simply not prefetched) and fetches are spaced out
+ * by at least an interval, so that we don't get IP-blocked.
+ *
+ * @author Skander J.
+ */
+public final class SMLPrefetcher {
+	private final ThreadPoolExecutor pool;
+	private final SMLRateLimiter limiter;
+	// Cache keys of the songs queued or being fetched
+	private final Set<String> pending;
+
+	public SMLPrefetcher(final int threads, final int queueSize, final long intervalMs) {
+		this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+			final Thread thread = new Thread(runnable, "SMLPrefetcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.pool.allowCoreThreadTimeOut(true);
+		this.limiter = new SMLRateLimiter(intervalMs);
+		this.pending = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Queues an upcoming song unless it's cached or already queued.
+	 *
+	 * @param answer the song as an (artist, track) pair
+	 */
+	public void prefetch(final String answer) {
+		final SML sml = SML.getInstance();
+		final String[] spotifyAnswer = sml.formatAnswer(answer);
+		final String compliantArtist = spotifyAnswer[2], compliantTitle = spotifyAnswer[3];
+		final String key = sml.getCacheKey(compliantArtist, compliantTitle);
+		if (sml.isCached(compliantArtist, compliantTitle) || !this.pending.add(key)) {
+			return;
+		}
+		if (SML.VERBOSE) {
+			System.out.printf("Prefetching %s\n", answer);
+		}
+		try {
+			this.pool.execute(() -> {
+				try {
+					this.limiter.acquire(sml.lyricsHost(compliantArtist, compliantTitle));
+					sml.fetchLyrics(compliantArtist, compliantTitle).join();
+				} catch (final InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+				} finally {
+					this.pending.remove(key);
+				}
+			});
+		} catch (final RejectedExecutionException rejectedExecutionException) {
+			// Queue full, it'll be fetched when it plays
+			this.pending.remove(key);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.skanderj.spotmylyrics;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Spaces out requests to the same host by at least an interval, whatever the
+ * number of threads sending them.
+ *
+ * @author Skander J.
+ */
+public final class SMLRateLimiter {
+	/**
+	 * How the limiter waits for a slot.
+	 */
+	interface Sleeper {
+		void sleep(long nanos) throws InterruptedException;
+	}
+
+	private final long intervalNanos;
+	// Host -> { next allowed request time }
+	private final Map<String, long[]> nextSlots;
+	private final LongSupplier clock;
+	private final Sleeper sleeper;
+
+	public SMLRateLimiter(final long intervalMs) {
+		this(intervalMs, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+	}
+
+	/**
+	 * @param clock   the time in nanoseconds
+	 * @param sleeper waits for the given nanoseconds
+	 */
+	SMLRateLimiter(final long intervalMs, final LongSupplier clock, final Sleeper sleeper) {
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+		this.nextSlots = new ConcurrentHashMap<>();
+		this.clock = clock;
+		this.sleeper = sleeper;
+	}
+
+	/**
+	 * @return the host of the URL built from @param url and @param args, or the
+	 *         formatted URL itself if it has none
+	 */
+	public static String hostOf(final String url, final Object... args) {
+		final String formattedURL = String.format(url, args);
+		try {
+			final String host = new URI(formattedURL).getHost();
+			return host == null ? formattedURL : host;
+		} catch (final Exception exception) {
+			return formattedURL;
+		}
+	}
+
+	/**
+	 * Blocks until a request to @param host is allowed.
+	 */
+	public void acquire(final String host) throws InterruptedException {
+		final long[] nextSlot = this.nextSlots.computeIfAbsent(host, key -> new long[] { this.clock.getAsLong() });
+		final long slot;
+		synchronized (nextSlot) {
+			slot = Math.max(nextSlot[0], this.clock.getAsLong());
+			nextSlot[0] = slot + this.intervalNanos;
+		}
+		final long wait = slot - this.clock.getAsLong();
+		if (wait > 0) {
+			this.sleeper.sleep(wait);
+		}
+	}
+}
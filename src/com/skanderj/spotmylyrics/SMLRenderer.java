@@ -0,0 +1,260 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Draws to the terminal through a single pre-sized buffer, written out in one
+ * go per update. Pages (a song's whole lyrics) are drawn once, their body
+ * going straight to the terminal after the buffered header, but viewports
+ * (synced lyrics) are diffed against what's already on screen: the title bar
+ * is only set when it changes, a scroll is done by the terminal itself and
+ * only the rows which differ afterwards are redrawn. Without ANSI support
+ * (Windows consoles), pages are printed plainly and viewports as one line per
+ * change.
+ *
+ * @author Skander J.
+ */
+public final class SMLRenderer {
+	// Initial size of the frame buffer, enough for most songs
+	public static final int FRAME_BUFFER_BYTES = 64 * 1024;
+
+	// Rows used by a viewport's header (the song and a blank line)
+	private static final int HEADER_ROWS = 2;
+
+	private static final String ESCAPE = "\033[", HIGHLIGHT = "\033[1m> ", NORMAL = "  ", RESET = "\033[0m";
+
+	private final OutputStream output;
+	// Same as output, counting what's written through it
+	private final OutputStream direct;
+	private final boolean ansi;
+	private final ByteArrayOutputStream frame;
+	private int rows, columns;
+	// What the viewport rows currently show, null if the screen is unknown
+	private String[] screen;
+	// Index of the line at the top of the viewport's scrolling area
+	private int screenTop;
+	private String title;
+	// Line highlighted by the last plain viewport update
+	private String plainHighlight;
+	private long updates, bytes;
+
+	/**
+	 * @param output  where to draw, e.g. System.out
+	 * @param ansi    whether escape sequences are understood
+	 * @param rows    the terminal's height
+	 * @param columns the terminal's width
+	 */
+	public SMLRenderer(final OutputStream output, final boolean ansi, final int rows, final int columns) {
+		this.output = output;
+		this.direct = new Direct();
+		this.ansi = ansi;
+		this.frame = new ByteArrayOutputStream(SMLRenderer.FRAME_BUFFER_BYTES);
+		this.rows = rows;
+		this.columns = columns;
+		this.screen = null;
+		this.screenTop = 0;
+		this.title = null;
+		this.plainHighlight = null;
+		this.updates = 0;
+		this.bytes = 0;
+	}
+
+	private void append(final String string) {
+		this.frame.writeBytes(string.getBytes(Charset.defaultCharset()));
+	}
+
+	private void moveTo(final int row) {
+		this.append(SMLRenderer.ESCAPE + (row + 1) + ";1H");
+	}
+
+	private void setTitle(final String title) {
+		if (this.ansi && !title.equals(this.title)) {
+			this.append("\033]0;" + title + "\007");
+			this.title = title;
+		}
+	}
+
+	/**
+	 * Writes the frame out in one go.
+	 *
+	 * @param flush whether the output should be flushed afterwards
+	 */
+	private void write(final boolean flush) {
+		try {
+			this.frame.writeTo(this.output);
+			if (flush) {
+				this.output.flush();
+			}
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while drawing to the terminal: " + ioException.getMessage());
+		}
+		this.bytes += this.frame.size();
+		this.frame.reset();
+	}
+
+	/**
+	 * Writes the frame out as an update, if there's anything in it.
+	 */
+	private void commit() {
+		if (this.frame.size() == 0) {
+			return;
+		}
+		this.write(true);
+		this.updates += 1;
+	}
+
+	/**
+	 * Draws a new page: sets the title, clears the screen, then draws the header
+	 * and the body.
+	 *
+	 * @param body writes the body to the stream it's given, returning false if
+	 *             it has none
+	 * @return what @param body returned
+	 */
+	public synchronized boolean page(final String title, final String header, final Predicate<OutputStream> body) {
+		this.frame.reset();
+		this.setTitle(title);
+		this.append(this.ansi ? SMLRenderer.ESCAPE + "H" + SMLRenderer.ESCAPE + "2J" : "\n");
+		this.append(header + "\n\n");
+		// The body (e.g. a cache hit) isn't copied into the frame
+		this.write(false);
+		final boolean drawn = body.test(this.direct);
+		if (drawn) {
+			this.append("\n\n");
+		}
+		// The page scrolls freely, a viewport will have to start from scratch
+		this.screen = null;
+		this.write(true);
+		this.updates += 1;
+		return drawn;
+	}
+
+	/**
+	 * Draws some text below what's on screen, e.g. lyrics fetched after their
+	 * page was started.
+	 */
+	public synchronized void print(final String text) {
+		this.append(text);
+		this.commit();
+	}
+
+	/**
+	 * Draws a window over @param lines, the top of it being @param top and the
+	 * line at @param highlight being highlighted. Only what changed since the
+	 * last viewport is sent.
+	 */
+	public synchronized void viewport(final String title, final String header, final String[] lines, final int highlight, final int top) {
+		if (!this.ansi) {
+			final String current = highlight < 0 ? null : lines[highlight];
+			if ((current != null) && !current.equals(this.plainHighlight)) {
+				this.append("> " + current + "\n");
+				this.commit();
+			}
+			this.plainHighlight = current;
+			return;
+		}
+		this.setTitle(title);
+		// The last row is left to the command line
+		final int area = Math.max(0, this.rows - SMLRenderer.HEADER_ROWS - 1);
+		if (this.screen == null) {
+			this.append(SMLRenderer.ESCAPE + "H" + SMLRenderer.ESCAPE + "2J");
+			this.screen = new String[this.rows];
+			Arrays.fill(this.screen, SML.EMPTY);
+			this.screenTop = top;
+		} else if ((top != this.screenTop) && (Math.abs(top - this.screenTop) < area)) {
+			// Let the terminal move the rows which are still visible
+			final int delta = top - this.screenTop;
+			this.append(SMLRenderer.ESCAPE + (SMLRenderer.HEADER_ROWS + 1) + ";" + (SMLRenderer.HEADER_ROWS + area) + "r");
+			this.append(SMLRenderer.ESCAPE + Math.abs(delta) + (delta > 0 ? "S" : "T"));
+			this.append(SMLRenderer.ESCAPE + "r");
+			final String[] scrolled = new String[area];
+			for (int row = 0; row < area; row += 1) {
+				final int source = row + delta;
+				scrolled[row] = (source >= 0) && (source < area) ? this.screen[SMLRenderer.HEADER_ROWS + source] : SML.EMPTY;
+			}
+			System.arraycopy(scrolled, 0, this.screen, SMLRenderer.HEADER_ROWS, area);
+		}
+		this.screenTop = top;
+		for (int row = 0; row < (SMLRenderer.HEADER_ROWS + area); row += 1) {
+			final int line = (top + row) - SMLRenderer.HEADER_ROWS;
+			final String target;
+			if (row == 0) {
+				target = this.fit(header, 0);
+			} else if ((row < SMLRenderer.HEADER_ROWS) || (line < 0) || (line >= lines.length)) {
+				target = SML.EMPTY;
+			} else if (line == highlight) {
+				target = SMLRenderer.HIGHLIGHT + this.fit(lines[line], 2) + SMLRenderer.RESET;
+			} else {
+				target = SMLRenderer.NORMAL + this.fit(lines[line], 2);
+			}
+			if (!target.equals(this.screen[row])) {
+				this.moveTo(row);
+				this.append(target + SMLRenderer.ESCAPE + "K");
+				this.screen[row] = target;
+			}
+		}
+		if (this.frame.size() > 0) {
+			this.moveTo(this.rows - 1);
+		}
+		this.commit();
+	}
+
+	/**
+	 * Cuts @param text so that it fits on a row after @param indent columns.
+	 */
+	private String fit(final String text, final int indent) {
+		final int width = Math.max(0, this.columns - indent);
+		return text.length() <= width ? text : text.substring(0, width);
+	}
+
+	/**
+	 * Called when the terminal was resized: the next viewport is drawn from
+	 * scratch.
+	 */
+	public synchronized void resize(final int rows, final int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.screen = null;
+	}
+
+	/**
+	 * @return how many lines a viewport shows below its header
+	 */
+	public synchronized int viewportLines() {
+		return Math.max(1, this.rows - SMLRenderer.HEADER_ROWS - 1);
+	}
+
+	/**
+	 * @return a one-line summary of what was written so far
+	 */
+	public synchronized String stats() {
+		return String.format("Renderer: %d updates, %s written (%.0f bytes per update)", this.updates, SMLIO.humanReadableByteCountSI(this.bytes), this.updates == 0 ? 0.0 : this.bytes / (double) this.updates);
+	}
+
+	/**
+	 * Writes through to the output, adding what's written to the stats.
+	 */
+	private final class Direct extends OutputStream {
+		@Override
+		public void write(final int b) throws IOException {
+			SMLRenderer.this.output.write(b);
+			SMLRenderer.this.bytes += 1;
+		}
+
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			SMLRenderer.this.output.write(bytes, offset, length);
+			SMLRenderer.this.bytes += length;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			SMLRenderer.this.output.flush();
+		}
+	}
+}
@@ -1,7 +1,11 @@
 package com.skanderj.spotmylyrics;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public final class SMLSYS {
 	private SMLSYS() {
@@ -15,6 +19,199 @@ public final class SMLSYS {
 	// macOS)
 	public static final String APPLESCRIPT_CODE = "getCurrentlyPlayingTrack()\n" + "on getCurrentlyPlayingTrack()\n" + "tell application \"Spotify\"\n" + "set isPlaying to player state as string\n" + "set currentArtist to artist of current track as string\n" + "set currentTrack to name of current track as string\n" + "return {currentArtist, currentTrack}\n" + "end tell\n" + "end getCurrentlyPlayingTrack";
 
+	// Prefix of the watcher's lines announcing upcoming songs
+	public static final String UPCOMING_PREFIX = "NEXT ";
+
+	// Prefix of the watcher's lines reporting the playback position, as "POS
+	// <milliseconds> PLAYING|PAUSED"
+	public static final String POSITION_PREFIX = "POS ";
+
+	// The persistent helper, null unless the persistent query mode is enabled
+	private static SMLHelper helper = null;
+
+	// The event helper's command line, null unless the event mode is enabled
+	private static String[] watcherCommand = null;
+
+	/**
+	 * Builds the command line running queryspotify.py in one of its long-lived
+	 * modes.
+	 *
+	 * @param mode either --daemon or --watch
+	 * @return the command line, or null if not supported on this system
+	 */
+	private static String[] scriptCommand(final String mode) {
+		switch (SMLSYS._OS) {
+		case WINDOWS:
+			return new String[] { "python", "./scripts/queryspotify.py", "win", mode };
+		case MACOS:
+			return new String[] { "python3", "./scripts/queryspotify.py", "mac", mode };
+		case LINUX:
+			return new String[] { "python", "./scripts/queryspotify.py", "linux", mode };
+		case OTHER:
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Switches to the persistent query mode: a single helper process is started
+	 * and kept alive instead of spawning a new one on each query.
+	 *
+	 * @param command the helper's command line, or nothing for the default
+	 *                queryspotify.py daemon
+	 * @return true if the mode is supported on this system, false otherwise
+	 */
+	public static boolean enablePersistentQuery(final String... command) {
+		final String[] helperArgs = command.length == 0 ? SMLSYS.scriptCommand("--daemon") : command;
+		if (helperArgs == null) {
+			return false;
+		}
+		SMLSYS.disablePersistentQuery();
+		SMLSYS.helper = new SMLHelper(helperArgs);
+		return true;
+	}
+
+	/**
+	 * Switches to the event mode: a helper pushes a line each time the song
+	 * changes instead of being polled every REFRESH_TIME_MS.
+	 *
+	 * @param command the helper's command line, or nothing for the default
+	 *                queryspotify.py watcher
+	 * @return true if the mode is supported on this system, false otherwise
+	 */
+	public static boolean enableTrackEvents(final String... command) {
+		final String[] watcherArgs = command.length == 0 ? SMLSYS.scriptCommand("--watch") : command;
+		if (watcherArgs == null) {
+			return false;
+		}
+		SMLSYS.watcherCommand = watcherArgs;
+		return true;
+	}
+
+	/**
+	 * @return true if track changes should be pushed rather than polled
+	 */
+	public static boolean trackEventsEnabled() {
+		return SMLSYS.watcherCommand != null;
+	}
+
+	/**
+	 * Starts watching Spotify for track changes. Besides the current song, the
+	 * helper may announce upcoming ones with "NEXT artist, track" lines and
+	 * report the playback position (on track changes, seeks, pauses and resumes)
+	 * with "POS milliseconds PLAYING|PAUSED" lines.
+	 *
+	 * @param listener         called with a (artist, track) pair on each change
+	 * @param upcomingListener called with a (artist, track) pair for each
+	 *                         upcoming song
+	 * @param positionListener called with the position in milliseconds and
+	 *                         whether the song is playing
+	 * @param fallback         called if the watcher can't be kept alive
+	 * @return the running watcher, or null if the event mode isn't enabled
+	 */
+	public static SMLWatcher watchSpotify(final Consumer<String> listener, final Consumer<String> upcomingListener, final BiConsumer<Long, Boolean> positionListener, final Runnable fallback) {
+		if (SMLSYS.watcherCommand == null) {
+			return null;
+		}
+		final SMLWatcher watcher = new SMLWatcher(SMLSYS.watcherCommand, answer -> {
+			if (answer.startsWith(SMLSYS.UPCOMING_PREFIX)) {
+				upcomingListener.accept(answer.substring(SMLSYS.UPCOMING_PREFIX.length()).strip());
+				return;
+			}
+			if (answer.startsWith(SMLSYS.POSITION_PREFIX)) {
+				final String[] position = answer.substring(SMLSYS.POSITION_PREFIX.length()).strip().split(SML.SPACE);
+				try {
+					positionListener.accept(Long.parseLong(position[0]), (position.length < 2) || position[1].equals("PLAYING"));
+				} catch (final NumberFormatException numberFormatException) {
+					System.err.println("Ignoring malformed position: " + answer);
+				}
+				return;
+			}
+			final String checkedAnswer = SMLSYS.checkAnswer(answer);
+			if (checkedAnswer != null) {
+				listener.accept(checkedAnswer);
+			}
+		}, fallback);
+		watcher.start();
+		return watcher;
+	}
+
+	/**
+	 * Stops the persistent helper (if any) and goes back to one process per query.
+	 */
+	public static void disablePersistentQuery() {
+		if (SMLSYS.helper != null) {
+			SMLSYS.helper.stop();
+			SMLSYS.helper = null;
+		}
+	}
+
+	/**
+	 * @return true if the terminal understands ANSI escape sequences
+	 */
+	public static boolean ansiSupported() {
+		return SMLSYS._OS != OS.WINDOWS;
+	}
+
+	/**
+	 * Asks the terminal for its size through stty, then falls back to the
+	 * LINES/COLUMNS environment variables.
+	 *
+	 * @return { rows, columns }, or null if unknown
+	 */
+	public static int[] terminalSize() {
+		if ((SMLSYS._OS == OS.LINUX) || (SMLSYS._OS == OS.MACOS)) {
+			try {
+				final ProcessBuilder processBuilder = new ProcessBuilder("stty", "size");
+				processBuilder.redirectInput(new File("/dev/tty"));
+				final String[] size = SMLSYS.readProcessOutput(processBuilder).strip().split(SML.SPACE);
+				if (size.length == 2) {
+					return new int[] { Integer.parseInt(size[0]), Integer.parseInt(size[1]) };
+				}
+			} catch (final Exception exception) {
+				if (SML.VERBOSE) {
+					System.out.printf("Couldn't read the terminal size: %s\n", exception.getMessage());
+				}
+			}
+		}
+		try {
+			return new int[] { Integer.parseInt(System.getenv("LINES")), Integer.parseInt(System.getenv("COLUMNS")) };
+		} catch (final NumberFormatException numberFormatException) {
+			return null;
+		}
+	}
+
+	/**
+	 * Calls @param listener each time the terminal is resized (SIGWINCH).
+	 * sun.misc.Signal is looked up reflectively, as it's an internal API which
+	 * may not be there.
+	 *
+	 * @return true if resizes can be detected on this system, false otherwise
+	 */
+	public static boolean onTerminalResize(final Runnable listener) {
+		try {
+			final Class<?> signalClass = Class.forName("sun.misc.Signal"), handlerClass = Class.forName("sun.misc.SignalHandler");
+			final Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[] { handlerClass }, (proxy, method, args) -> {
+				switch (method.getName()) {
+				case "handle":
+					listener.run();
+					return null;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				default:
+					return "SIGWINCH handler";
+				}
+			});
+			signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signalClass.getConstructor(String.class).newInstance("WINCH"), handler);
+			return true;
+		} catch (final ReflectiveOperationException reflectiveOperationException) {
+			// No such class, or no such signal on this system
+			return false;
+		}
+	}
+
 	/**
 	 * Runs a script through the underlying system.
 	 *
@@ -23,8 +220,18 @@ public final class SMLSYS {
 	 * @throws Exception
 	 */
 	public static String readProcessOutput(final String[] args) throws Exception {
+		return SMLSYS.readProcessOutput(new ProcessBuilder(args));
+	}
+
+	/**
+	 * Runs a process and waits for it.
+	 *
+	 * @param processBuilder
+	 * @return the process' last line of output
+	 * @throws Exception
+	 */
+	private static String readProcessOutput(final ProcessBuilder processBuilder) throws Exception {
 		String output = new String();
-		final ProcessBuilder processBuilder = new ProcessBuilder(args);
 		// Mandatory
 		processBuilder.redirectErrorStream(true);
 		final Process process = processBuilder.start();
@@ -46,27 +253,42 @@ public final class SMLSYS {
 			System.out.printf("Querying Spotify for the current song...\n");
 		}
 		String answer = SML.EMPTY;
-		try {
-			String[] scriptArgs;
-			switch (SMLSYS._OS) {
-			case WINDOWS:
-				scriptArgs = new String[] { "python", "./scripts/queryspotify.py", "win" };
-				break;
-			case MACOS:
-				scriptArgs = new String[] { "osascript", "-e", SMLSYS.APPLESCRIPT_CODE };
-				break;
-			case LINUX:
-				scriptArgs = new String[] { "python", "./scripts/queryspotify.py", "linux" };
-				break;
-			case OTHER:
-			default:
+		if (SMLSYS.helper != null) {
+			// Persistent mode, no forking
+			if ((answer = SMLSYS.helper.query()) == null) {
+				return null;
+			}
+		} else {
+			try {
+				String[] scriptArgs;
+				switch (SMLSYS._OS) {
+				case WINDOWS:
+					scriptArgs = new String[] { "python", "./scripts/queryspotify.py", "win" };
+					break;
+				case MACOS:
+					scriptArgs = new String[] { "osascript", "-e", SMLSYS.APPLESCRIPT_CODE };
+					break;
+				case LINUX:
+					scriptArgs = new String[] { "python", "./scripts/queryspotify.py", "linux" };
+					break;
+				case OTHER:
+				default:
+					return null;
+				}
+				answer = SMLSYS.readProcessOutput(scriptArgs);
+			} catch (final Exception exception) {
+				System.err.println("An error occurred while querying Spotify for the current song: " + exception.getMessage());
 				return null;
 			}
-			answer = SMLSYS.readProcessOutput(scriptArgs);
-		} catch (final Exception exception) {
-			System.err.println("An error occurred while querying Spotify for the current song: " + exception.getMessage());
-			return null;
 		}
+		return SMLSYS.checkAnswer(answer);
+	}
+
+	/**
+	 * @return the helper's @param answer if it's an (artist, track) pair, null
+	 *         otherwise.
+	 */
+	private static String checkAnswer(final String answer) {
 		if (answer.equals("PAUSED") || answer.equals("NOT RUNNING")) {
 			System.err.println("Spotify is either paused or not running, can't identify the current track!");
 			return null;
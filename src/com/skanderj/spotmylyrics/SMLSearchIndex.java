@@ -0,0 +1,464 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Positional inverted index over the cached lyrics. Each word points to the
+ * songs it appears in and where, as variable-length deltas, which is also how
+ * it's saved to disk. Songs are only ever added, so the index is kept up to
+ * date as lyrics are saved and only the songs cached since it was last saved
+ * have to be indexed on startup.
+ *
+ * Queries are words which must all appear, "quoted phrases" whose words must
+ * appear in this order, and prefixes (word*), also allowed within phrases.
+ *
+ * @author Skander J.
+ */
+public final class SMLSearchIndex {
+	// "SMLI" then the format version
+	private static final int MAGIC = 0x534D4C49, VERSION = 1;
+
+	// How many words a prefix may stand for
+	public static final int MAX_EXPANSIONS = 1024;
+
+	private final List<String> keys;
+	private final Map<String, Integer> ids;
+	// Sorted, for prefixes
+	private final TreeMap<String, Postings> terms;
+	private boolean dirty;
+
+	public SMLSearchIndex() {
+		this.keys = new ArrayList<>();
+		this.ids = new HashMap<>();
+		this.terms = new TreeMap<>();
+		this.dirty = false;
+	}
+
+	/**
+	 * Indexes the lyrics to a song, unless it already is.
+	 *
+	 * @param key    the song's cache key
+	 * @param lyrics its lyrics
+	 */
+	public synchronized void add(final String key, final String lyrics) {
+		if (this.ids.containsKey(key)) {
+			return;
+		}
+		final int id = this.keys.size();
+		this.keys.add(key);
+		this.ids.put(key, id);
+		final List<String> words = SMLNormalizer.words(lyrics);
+		// Positions of each word, in order
+		final Map<String, int[]> positions = new HashMap<>();
+		for (int position = 0; position < words.size(); position += 1) {
+			int[] wordPositions = positions.get(words.get(position));
+			if (wordPositions == null) {
+				wordPositions = new int[] { 0, 0, 0, 0 };
+			} else if ((wordPositions[0] + 1) == wordPositions.length) {
+				wordPositions = Arrays.copyOf(wordPositions, wordPositions.length * 2);
+			}
+			wordPositions[0] += 1;
+			wordPositions[wordPositions[0]] = position;
+			positions.put(words.get(position), wordPositions);
+		}
+		for (final Map.Entry<String, int[]> entry : positions.entrySet()) {
+			this.terms.computeIfAbsent(entry.getKey(), term -> new Postings()).add(id, entry.getValue());
+		}
+		this.dirty = true;
+	}
+
+	public synchronized boolean contains(final String key) {
+		return this.ids.containsKey(key);
+	}
+
+	/**
+	 * @return the keys of the indexed songs
+	 */
+	public synchronized Collection<String> keys() {
+		return new ArrayList<>(this.keys);
+	}
+
+	/**
+	 * @return the number of indexed songs
+	 */
+	public synchronized int size() {
+		return this.keys.size();
+	}
+
+	public synchronized void clear() {
+		this.keys.clear();
+		this.ids.clear();
+		this.terms.clear();
+		this.dirty = true;
+	}
+
+	/**
+	 * Finds the songs matching a query.
+	 *
+	 * @param query words, "phrases" and prefixes (word*)
+	 * @return the keys of the matching songs, in the order they were indexed
+	 */
+	public synchronized List<String> search(final String query) {
+		final List<List<String>> clauses = SMLSearchIndex.parse(query);
+		final List<String> results = new ArrayList<>();
+		if (clauses.isEmpty()) {
+			return results;
+		}
+		// Songs containing every word first, then phrases are checked
+		final List<List<Postings[]>> expanded = new ArrayList<>();
+		BitSet candidates = null;
+		for (final List<String> clause : clauses) {
+			final List<Postings[]> slots = new ArrayList<>();
+			for (final String word : clause) {
+				final Postings[] slot = this.expand(word);
+				final BitSet documents = new BitSet(this.keys.size());
+				for (final Postings postings : slot) {
+					postings.documents(documents);
+				}
+				if (candidates == null) {
+					candidates = documents;
+				} else {
+					candidates.and(documents);
+				}
+				slots.add(slot);
+			}
+			expanded.add(slots);
+		}
+		for (final List<Postings[]> slots : expanded) {
+			if ((slots.size() > 1) && !candidates.isEmpty()) {
+				candidates = this.matchPhrase(slots, candidates);
+			}
+		}
+		for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+			results.add(this.keys.get(id));
+		}
+		return results;
+	}
+
+	/**
+	 * @return the postings of @param word, or of the words it's a prefix of if
+	 *         it ends with *
+	 */
+	private Postings[] expand(final String word) {
+		if (!word.endsWith("*")) {
+			final Postings postings = this.terms.get(word);
+			return postings == null ? new Postings[0] : new Postings[] { postings };
+		}
+		final String prefix = word.substring(0, word.length() - 1);
+		return this.terms.subMap(prefix, prefix + Character.MAX_VALUE).values().stream().limit(SMLSearchIndex.MAX_EXPANSIONS).toArray(Postings[]::new);
+	}
+
+	/**
+	 * @return the songs among @param candidates where the words of @param slots
+	 *         follow each other
+	 */
+	private BitSet matchPhrase(final List<Postings[]> slots, final BitSet candidates) {
+		// One cursor per word, walking the songs in order along with the
+		// candidates, and the positions of each slot in the current candidate
+		final Postings.Cursor[][] cursors = new Postings.Cursor[slots.size()][];
+		final int[][] positions = new int[slots.size()][];
+		final int[] sizes = new int[slots.size()];
+		for (int slot = 0; slot < slots.size(); slot += 1) {
+			cursors[slot] = Arrays.stream(slots.get(slot)).map(Postings::cursor).toArray(Postings.Cursor[]::new);
+			positions[slot] = new int[64];
+		}
+		final BitSet matches = new BitSet(this.keys.size());
+		for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+			for (int slot = 0; slot < slots.size(); slot += 1) {
+				sizes[slot] = 0;
+				int contributors = 0;
+				for (final Postings.Cursor cursor : cursors[slot]) {
+					if (cursor.advanceTo(id)) {
+						positions[slot] = cursor.positions(positions[slot], sizes[slot]);
+						sizes[slot] += cursor.count();
+						contributors += 1;
+					}
+				}
+				// Prefixes merge the positions of several words
+				if (contributors > 1) {
+					Arrays.sort(positions[slot], 0, sizes[slot]);
+				}
+			}
+			for (int index = 0; index < sizes[0]; index += 1) {
+				final int start = positions[0][index];
+				boolean follows = true;
+				for (int slot = 1; follows && (slot < slots.size()); slot += 1) {
+					follows = Arrays.binarySearch(positions[slot], 0, sizes[slot], start + slot) >= 0;
+				}
+				if (follows) {
+					matches.set(id);
+					break;
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Splits a query into clauses: one per "phrase" and one per other token (a
+	 * token like "don't" being a phrase of its own), each a list of folded words
+	 * (prefixes keeping their *).
+	 */
+	private static List<List<String>> parse(final String query) {
+		final List<List<String>> clauses = new ArrayList<>();
+		final String[] parts = query.split("\"", -1);
+		for (int index = 0; index < parts.length; index += 1) {
+			// Odd parts are between quotes
+			final boolean phrase = (index % 2) == 1;
+			final List<String> phraseWords = new ArrayList<>();
+			for (final String token : parts[index].strip().split("\\s+")) {
+				final List<String> words = SMLNormalizer.words(token);
+				if (words.isEmpty()) {
+					continue;
+				}
+				if (token.endsWith("*")) {
+					words.set(words.size() - 1, words.get(words.size() - 1) + "*");
+				}
+				if (phrase) {
+					phraseWords.addAll(words);
+				} else {
+					clauses.add(words);
+				}
+			}
+			if (!phraseWords.isEmpty()) {
+				clauses.add(phraseWords);
+			}
+		}
+		return clauses;
+	}
+
+	/**
+	 * Saves the index, if it changed since it was loaded or last saved.
+	 *
+	 * @return true if success, false otherwise
+	 */
+	public synchronized boolean save(final File file) {
+		if (!this.dirty) {
+			return true;
+		}
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(SMLSearchIndex.MAGIC);
+			output.writeInt(SMLSearchIndex.VERSION);
+			output.writeInt(this.keys.size());
+			for (final String key : this.keys) {
+				output.writeUTF(key);
+			}
+			output.writeInt(this.terms.size());
+			for (final Map.Entry<String, Postings> entry : this.terms.entrySet()) {
+				output.writeUTF(entry.getKey());
+				entry.getValue().write(output);
+			}
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while saving the search index: " + ioException.getMessage());
+			return false;
+		}
+		this.dirty = false;
+		return true;
+	}
+
+	/**
+	 * Loads an index saved with save.
+	 *
+	 * @return the index, or null if the file is missing or unreadable
+	 */
+	public static SMLSearchIndex load(final File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		final SMLSearchIndex index = new SMLSearchIndex();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if ((input.readInt() != SMLSearchIndex.MAGIC) || (input.readInt() != SMLSearchIndex.VERSION)) {
+				System.err.println("Ignoring " + file.getPath() + ", not a search index or an older version");
+				return null;
+			}
+			final int songs = input.readInt();
+			for (int id = 0; id < songs; id += 1) {
+				final String key = input.readUTF();
+				index.keys.add(key);
+				index.ids.put(key, id);
+			}
+			final int terms = input.readInt();
+			for (int term = 0; term < terms; term += 1) {
+				index.terms.put(input.readUTF(), Postings.read(input));
+			}
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while loading the search index: " + ioException.getMessage());
+			return null;
+		}
+		return index;
+	}
+
+	/**
+	 * The songs a word appears in and its positions in each, as variable-length
+	 * ints: song id delta, count, then position deltas.
+	 */
+	private static final class Postings {
+		private byte[] bytes;
+		private int length, lastDocument;
+
+		private Postings() {
+			this.bytes = new byte[16];
+			this.length = 0;
+			this.lastDocument = 0;
+		}
+
+		private void writeVarInt(int value) {
+			if ((this.length + 5) > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+			}
+			while ((value & ~0x7F) != 0) {
+				this.bytes[this.length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.length++] = (byte) value;
+		}
+
+		/**
+		 * @param document   the song's id, greater than the previous one's
+		 * @param positions  the positions of the word, preceded by their number
+		 */
+		private void add(final int document, final int[] positions) {
+			this.writeVarInt(document - this.lastDocument);
+			this.lastDocument = document;
+			this.writeVarInt(positions[0]);
+			int previous = 0;
+			for (int index = 1; index <= positions[0]; index += 1) {
+				this.writeVarInt(positions[index] - previous);
+				previous = positions[index];
+			}
+		}
+
+		private Cursor cursor() {
+			return new Cursor();
+		}
+
+		/**
+		 * Walks the postings song by song, decoding the positions only when asked.
+		 */
+		private final class Cursor {
+			private int offset, document, count;
+			// Whether the current song's positions were read already
+			private boolean consumed;
+
+			private Cursor() {
+				this.offset = 0;
+				this.document = 0;
+				this.count = 0;
+				this.consumed = true;
+			}
+
+			private int next() {
+				int value = 0, shift = 0;
+				byte current;
+				do {
+					current = Postings.this.bytes[this.offset++];
+					value |= (current & 0x7F) << shift;
+					shift += 7;
+				} while ((current & 0x80) != 0);
+				return value;
+			}
+
+			private void skipPositions() {
+				for (; this.count > 0; this.count -= 1) {
+					this.next();
+				}
+			}
+
+			/**
+			 * Moves to the next song.
+			 *
+			 * @return false if there's none
+			 */
+			private boolean nextDocument() {
+				if (!this.consumed) {
+					this.skipPositions();
+				}
+				if (this.offset >= Postings.this.length) {
+					return false;
+				}
+				this.document += this.next();
+				this.count = this.next();
+				this.consumed = false;
+				return true;
+			}
+
+			/**
+			 * Moves to @param target if the word appears in it, otherwise to the
+			 * first song after it.
+			 *
+			 * @return true if the word appears in @param target
+			 */
+			private boolean advanceTo(final int target) {
+				if (!this.consumed && (this.document >= target)) {
+					return this.document == target;
+				}
+				while (this.nextDocument()) {
+					if (this.document >= target) {
+						return this.document == target;
+					}
+				}
+				return false;
+			}
+
+			private int count() {
+				return this.count;
+			}
+
+			/**
+			 * Decodes the current song's positions into @param buffer from
+			 * @param from, growing it if needed.
+			 *
+			 * @return the buffer
+			 */
+			private int[] positions(final int[] buffer, final int from) {
+				final int[] target = (from + this.count) > buffer.length ? Arrays.copyOf(buffer, Math.max(buffer.length * 2, from + this.count)) : buffer;
+				int position = 0;
+				for (int index = 0; index < this.count; index += 1) {
+					target[from + index] = position += this.next();
+				}
+				this.consumed = true;
+				return target;
+			}
+		}
+
+		/**
+		 * Sets the ids of the songs the word appears in.
+		 */
+		private void documents(final BitSet documents) {
+			final Cursor cursor = new Cursor();
+			while (cursor.nextDocument()) {
+				documents.set(cursor.document);
+			}
+		}
+
+		private void write(final DataOutputStream output) throws IOException {
+			output.writeInt(this.lastDocument);
+			output.writeInt(this.length);
+			output.write(this.bytes, 0, this.length);
+		}
+
+		private static Postings read(final DataInputStream input) throws IOException {
+			final Postings postings = new Postings();
+			postings.lastDocument = input.readInt();
+			postings.length = input.readInt();
+			postings.bytes = new byte[Math.max(16, postings.length)];
+			input.readFully(postings.bytes, 0, postings.length);
+			return postings;
+		}
+	}
+}
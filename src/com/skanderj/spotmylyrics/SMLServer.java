@@ -0,0 +1,270 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.skanderj.ts4j.Task;
+import com.skanderj.ts4j.TaskScheduler;
+import com.skanderj.ts4j.TaskType;
+import com.skanderj.ts4j.TimeValue;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Headless mode serving lyrics over HTTP, so that a single instance and its
+ * cache can feed any number of displays on the LAN:
+ *
+ * GET /lyrics?artist=...&track=... answers the lyrics to a song (looked up and
+ * fetched like printLyrics does), GET /now-playing the song playing on this
+ * machine and its lyrics, and GET /events is a Server-Sent Events stream with
+ * a "track" event each time the song changes. Everything is JSON.
+ *
+ * Connections are multiplexed by the JDK's selector-based server and requests
+ * handled on a small pool; requests waiting for a fetch, and event streams,
+ * don't hold a thread.
+ *
+ * @author Skander J.
+ */
+public final class SMLServer {
+	static {
+		// The server writes headers and body separately, which Nagle's algorithm
+		// holds back until the client's delayed ACK (~40ms per request)
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService pool;
+	// Open event streams
+	private final List<OutputStream> subscribers;
+
+	public SMLServer(final int port, final int threads) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(port), SML.SERVE_BACKLOG);
+		// Platform threads: virtual ones need Java 21, and the application is
+		// built for Java 14
+		this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "SMLServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.subscribers = new CopyOnWriteArrayList<>();
+		this.server.setExecutor(this.pool);
+		this.server.createContext("/lyrics", this::lyrics);
+		this.server.createContext("/now-playing", this::nowPlaying);
+		this.server.createContext("/events", this::events);
+	}
+
+	public void start() {
+		this.server.start();
+		// Comments sent now and then so that idle streams aren't cut by proxies,
+		// and so that closed ones are noticed
+		TaskScheduler.scheduleTask("SSEKeepAlive", new Task(new TimeValue(SML.SERVE_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS), new TimeValue(SML.SERVE_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS)) {
+			@Override
+			public void execute() {
+				SMLServer.this.broadcast(": keep-alive\n\n");
+			}
+
+			@Override
+			public TaskType type() {
+				return TaskType.FIXED_RATE;
+			}
+		});
+	}
+
+	public void stop() {
+		TaskScheduler.cancelTask("SSEKeepAlive", false);
+		this.server.stop(0);
+		this.pool.shutdownNow();
+	}
+
+	/**
+	 * Tells the event streams the song changed, once its lyrics are known.
+	 *
+	 * @param spotifyAnswer the new song, formatted
+	 */
+	public void onTrackChange(final String[] spotifyAnswer) {
+		SML.getInstance().lyrics(spotifyAnswer).thenAccept(lyrics -> this.broadcast("event: track\ndata: " + SMLServer.song(spotifyAnswer, lyrics) + "\n\n"));
+	}
+
+	private void lyrics(final HttpExchange exchange) throws IOException {
+		if (!SMLServer.isGet(exchange)) {
+			return;
+		}
+		final Map<String, String> parameters = SMLServer.parameters(exchange.getRequestURI().getRawQuery());
+		final String artist = parameters.get("artist"), track = parameters.get("track");
+		if ((artist == null) || (track == null) || artist.isBlank() || track.isBlank()) {
+			SMLServer.respond(exchange, 400, SMLServer.error("Missing artist or track"));
+			return;
+		}
+		final String[] spotifyAnswer = SML.getInstance().formatAnswer(artist.replace(",", SML.EMPTY) + ", " + track);
+		this.answer(exchange, spotifyAnswer, SML.getInstance().lyrics(spotifyAnswer));
+	}
+
+	private void nowPlaying(final HttpExchange exchange) throws IOException {
+		if (!SMLServer.isGet(exchange)) {
+			return;
+		}
+		final String[] spotifyAnswer = SML.getInstance().nowPlaying();
+		if (spotifyAnswer == null) {
+			SMLServer.respond(exchange, 404, SMLServer.error("Nothing played yet"));
+			return;
+		}
+		this.answer(exchange, spotifyAnswer, SML.getInstance().lyrics(spotifyAnswer));
+	}
+
+	/**
+	 * Answers with a song and its lyrics once they're known, without holding the
+	 * thread in the meantime.
+	 */
+	private void answer(final HttpExchange exchange, final String[] spotifyAnswer, final CompletableFuture<String> lyrics) {
+		lyrics.whenComplete((found, throwable) -> {
+			try {
+				if (found == null) {
+					SMLServer.respond(exchange, 404, SMLServer.error("No lyrics found"));
+				} else {
+					SMLServer.respond(exchange, 200, SMLServer.song(spotifyAnswer, found));
+				}
+			} catch (final IOException ioException) {
+				// The client left
+				exchange.close();
+			}
+		});
+	}
+
+	private void events(final HttpExchange exchange) throws IOException {
+		if (!SMLServer.isGet(exchange)) {
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(200, 0);
+		final OutputStream stream = exchange.getResponseBody();
+		stream.write("retry: 2000\n\n".getBytes(StandardCharsets.UTF_8));
+		stream.flush();
+		// Left open, written to on track changes
+		this.subscribers.add(stream);
+		final String[] spotifyAnswer = SML.getInstance().nowPlaying();
+		if (spotifyAnswer != null) {
+			SML.getInstance().lyrics(spotifyAnswer).thenAccept(lyrics -> this.send(stream, "event: track\ndata: " + SMLServer.song(spotifyAnswer, lyrics) + "\n\n"));
+		}
+	}
+
+	private void broadcast(final String event) {
+		for (final OutputStream stream : this.subscribers) {
+			this.send(stream, event);
+		}
+	}
+
+	/**
+	 * Writes an event to a stream, dropping the stream if the client left.
+	 */
+	private void send(final OutputStream stream, final String event) {
+		try {
+			synchronized (stream) {
+				stream.write(event.getBytes(StandardCharsets.UTF_8));
+				stream.flush();
+			}
+		} catch (final IOException ioException) {
+			this.subscribers.remove(stream);
+			try {
+				stream.close();
+			} catch (final IOException closingException) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the request is a GET, answering 405 otherwise
+	 */
+	private static boolean isGet(final HttpExchange exchange) throws IOException {
+		if (exchange.getRequestMethod().equals("GET")) {
+			return true;
+		}
+		exchange.getResponseHeaders().set("Allow", "GET");
+		SMLServer.respond(exchange, 405, SMLServer.error("Only GET is supported"));
+		return false;
+	}
+
+	private static void respond(final HttpExchange exchange, final int status, final String json) throws IOException {
+		final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+		exchange.sendResponseHeaders(status, body.length);
+		try (final OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	/**
+	 * @return the (URL-decoded) parameters of a query string
+	 */
+	private static Map<String, String> parameters(final String query) {
+		final Map<String, String> parameters = new HashMap<>();
+		if (query == null) {
+			return parameters;
+		}
+		for (final String pair : query.split("&")) {
+			final int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	private static String song(final String[] spotifyAnswer, final String lyrics) {
+		return "{\"artist\":" + SMLServer.quote(spotifyAnswer[0]) + ",\"track\":" + SMLServer.quote(spotifyAnswer[1]) + ",\"lyrics\":" + (lyrics == null ? "null" : SMLServer.quote(lyrics)) + "}";
+	}
+
+	private static String error(final String message) {
+		return "{\"error\":" + SMLServer.quote(message) + "}";
+	}
+
+	/**
+	 * @return @param string as a JSON string literal
+	 */
+	private static String quote(final String string) {
+		final StringBuilder builder = new StringBuilder(string.length() + 16).append('"');
+		for (int index = 0; index < string.length(); index += 1) {
+			final char character = string.charAt(index);
+			switch (character) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (character < 0x20) {
+					builder.append(String.format("\\u%04x", (int) character));
+				} else {
+					builder.append(character);
+				}
+				break;
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,227 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs all the cached lyrics into a single append-only segment file instead of
+ * one file per song. Each record is laid out as [key length][key][lyrics
+ * length][lyrics], lengths being 4-byte ints and strings UTF-8. The index (key
+ * to lyrics offset & length) is kept in memory and rebuilt at startup by
+ * skipping from header to header, so a lookup is a single seek and counting
+ * items or bytes doesn't touch the disk. Overriding a song appends a new record
+ * which shadows the old one.
+ *
+ * @author Skander J.
+ */
+public final class SMLStore implements SMLCache {
+	private final File file;
+	// Cache key -> { lyrics offset, lyrics length }
+	private final Map<String, long[]> index;
+	private long liveBytes;
+	private RandomAccessFile segment;
+
+	public SMLStore(final File file) {
+		this.file = file;
+		this.index = new HashMap<>();
+		this.liveBytes = 0;
+		this.segment = null;
+		this.open();
+	}
+
+	/**
+	 * Opens the segment file and rebuilds the index. A partially written record
+	 * at the end of the file (crash while saving) is cut off.
+	 */
+	private void open() {
+		if (SML.VERBOSE) {
+			System.out.printf("Opening lyrics store %s...", this.file.getAbsolutePath());
+		}
+		try {
+			this.segment = new RandomAccessFile(this.file, "rw");
+			final long end = this.segment.length();
+			long offset = 0;
+			try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+				while ((end - offset) >= Integer.BYTES) {
+					final int keyLength = input.readInt();
+					if ((keyLength < 0) || ((offset + (2 * Integer.BYTES) + keyLength) > end)) {
+						break;
+					}
+					final byte[] key = new byte[keyLength];
+					input.readFully(key);
+					final int lyricsLength = input.readInt();
+					final long lyricsOffset = offset + (2 * Integer.BYTES) + keyLength;
+					if ((lyricsLength < 0) || ((lyricsOffset + lyricsLength) > end)) {
+						break;
+					}
+					input.skipNBytes(lyricsLength);
+					this.index(new String(key, StandardCharsets.UTF_8), lyricsOffset, lyricsLength);
+					offset = lyricsOffset + lyricsLength;
+				}
+			}
+			if (offset < end) {
+				System.err.printf("Discarding %d bytes of incomplete record at the end of %s\n", end - offset, this.file.getName());
+				this.segment.setLength(offset);
+			}
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while opening the lyrics store: " + ioException.getMessage());
+			return;
+		}
+		if (SML.VERBOSE) {
+			System.out.printf("\tSuccess! (%d items)\n", this.index.size());
+		}
+	}
+
+	private void index(final String key, final long lyricsOffset, final long lyricsLength) {
+		final long[] previous = this.index.put(key, new long[] { lyricsOffset, lyricsLength });
+		this.liveBytes += lyricsLength - (previous == null ? 0 : previous[1]);
+	}
+
+	/**
+	 * Appends a record to the segment file and indexes it.
+	 *
+	 * @return true if success, false otherwise
+	 */
+	private boolean append(final String key, final String lyrics) {
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8), lyricsBytes = lyrics.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer record = ByteBuffer.allocate((2 * Integer.BYTES) + keyBytes.length + lyricsBytes.length);
+		record.putInt(keyBytes.length).put(keyBytes).putInt(lyricsBytes.length).put(lyricsBytes);
+		try {
+			final long offset = this.segment.length();
+			this.segment.seek(offset);
+			this.segment.write(record.array());
+			this.index(key, offset + (2 * Integer.BYTES) + keyBytes.length, lyricsBytes.length);
+			return true;
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while writing to the lyrics store: " + ioException.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized String read(final String artist, final String track) {
+		if (this.segment == null) {
+			return null;
+		}
+		final long[] entry = this.index.get(SML.getInstance().getCacheKey(artist, track));
+		if (entry == null) {
+			return null;
+		}
+		final byte[] lyrics = new byte[(int) entry[1]];
+		try {
+			this.segment.seek(entry[0]);
+			this.segment.readFully(lyrics);
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while reading from the lyrics store: " + ioException.getMessage());
+			return null;
+		}
+		return new String(lyrics, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public synchronized boolean contains(final String artist, final String track) {
+		return this.index.containsKey(SML.getInstance().getCacheKey(artist, track));
+	}
+
+	@Override
+	public synchronized boolean transfer(final String artist, final String track, final OutputStream output) {
+		if (this.segment == null) {
+			return false;
+		}
+		final long[] entry = this.index.get(SML.getInstance().getCacheKey(artist, track));
+		if (entry == null) {
+			return false;
+		}
+		try {
+			SMLIO.transferRegion(this.segment.getChannel(), entry[0], entry[1], output);
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while transferring from the lyrics store: " + ioException.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized boolean save(final String artist, final String track, final String lyrics, final boolean override) {
+		final String key = SML.getInstance().getCacheKey(artist, track);
+		if ((this.segment == null) || (this.index.containsKey(key) && !override)) {
+			return false;
+		}
+		return this.append(key, lyrics);
+	}
+
+	@Override
+	public synchronized List<String> keys() {
+		return new ArrayList<>(this.index.keySet());
+	}
+
+	@Override
+	public synchronized int items() {
+		return this.index.size();
+	}
+
+	@Override
+	public synchronized long size() {
+		return this.liveBytes;
+	}
+
+	@Override
+	public synchronized boolean clear() {
+		if (this.segment == null) {
+			return false;
+		}
+		try {
+			this.segment.setLength(0);
+		} catch (final IOException ioException) {
+			System.err.println("An exception occurred while clearing the lyrics store: " + ioException.getMessage());
+			return false;
+		}
+		this.index.clear();
+		this.liveBytes = 0;
+		return true;
+	}
+
+	/**
+	 * One-shot migration from the one-file-per-song layout: every
+	 * <artist>/<title>.txt under @param directory not yet in the store is
+	 * appended to it under the key "<artist>/<title>".
+	 *
+	 * @return the number of migrated songs
+	 */
+	public synchronized int migrate(final File directory) {
+		return this.migrate(directory, SML.EMPTY);
+	}
+
+	private int migrate(final File directory, final String prefix) {
+		if (!directory.isDirectory()) {
+			return 0;
+		}
+		int migrated = 0;
+		for (final File child : directory.listFiles()) {
+			if (child.isDirectory()) {
+				migrated += this.migrate(child, prefix + child.getName() + "/");
+			} else if (child.getName().endsWith(".txt")) {
+				final String key = prefix + child.getName().substring(0, child.getName().length() - ".txt".length());
+				if (this.index.containsKey(key)) {
+					continue;
+				}
+				final String lyrics = SMLIO.readWhole(child);
+				if ((lyrics != null) && this.append(key, lyrics)) {
+					migrated += 1;
+				}
+			}
+		}
+		return migrated;
+	}
+}
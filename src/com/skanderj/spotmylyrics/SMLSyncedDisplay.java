@@ -0,0 +1,187 @@
+package com.skanderj.spotmylyrics;
+
+import java.util.concurrent.TimeUnit;
+
+import com.skanderj.ts4j.Task;
+import com.skanderj.ts4j.TaskScheduler;
+import com.skanderj.ts4j.TaskType;
+import com.skanderj.ts4j.TimeHistogram;
+import com.skanderj.ts4j.TimeValue;
+
+/**
+ * Shows synced lyrics a screen at a time, the current one highlighted. The
+ * playback position is extrapolated from the last one reported by Spotify, and
+ * a single TS4J one-shot task is scheduled for when the next line starts, so
+ * nothing runs between lines. A reported position (seek, pause, resume)
+ * simply re-anchors the clock and reschedules that task.
+ *
+ * @author Skander J.
+ */
+public final class SMLSyncedDisplay {
+	// Identifier of the task moving to the next line
+	public static final String TASK_IDENTIFIER = "SyncedLyrics";
+
+	private final SMLRenderer renderer;
+	private final int context;
+	// Lyrics being shown, null when the synced mode isn't in use for this song
+	private SMLLrc lrc;
+	private String[] lines;
+	private String header;
+	// Playback position (ms) reported at anchorNanos
+	private long anchorPosition, anchorNanos;
+	private boolean playing;
+	private int currentIndex;
+	// Incremented on every reschedule, so that a late task can tell it's stale
+	private long generation;
+	// How late lines are drawn compared to when they start
+	private final TimeHistogram latencies;
+
+	/**
+	 * @param renderer where to draw
+	 * @param context  how many lines are shown above the current one
+	 */
+	public SMLSyncedDisplay(final SMLRenderer renderer, final int context) {
+		this.renderer = renderer;
+		this.context = context;
+		this.lrc = null;
+		this.lines = null;
+		this.header = null;
+		this.anchorPosition = 0;
+		this.anchorNanos = 0;
+		this.playing = false;
+		this.currentIndex = -1;
+		this.generation = 0;
+		this.latencies = new TimeHistogram();
+	}
+
+	/**
+	 * Starts showing synced lyrics for a song that just started.
+	 *
+	 * @param header the song's header line
+	 * @param lrc    its synced lyrics
+	 */
+	public synchronized void show(final String header, final SMLLrc lrc) {
+		this.header = header;
+		this.lrc = lrc;
+		this.lines = lrc.lines();
+		this.currentIndex = -1;
+		// Until Spotify tells us otherwise
+		this.anchor(0, true);
+	}
+
+	/**
+	 * Stops showing synced lyrics, e.g. when a song without any starts.
+	 */
+	public synchronized void stop() {
+		this.lrc = null;
+		this.generation += 1;
+		TaskScheduler.cancelTask(SMLSyncedDisplay.TASK_IDENTIFIER, false);
+	}
+
+	/**
+	 * @return true if synced lyrics are being shown
+	 */
+	public synchronized boolean isActive() {
+		return this.lrc != null;
+	}
+
+	/**
+	 * Called with the playback position reported by Spotify, on seeks, pauses,
+	 * resumes and track changes. Ignored when no synced lyrics are shown.
+	 *
+	 * @param position the position in milliseconds
+	 * @param playing  whether the song is playing
+	 */
+	public synchronized void onPosition(final long position, final boolean playing) {
+		if (this.lrc != null) {
+			this.anchor(position, playing);
+		}
+	}
+
+	/**
+	 * Draws the current screen again, e.g. after the terminal was resized.
+	 */
+	public synchronized void redraw() {
+		if (this.lrc != null) {
+			this.render(this.currentIndex, true);
+		}
+	}
+
+	private void anchor(final long position, final boolean playing) {
+		this.anchorPosition = position;
+		this.anchorNanos = System.nanoTime();
+		this.playing = playing;
+		this.render(this.lrc.indexAt(position), true);
+		this.scheduleNext();
+	}
+
+	/**
+	 * @return the extrapolated playback position in milliseconds
+	 */
+	private long position() {
+		if (!this.playing) {
+			return this.anchorPosition;
+		}
+		return this.anchorPosition + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.anchorNanos);
+	}
+
+	/**
+	 * Schedules the move to the next line, if the song is playing and there's
+	 * one.
+	 */
+	private void scheduleNext() {
+		final long generation = this.generation += 1;
+		final int next = this.currentIndex + 1;
+		if (!this.playing || (next >= this.lrc.size())) {
+			TaskScheduler.cancelTask(SMLSyncedDisplay.TASK_IDENTIFIER, false);
+			return;
+		}
+		final long delay = Math.max(0, this.lrc.timeAt(next) - this.position());
+		final long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+		TaskScheduler.scheduleTask(SMLSyncedDisplay.TASK_IDENTIFIER, new Task(new TimeValue((int) delay, TimeUnit.MILLISECONDS)) {
+			@Override
+			public void execute() {
+				SMLSyncedDisplay.this.onLineDue(generation, due);
+			}
+
+			@Override
+			public TaskType type() {
+				return TaskType.FIXED_DELAY;
+			}
+		});
+	}
+
+	private synchronized void onLineDue(final long generation, final long due) {
+		if ((this.lrc == null) || (generation != this.generation)) {
+			return;
+		}
+		// May fire a hair early, in which case the same line is still current
+		if (this.render(this.lrc.indexAt(this.position()), false)) {
+			this.latencies.record(System.nanoTime() - due);
+		}
+		this.scheduleNext();
+	}
+
+	/**
+	 * Draws the screen with the line at @param index highlighted, that line
+	 * being kept a few lines below the top.
+	 *
+	 * @param force whether to draw even if the current line didn't change
+	 * @return true if something was drawn
+	 */
+	private boolean render(final int index, final boolean force) {
+		if (!force && (index == this.currentIndex)) {
+			return false;
+		}
+		this.currentIndex = index;
+		this.renderer.viewport(this.header, this.playing ? this.header : this.header + " (paused)", this.lines, index, Math.max(0, index - this.context));
+		return true;
+	}
+
+	/**
+	 * @return a one-line summary of how late lines were drawn
+	 */
+	public String stats() {
+		return String.format("Synced lyrics: %d lines drawn, latency p50 %.2fms p99 %.2fms max %.2fms", this.latencies.getTotalCount(), this.latencies.getValueAtPercentile(50) / 1e6, this.latencies.getValueAtPercentile(99) / 1e6, this.latencies.getMax() / 1e6);
+	}
+}
@@ -0,0 +1,141 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch mode filling the cache with the lyrics to a whole list of songs before
+ * they're ever played. Songs already cached are skipped, which is also how an
+ * interrupted run resumes, songs listed twice are fetched once and songs
+ * known to have no lyrics aren't fetched again. Fetches run on a bounded pool
+ * and are rate limited per host.
+ *
+ * @author Skander J.
+ */
+public final class SMLWarmer {
+	// Progress is printed every this many songs
+	public static final int REPORT_EVERY = 100;
+
+	private final int threads;
+	private final SMLRateLimiter limiter;
+	private final AtomicInteger hits, fetched, failed, done;
+	private final List<Long> latencies;
+
+	public SMLWarmer(final int threads, final long intervalMs) {
+		this(threads, new SMLRateLimiter(intervalMs));
+	}
+
+	SMLWarmer(final int threads, final SMLRateLimiter limiter) {
+		this.threads = threads;
+		this.limiter = limiter;
+		this.hits = new AtomicInteger();
+		this.fetched = new AtomicInteger();
+		this.failed = new AtomicInteger();
+		this.done = new AtomicInteger();
+		this.latencies = new ArrayList<>();
+	}
+
+	/**
+	 * Warms the cache with the songs listed in a file, one (artist, track) pair
+	 * per line, then prints a report.
+	 *
+	 * @param file the songs list
+	 * @return true if the whole list was processed, false otherwise
+	 */
+	public boolean warm(final File file) {
+		final List<String> songs = SMLIO.readLines(file);
+		if (songs == null) {
+			return false;
+		}
+		final SML sml = SML.getInstance();
+		final Set<String> keys = new HashSet<>();
+		final ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+		final long start = System.nanoTime();
+		int skipped = 0;
+		for (final String song : songs) {
+			if (!song.contains(",")) {
+				System.err.println("Skipping malformed line: " + song);
+				skipped += 1;
+				continue;
+			}
+			final String[] spotifyAnswer = sml.formatAnswer(song);
+			final String compliantArtist = spotifyAnswer[2], compliantTitle = spotifyAnswer[3];
+			if (!keys.add(sml.getCacheKey(compliantArtist, compliantTitle))) {
+				skipped += 1;
+				continue;
+			}
+			if (sml.isCached(compliantArtist, compliantTitle)) {
+				this.hits.incrementAndGet();
+				this.progress(start);
+				continue;
+			}
+			if (sml.isKnownMissing(compliantArtist, compliantTitle)) {
+				skipped += 1;
+				continue;
+			}
+			pool.execute(() -> {
+				try {
+					this.limiter.acquire(sml.lyricsHost(compliantArtist, compliantTitle));
+				} catch (final InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				final long fetchStart = System.nanoTime();
+				final String lyrics = sml.fetchLyrics(compliantArtist, compliantTitle).join();
+				final long latency = System.nanoTime() - fetchStart;
+				synchronized (this.latencies) {
+					this.latencies.add(latency);
+				}
+				(lyrics == null ? this.failed : this.fetched).incrementAndGet();
+				this.progress(start);
+			});
+		}
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (final InterruptedException interruptedException) {
+			System.err.println("Interrupted, run --warm again to resume");
+			pool.shutdownNow();
+			return false;
+		}
+		this.report(songs.size(), skipped, System.nanoTime() - start);
+		return true;
+	}
+
+	private void progress(final long start) {
+		final int done = this.done.incrementAndGet();
+		if ((done % SMLWarmer.REPORT_EVERY) == 0) {
+			System.out.printf("%d songs done (%.1f songs/s)\n", done, done / ((System.nanoTime() - start) / 1e9));
+		}
+	}
+
+	private void report(final int lines, final int skipped, final long elapsed) {
+		final long[] sorted;
+		synchronized (this.latencies) {
+			sorted = this.latencies.stream().mapToLong(Long::longValue).toArray();
+		}
+		Arrays.sort(sorted);
+		final double seconds = elapsed / 1e9;
+		System.out.printf("Warmed the cache from %d lines in %.1fs (%.1f songs/s, %.1f fetches/s)\n", lines, seconds, this.done.get() / seconds, sorted.length / seconds);
+		System.out.printf("\t%d already cached, %d fetched, %d failed, %d skipped (duplicates, malformed or without lyrics last time)\n", this.hits.get(), this.fetched.get(), this.failed.get(), skipped);
+		if (sorted.length > 0) {
+			System.out.printf("\tFetch latency: p50 %.1fms, p99 %.1fms, max %.1fms\n", SMLWarmer.percentile(sorted, 0.50) / 1e6, SMLWarmer.percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+		}
+	}
+
+	/**
+	 * @return the nearest-rank @param percentile of @param sorted
+	 */
+	private static long percentile(final long[] sorted, final double percentile) {
+		final int rank = (int) Math.ceil(percentile * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
@@ -0,0 +1,96 @@
+package com.skanderj.spotmylyrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.function.Consumer;
+
+/**
+ * Runs a helper which pushes a line each time the current song changes (as
+ * opposed to SMLHelper, which answers when asked) and hands every line to a
+ * listener. If the helper keeps dying, the fallback is run once so that the
+ * caller can go back to polling.
+ *
+ * @author Skander J.
+ */
+public final class SMLWatcher {
+	// How many times in a row we restart a helper that died without saying
+	// anything
+	public static final int MAX_RESTARTS = 3;
+
+	private final String[] command;
+	private final Consumer<String> listener;
+	private final Runnable fallback;
+	private volatile boolean running;
+	private volatile Process process;
+
+	public SMLWatcher(final String[] command, final Consumer<String> listener, final Runnable fallback) {
+		this.command = command;
+		this.listener = listener;
+		this.fallback = fallback;
+		this.running = false;
+		this.process = null;
+	}
+
+	/**
+	 * Starts watching on a background thread.
+	 */
+	public synchronized void start() {
+		if (this.running) {
+			return;
+		}
+		this.running = true;
+		final Thread thread = new Thread(this::watch, "SpotifyWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Reads the helper's events until stopped, restarting it when it dies.
+	 */
+	private void watch() {
+		int restarts = 0;
+		while (this.running && (restarts <= SMLWatcher.MAX_RESTARTS)) {
+			if (SML.VERBOSE) {
+				System.out.printf("Starting watcher %s...\n", String.join(SML.SPACE, this.command));
+			}
+			try {
+				final ProcessBuilder processBuilder = new ProcessBuilder(this.command);
+				processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+				this.process = processBuilder.start();
+				try (final BufferedReader reader = new BufferedReader(new InputStreamReader(this.process.getInputStream()))) {
+					String line;
+					while (this.running && ((line = reader.readLine()) != null)) {
+						restarts = 0;
+						this.listener.accept(line.strip());
+					}
+				}
+			} catch (final IOException ioException) {
+				if (this.running) {
+					System.err.println("An exception occurred while reading from the watcher: " + ioException.getMessage());
+				}
+			}
+			restarts += 1;
+		}
+		if (this.running) {
+			this.running = false;
+			System.err.println("The watcher keeps dying, falling back to polling!");
+			this.fallback.run();
+		}
+	}
+
+	/**
+	 * Stops watching and kills the helper.
+	 */
+	public synchronized void stop() {
+		this.running = false;
+		if (this.process != null) {
+			this.process.destroy();
+			this.process = null;
+		}
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+}
@@ -0,0 +1,41 @@
+package com.skanderj.ts4j;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default engine, a ScheduledThreadPoolExecutor: O(log n) to schedule or
+ * cancel a task.
+ *
+ * @author Skander J.
+ */
+final class ExecutorEngine implements TaskEngine {
+	private final ScheduledThreadPoolExecutor executor;
+
+	ExecutorEngine(final int corePoolSize, final ThreadFactory threadFactory) {
+		this.executor = new ScheduledThreadPoolExecutor(corePoolSize, threadFactory);
+		// Cancelled tasks shouldn't linger in the queue until their next run
+		this.executor.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	public Handle schedule(final Runnable runnable, final long delay, final TimeUnit unit) {
+		return this.executor.schedule(runnable, delay, unit)::cancel;
+	}
+
+	@Override
+	public Handle scheduleAtFixedRate(final Runnable runnable, final long initialDelay, final long period, final TimeUnit unit) {
+		return this.executor.scheduleAtFixedRate(runnable, initialDelay, period, unit)::cancel;
+	}
+
+	@Override
+	public Handle scheduleWithFixedDelay(final Runnable runnable, final long initialDelay, final long delay, final TimeUnit unit) {
+		return this.executor.scheduleWithFixedDelay(runnable, initialDelay, delay, unit)::cancel;
+	}
+
+	@Override
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+}
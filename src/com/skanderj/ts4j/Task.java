@@ -1,6 +1,8 @@
 package com.skanderj.ts4j;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a task which will be executed by the scheduler.
@@ -12,7 +14,8 @@ public abstract class Task {
 
 	private final TimeValue initialDelay;
 	private final TimeValue period;
-	private int repeatsCounter;
+	private final AtomicInteger repeatsCounter;
+	private final TaskStats stats;
 
 	public Task(final int initialDelay, final TimeUnit unit) {
 		this(new TimeValue(initialDelay, unit));
@@ -25,21 +28,43 @@ public abstract class Task {
 	public Task(final TimeValue initialDelay) {
 		this.initialDelay = initialDelay;
 		this.period = new TimeValue(Task.NO_REPEATS, null);
-		this.repeatsCounter = 0;
+		this.repeatsCounter = new AtomicInteger();
+		this.stats = new TaskStats();
 	}
 
 	public Task(final TimeValue initialDelay, final TimeValue period) {
 		this.initialDelay = initialDelay;
 		this.period = period;
-		this.repeatsCounter = 0;
+		this.repeatsCounter = new AtomicInteger();
+		this.stats = new TaskStats();
 	}
 
 	public abstract void execute();
 
+	/**
+	 * Wraps the task for the scheduler: every run is timed against when it was
+	 * meant to start, and an exception is recorded in the task's stats instead
+	 * of being thrown, so that it doesn't stop a repeating task for good.
+	 */
 	public final Runnable asRunnable() {
+		final boolean repeats = this.period.value != Task.NO_REPEATS;
+		final long period = repeats ? this.period.unit.toNanos(this.period.value) : 0;
+		// When the next run is meant to start
+		final AtomicLong intended = new AtomicLong(System.nanoTime() + this.initialDelay.unit.toNanos(this.initialDelay.value));
 		return () -> {
-			Task.this.execute();
-			Task.this.repeatsCounter += 1;
+			final long start = System.nanoTime();
+			try {
+				Task.this.execute();
+			} catch (final RuntimeException exception) {
+				Task.this.stats.recordException(exception);
+			} finally {
+				final long end = System.nanoTime();
+				// Only fixed-rate tasks have ticks to overrun or skip
+				final boolean fixedRate = repeats && (Task.this.type() == TaskType.FIXED_RATE);
+				Task.this.stats.record(start - intended.get(), end - start, fixedRate ? period : 0);
+				intended.set(fixedRate ? intended.get() + period : end + period);
+				Task.this.repeatsCounter.incrementAndGet();
+			}
 		};
 	}
 
@@ -52,7 +77,11 @@ public abstract class Task {
 	}
 
 	public final int getRepeatsCounter() {
-		return this.repeatsCounter;
+		return this.repeatsCounter.get();
+	}
+
+	public final TaskStats getStats() {
+		return this.stats;
 	}
 
 	public abstract TaskType type();
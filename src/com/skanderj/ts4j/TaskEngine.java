@@ -0,0 +1,30 @@
+package com.skanderj.ts4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What actually runs the tasks handed to the scheduler. Chosen once, before
+ * the first task is scheduled (see TaskScheduler.configure and
+ * TaskScheduler.useTimingWheel).
+ *
+ * @author Skander J.
+ */
+interface TaskEngine {
+	Handle schedule(Runnable runnable, long delay, TimeUnit unit);
+
+	Handle scheduleAtFixedRate(Runnable runnable, long initialDelay, long period, TimeUnit unit);
+
+	Handle scheduleWithFixedDelay(Runnable runnable, long initialDelay, long delay, TimeUnit unit);
+
+	/**
+	 * Stops the engine's threads. Tasks which haven't run yet never will.
+	 */
+	void shutdown();
+
+	/**
+	 * A scheduled runnable, which can be cancelled.
+	 */
+	interface Handle {
+		boolean cancel(boolean mayInterruptIfRunning);
+	}
+}
@@ -1,44 +1,127 @@
 package com.skanderj.ts4j;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  * The main class for the TS4J project. Use this class to schedule and cancel
- * tasks.
+ * tasks. Safe to use from several threads at once.
  *
  * @author Skander J.
  *
  */
 public final class TaskScheduler {
-	private static final ScheduledExecutorService executor = Executors.newScheduledThreadPool(0);
-	private static final Map<String, ScheduledFuture<?>> scheduledFutures = new HashMap<>();
-	private static final Map<String, Task> tasks = new HashMap<>();
+	// Default number of threads running the tasks
+	public static final int DEFAULT_CORE_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+	private static volatile TaskEngine engine = null;
+	private static final Map<String, Scheduled> scheduledTasks = new ConcurrentHashMap<>();
 
 	private TaskScheduler() {
 	}
 
+	/**
+	 * Sets up the executor running the tasks. Must be called before the first
+	 * task is scheduled, otherwise the default configuration is used.
+	 *
+	 * @param corePoolSize  the number of threads running the tasks
+	 * @param threadFactory creates these threads, e.g.
+	 *                      Thread.ofVirtual().factory() on Java 21+
+	 * @return true if the executor was configured, false if the engine already
+	 *         existed
+	 */
+	public static synchronized boolean configure(final int corePoolSize, final ThreadFactory threadFactory) {
+		if (TaskScheduler.engine != null) {
+			return false;
+		}
+		TaskScheduler.engine = new ExecutorEngine(corePoolSize, threadFactory);
+		return true;
+	}
+
+	/**
+	 * Runs the tasks on a hashed timing wheel instead of the executor, for O(1)
+	 * scheduling and cancelling when there are lots of timers (the executor's
+	 * O(log n) is about as fast up to a million of them). Must be called
+	 * before the first task is scheduled.
+	 *
+	 * @param tickDuration  the wheel's resolution: tasks run up to a tick late
+	 * @param unit          the resolution's unit
+	 * @param wheelSize     the number of buckets in the wheel
+	 * @param corePoolSize  the number of threads running the tasks
+	 * @param threadFactory creates the wheel's threads
+	 * @return true if the wheel was set up, false if the engine already existed
+	 */
+	public static synchronized boolean useTimingWheel(final long tickDuration, final TimeUnit unit, final int wheelSize, final int corePoolSize, final ThreadFactory threadFactory) {
+		if (TaskScheduler.engine != null) {
+			return false;
+		}
+		TaskScheduler.engine = new TimingWheel(tickDuration, unit, wheelSize, corePoolSize, threadFactory);
+		return true;
+	}
+
+	/**
+	 * Cancels every task and stops the engine's threads. The next task
+	 * scheduled starts a new engine, which can be configured again beforehand.
+	 */
+	public static synchronized void shutdown() {
+		if (TaskScheduler.engine == null) {
+			return;
+		}
+		TaskScheduler.scheduledTasks.clear();
+		TaskScheduler.engine.shutdown();
+		TaskScheduler.engine = null;
+	}
+
+	private static TaskEngine engine() {
+		if (TaskScheduler.engine == null) {
+			TaskScheduler.configure(TaskScheduler.DEFAULT_CORE_POOL_SIZE, Executors.defaultThreadFactory());
+		}
+		return TaskScheduler.engine;
+	}
+
+	/**
+	 * Schedules a task under an identifier. A task already scheduled under the
+	 * same identifier is cancelled.
+	 */
 	public static boolean scheduleTask(final String identifier, final Task task) {
-		ScheduledFuture<?> future = null;
+		final TaskEngine engine = TaskScheduler.engine();
+		final Scheduled scheduled = new Scheduled(task);
+		TaskEngine.Handle future = null;
 		if (task.getPeriod().value != Task.NO_REPEATS) {
 			switch (task.type()) {
 			case FIXED_DELAY:
-				future = TaskScheduler.executor.scheduleWithFixedDelay(task.asRunnable(), task.getInitialDelay().value, task.getInitialDelay().unit.convert(task.getPeriod().value, task.getPeriod().unit), task.getInitialDelay().unit);
+				future = engine.scheduleWithFixedDelay(task.asRunnable(), task.getInitialDelay().value, task.getInitialDelay().unit.convert(task.getPeriod().value, task.getPeriod().unit), task.getInitialDelay().unit);
 				break;
 			case FIXED_RATE:
-				future = TaskScheduler.executor.scheduleAtFixedRate(task.asRunnable(), task.getInitialDelay().value, task.getInitialDelay().unit.convert(task.getPeriod().value, task.getPeriod().unit), task.getInitialDelay().unit);
+				future = engine.scheduleAtFixedRate(task.asRunnable(), task.getInitialDelay().value, task.getInitialDelay().unit.convert(task.getPeriod().value, task.getPeriod().unit), task.getInitialDelay().unit);
 				break;
 			}
 		} else {
-			future = TaskScheduler.executor.schedule(task.asRunnable(), task.getInitialDelay().value, task.getInitialDelay().unit);
+			final Runnable runnable = task.asRunnable();
+			// One-shot tasks leave the registry once they're done
+			future = engine.schedule(() -> {
+				try {
+					runnable.run();
+				} finally {
+					scheduled.finished = true;
+					TaskScheduler.scheduledTasks.remove(identifier, scheduled);
+				}
+			}, task.getInitialDelay().value, task.getInitialDelay().unit);
 		}
 		if (future != null) {
-			TaskScheduler.scheduledFutures.put(identifier, future);
-			TaskScheduler.tasks.put(identifier, task);
+			scheduled.future = future;
+			final Scheduled previous = TaskScheduler.scheduledTasks.put(identifier, scheduled);
+			if (previous != null) {
+				previous.future.cancel(false);
+			}
+			// Finished before it was even registered
+			if (scheduled.finished) {
+				TaskScheduler.scheduledTasks.remove(identifier, scheduled);
+			}
 			return true;
 		} else {
 			return false;
@@ -46,9 +129,9 @@ public final class TaskScheduler {
 	}
 
 	public static boolean cancelTask(final String identifier, final boolean finish) {
-		final ScheduledFuture<?> future = TaskScheduler.scheduledFutures.get(identifier);
-		if (future != null) {
-			future.cancel(finish);
+		final Scheduled scheduled = TaskScheduler.scheduledTasks.remove(identifier);
+		if (scheduled != null) {
+			scheduled.future.cancel(finish);
 			return true;
 		} else {
 			return false;
@@ -56,6 +139,31 @@ public final class TaskScheduler {
 	}
 
 	public static int getRepeatsCounter(final String identifier) {
-		return TaskScheduler.tasks.get(identifier) == null ? -1 : TaskScheduler.tasks.get(identifier).getRepeatsCounter();
+		final Scheduled scheduled = TaskScheduler.scheduledTasks.get(identifier);
+		return scheduled == null ? -1 : scheduled.task.getRepeatsCounter();
+	}
+
+	/**
+	 * @return the execution time, drift, overrun and exception stats of the task
+	 *         scheduled under @param identifier, or null if there's none
+	 */
+	public static TaskStats stats(final String identifier) {
+		final Scheduled scheduled = TaskScheduler.scheduledTasks.get(identifier);
+		return scheduled == null ? null : scheduled.task.getStats();
+	}
+
+	/**
+	 * A task and its handle, as registered under an identifier.
+	 */
+	private static final class Scheduled {
+		private final Task task;
+		private volatile TaskEngine.Handle future;
+		private volatile boolean finished;
+
+		private Scheduled(final Task task) {
+			this.task = task;
+			this.future = null;
+			this.finished = false;
+		}
 	}
 }
@@ -0,0 +1,99 @@
+package com.skanderj.ts4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What happened to a task so far: how long its runs took, how late they
+ * started compared to when they were meant to, how many overran the task's
+ * period or started so late a whole tick was missed, and how many threw.
+ *
+ * @author Skander J.
+ */
+public final class TaskStats {
+	// Allocated on the first run (they're 8 KB each): most one-shot timers are
+	// cancelled before they ever run
+	private TimeHistogram executionTimes, drifts;
+	private long overruns, skippedTicks, exceptions;
+	private Throwable lastException;
+
+	public TaskStats() {
+		this.executionTimes = null;
+		this.drifts = null;
+		this.overruns = 0;
+		this.skippedTicks = 0;
+		this.exceptions = 0;
+		this.lastException = null;
+	}
+
+	/**
+	 * Records a run.
+	 *
+	 * @param drift         how late it started, in nanoseconds
+	 * @param executionTime how long it took, in nanoseconds
+	 * @param period        the task's period in nanoseconds, 0 if it doesn't
+	 *                      repeat
+	 */
+	synchronized void record(final long drift, final long executionTime, final long period) {
+		if (this.drifts == null) {
+			this.drifts = new TimeHistogram();
+			this.executionTimes = new TimeHistogram();
+		}
+		this.drifts.record(drift);
+		this.executionTimes.record(executionTime);
+		if (period > 0) {
+			if (executionTime > period) {
+				this.overruns += 1;
+			}
+			// Started after the next tick was due: the executor will run the late
+			// ticks back to back to catch up
+			if (drift >= period) {
+				this.skippedTicks += 1;
+			}
+		}
+	}
+
+	synchronized void recordException(final Throwable throwable) {
+		this.exceptions += 1;
+		this.lastException = throwable;
+	}
+
+	/**
+	 * @return the execution times, an empty histogram if the task never ran
+	 */
+	public synchronized TimeHistogram getExecutionTimes() {
+		return this.executionTimes == null ? new TimeHistogram() : this.executionTimes;
+	}
+
+	/**
+	 * @return the drifts, an empty histogram if the task never ran
+	 */
+	public synchronized TimeHistogram getDrifts() {
+		return this.drifts == null ? new TimeHistogram() : this.drifts;
+	}
+
+	public synchronized long getOverruns() {
+		return this.overruns;
+	}
+
+	public synchronized long getSkippedTicks() {
+		return this.skippedTicks;
+	}
+
+	public synchronized long getExceptions() {
+		return this.exceptions;
+	}
+
+	public synchronized Throwable getLastException() {
+		return this.lastException;
+	}
+
+	private static String millis(final long nanos) {
+		return String.format("%.2fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	@Override
+	public synchronized String toString() {
+		final TimeHistogram executionTimes = this.getExecutionTimes(), drifts = this.getDrifts();
+		return String.format("%d runs, execution p50 %s p99 %s max %s, drift p50 %s p99 %s max %s, %d overruns, %d skipped ticks, %d exceptions%s", executionTimes.getTotalCount(), TaskStats.millis(executionTimes.getValueAtPercentile(50)), TaskStats.millis(executionTimes.getValueAtPercentile(99)), TaskStats.millis(executionTimes.getMax()), TaskStats.millis(drifts.getValueAtPercentile(50)), TaskStats.millis(drifts.getValueAtPercentile(99)), TaskStats.millis(drifts.getMax()), this.overruns, this.skippedTicks, this.exceptions, this.lastException == null ? "" : " (last: " + this.lastException + ")");
+	}
+}
@@ -0,0 +1,81 @@
+package com.skanderj.ts4j;
+
+/**
+ * A fixed-size log-linear histogram of durations in nanoseconds, in the spirit
+ * of HdrHistogram: values are bucketed by their highest set bit, then by the
+ * next SUB_BUCKET_BITS bits, which keeps every recorded value within ~6% of
+ * its bucket whatever its magnitude. Recording is O(1) and allocation free.
+ *
+ * @author Skander J.
+ */
+public final class TimeHistogram {
+	private static final int SUB_BUCKET_BITS = 4, SUB_BUCKETS = 1 << TimeHistogram.SUB_BUCKET_BITS;
+
+	private final long[] counts;
+	private long totalCount, max;
+
+	public TimeHistogram() {
+		this.counts = new long[(Long.SIZE + 1) * TimeHistogram.SUB_BUCKETS];
+		this.totalCount = 0;
+		this.max = 0;
+	}
+
+	private static int indexOf(final long value) {
+		if (value < TimeHistogram.SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (exponent - TimeHistogram.SUB_BUCKET_BITS)) & (TimeHistogram.SUB_BUCKETS - 1);
+		return ((exponent - TimeHistogram.SUB_BUCKET_BITS + 1) * TimeHistogram.SUB_BUCKETS) + subBucket;
+	}
+
+	/**
+	 * @return the highest value falling in the bucket at @param index
+	 */
+	private static long highestValueAt(final int index) {
+		if (index < TimeHistogram.SUB_BUCKETS) {
+			return index;
+		}
+		final int exponent = ((index / TimeHistogram.SUB_BUCKETS) + TimeHistogram.SUB_BUCKET_BITS) - 1, subBucket = index % TimeHistogram.SUB_BUCKETS;
+		final long lowest = (1L << exponent) | ((long) subBucket << (exponent - TimeHistogram.SUB_BUCKET_BITS));
+		return (lowest + (1L << (exponent - TimeHistogram.SUB_BUCKET_BITS))) - 1;
+	}
+
+	/**
+	 * Records a duration, negative ones being counted as 0.
+	 */
+	public synchronized void record(final long nanos) {
+		final long value = Math.max(0, nanos);
+		this.counts[TimeHistogram.indexOf(value)] += 1;
+		this.totalCount += 1;
+		this.max = Math.max(this.max, value);
+	}
+
+	public synchronized long getTotalCount() {
+		return this.totalCount;
+	}
+
+	public synchronized long getMax() {
+		return this.max;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the (upper bound of the bucket of the) value at @param percentile,
+	 *         or 0 if nothing was recorded
+	 */
+	public synchronized long getValueAtPercentile(final double percentile) {
+		if (this.totalCount == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * this.totalCount));
+		long seen = 0;
+		for (int index = 0; index < this.counts.length; index += 1) {
+			seen += this.counts[index];
+			if (seen >= rank) {
+				return Math.min(TimeHistogram.highestValueAt(index), this.max);
+			}
+		}
+		return this.max;
+	}
+}
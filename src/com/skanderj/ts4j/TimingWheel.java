@@ -0,0 +1,300 @@
+package com.skanderj.ts4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel: timers are hashed by deadline into a ring of buckets
+ * which a single ticker thread walks, one bucket per tick. Scheduling and
+ * cancelling are O(1) (a queue insertion, picked up by the ticker on its next
+ * tick) whatever the number of pending timers, at the cost of firing up to a
+ * tick late. Timers further away than a full turn of the wheel wait in their
+ * bucket for as many rounds as needed. Expired timers run on a pool of
+ * workers, never on the ticker itself. A timer cancelled before the ticker
+ * picked it up is only flagged (and lets go of its runnable): the ticker skips
+ * it, so cancelling right after scheduling costs a compare-and-set.
+ *
+ * @author Skander J.
+ */
+final class TimingWheel implements TaskEngine {
+	// Timers moved from the pending queue to the wheel at most per tick, so that
+	// a flood of new timers can't stall the ticker
+	public static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+	// Timer states: waiting in the pending queue (or running), in a bucket, or
+	// cancelled
+	private static final int PENDING = 0, IN_WHEEL = 1, CANCELLED = 2;
+	private static final VarHandle STATE;
+
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+		} catch (final ReflectiveOperationException exception) {
+			throw new ExceptionInInitializerError(exception);
+		}
+	}
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<Timeout> pending, cancelled;
+	private final ExecutorService workers;
+	private final Thread ticker;
+	private final long startTime;
+	// Only touched by the ticker
+	private long tick;
+
+	/**
+	 * @param tickDuration  the wheel's resolution
+	 * @param unit          the resolution's unit
+	 * @param wheelSize     the number of buckets, rounded up to a power of two
+	 * @param workers       the number of threads running expired timers
+	 * @param threadFactory creates the ticker and the workers
+	 */
+	TimingWheel(final long tickDuration, final TimeUnit unit, final int wheelSize, final int workers, final ThreadFactory threadFactory) {
+		this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+		final int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+		this.wheel = new Bucket[size];
+		for (int index = 0; index < size; index += 1) {
+			this.wheel[index] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.pending = new ConcurrentLinkedQueue<>();
+		this.cancelled = new ConcurrentLinkedQueue<>();
+		this.workers = Executors.newFixedThreadPool(workers, threadFactory);
+		this.startTime = System.nanoTime();
+		this.tick = 0;
+		this.ticker = threadFactory.newThread(this::run);
+		this.ticker.setName("TS4J-TimingWheel");
+		this.ticker.start();
+	}
+
+	@Override
+	public Handle schedule(final Runnable runnable, final long delay, final TimeUnit unit) {
+		return this.add(new Timeout(runnable, unit.toNanos(delay), 0));
+	}
+
+	@Override
+	public Handle scheduleAtFixedRate(final Runnable runnable, final long initialDelay, final long period, final TimeUnit unit) {
+		return this.add(new Timeout(runnable, unit.toNanos(initialDelay), unit.toNanos(period)));
+	}
+
+	@Override
+	public Handle scheduleWithFixedDelay(final Runnable runnable, final long initialDelay, final long delay, final TimeUnit unit) {
+		return this.add(new Timeout(runnable, unit.toNanos(initialDelay), -unit.toNanos(delay)));
+	}
+
+	/**
+	 * Stops the ticker and the workers. Pending timers never fire.
+	 */
+	@Override
+	public void shutdown() {
+		this.ticker.interrupt();
+		this.workers.shutdownNow();
+	}
+
+	/**
+	 * @return the number of nanoseconds elapsed since the wheel started
+	 */
+	private long now() {
+		return System.nanoTime() - this.startTime;
+	}
+
+	private Timeout add(final Timeout timeout) {
+		this.pending.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * The ticker's loop.
+	 */
+	private void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			if (!this.waitForNextTick()) {
+				return;
+			}
+			this.removeCancelled();
+			this.transferPending();
+			this.wheel[(int) (this.tick & this.mask)].expire();
+			this.tick += 1;
+		}
+	}
+
+	/**
+	 * Sleeps until the end of the current tick.
+	 *
+	 * @return true once the tick is over, false if interrupted
+	 */
+	private boolean waitForNextTick() {
+		final long deadline = this.tickNanos * (this.tick + 1);
+		while (true) {
+			final long sleepNanos = deadline - this.now();
+			if (sleepNanos <= 0) {
+				return true;
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			} catch (final InterruptedException interruptedException) {
+				return false;
+			}
+		}
+	}
+
+	private void removeCancelled() {
+		Timeout timeout;
+		while ((timeout = this.cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void transferPending() {
+		for (int transfers = 0; transfers < TimingWheel.MAX_TRANSFERS_PER_TICK; transfers += 1) {
+			final Timeout timeout = this.pending.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (!TimingWheel.STATE.compareAndSet(timeout, TimingWheel.PENDING, TimingWheel.IN_WHEEL)) {
+				continue;
+			}
+			final long expiryTick = timeout.deadline / this.tickNanos;
+			timeout.remainingRounds = (expiryTick - this.tick) / this.wheel.length;
+			// Already late timers go in the current bucket
+			this.wheel[(int) (Math.max(expiryTick, this.tick) & this.mask)].add(timeout);
+		}
+	}
+
+	/**
+	 * Runs a timer on the workers, then puts it back in the wheel if it repeats.
+	 */
+	private void fire(final Timeout timeout) {
+		this.workers.execute(() -> {
+			final Runnable runnable = timeout.runnable;
+			if ((runnable == null) || timeout.isCancelled()) {
+				return;
+			}
+			try {
+				runnable.run();
+			} catch (final RuntimeException exception) {
+				// Same as the executor: an exception stops a repeating task
+				timeout.cancel(false);
+				throw exception;
+			}
+			if ((timeout.period != 0) && !timeout.isCancelled()) {
+				timeout.deadline = timeout.period > 0 ? timeout.deadline + timeout.period : this.now() - timeout.period;
+				this.pending.add(timeout);
+			}
+		});
+	}
+
+	/**
+	 * A timer. period is 0 for one-shot timers, positive for fixed rate ones and
+	 * negative for fixed delay ones.
+	 */
+	private final class Timeout implements Handle {
+		// Null once cancelled, so that a cancelled timer waiting in a queue
+		// doesn't keep its task alive
+		private volatile Runnable runnable;
+		private final long period;
+		// PENDING, IN_WHEEL or CANCELLED, see STATE
+		private volatile int state;
+		// Relative to the wheel's start time
+		private volatile long deadline;
+		// Only touched by the ticker
+		private long remainingRounds;
+		private Bucket bucket;
+		private Timeout previous, next;
+
+		private Timeout(final Runnable runnable, final long delay, final long period) {
+			this.runnable = runnable;
+			this.period = period;
+			this.state = TimingWheel.PENDING;
+			this.deadline = TimingWheel.this.now() + Math.max(0, delay);
+		}
+
+		private boolean isCancelled() {
+			return this.state == TimingWheel.CANCELLED;
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			int state;
+			do {
+				state = this.state;
+				if (state == TimingWheel.CANCELLED) {
+					return false;
+				}
+			} while (!TimingWheel.STATE.compareAndSet(this, state, TimingWheel.CANCELLED));
+			this.runnable = null;
+			// Only a timer in a bucket has to be taken out by the ticker
+			if (state == TimingWheel.IN_WHEEL) {
+				TimingWheel.this.cancelled.add(this);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A doubly linked list of timers, only touched by the ticker.
+	 */
+	private final class Bucket {
+		private Timeout head, tail;
+
+		private void add(final Timeout timeout) {
+			timeout.bucket = this;
+			timeout.previous = this.tail;
+			timeout.next = null;
+			if (this.tail == null) {
+				this.head = timeout;
+			} else {
+				this.tail.next = timeout;
+			}
+			this.tail = timeout;
+		}
+
+		private void remove(final Timeout timeout) {
+			if (timeout.previous == null) {
+				this.head = timeout.next;
+			} else {
+				timeout.previous.next = timeout.next;
+			}
+			if (timeout.next == null) {
+				this.tail = timeout.previous;
+			} else {
+				timeout.next.previous = timeout.previous;
+			}
+			timeout.bucket = null;
+			timeout.previous = null;
+			timeout.next = null;
+		}
+
+		/**
+		 * Fires the timers due this round, the others wait for another turn.
+		 */
+		private void expire() {
+			Timeout timeout = this.head;
+			while (timeout != null) {
+				final Timeout next = timeout.next;
+				if (timeout.isCancelled()) {
+					this.remove(timeout);
+				} else if (timeout.remainingRounds <= 0) {
+					this.remove(timeout);
+					// Out of the wheel until it's put back, if it repeats
+					if (TimingWheel.STATE.compareAndSet(timeout, TimingWheel.IN_WHEEL, TimingWheel.PENDING)) {
+						TimingWheel.this.fire(timeout);
+					}
+				} else {
+					timeout.remainingRounds -= 1;
+				}
+				timeout = next;
+			}
+		}
+	}
+}